@@ -23,6 +23,8 @@
 package pascal.taie.analysis.pta.ci;
 
 import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.language.type.ArrayType;
+import pascal.taie.language.type.Type;
 
 /**
  * Represents array index pointers in PFG.
@@ -37,7 +39,8 @@ class ArrayIndex extends Pointer {
 
     private final Obj array;
 
-    ArrayIndex(Obj array) {
+    ArrayIndex(Obj array, ObjIndexer indexer) {
+        super(indexer);
         this.array = array;
     }
 
@@ -48,6 +51,11 @@ class ArrayIndex extends Pointer {
         return array;
     }
 
+    @Override
+    Type getType() {
+        return ((ArrayType) array.getType()).elementType();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -42,10 +42,34 @@ public class CIPTA extends ProgramAnalysis {
     @Override
     public PointerAnalysisResult analyze() {
         HeapModel heapModel = new AllocationSiteBasedModel(getOptions());
-        Solver solver = new Solver(heapModel);
+        if (getOptions().getBooleanOrDefault("demand", false)) {
+            return analyzeOnDemand(heapModel);
+        }
+        Solver solver = new Solver(heapModel, getOptions());
         solver.solve();
         CIPTAResult result = solver.getResult();
         new ResultProcessor(getOptions()).process(result);
         return result;
     }
+
+    /**
+     * Returns the result whose points-to sets are computed on demand.
+     * The time budget (in milliseconds) of each query is specified by
+     * option "query-budget" (unlimited by default).
+     */
+    private PointerAnalysisResult analyzeOnDemand(HeapModel heapModel) {
+        PointerAssignmentGraph pag = new PointerAssignmentGraph(heapModel);
+        DemandSolver solver = new DemandSolver(pag, heapModel,
+                getOptions().getBooleanOrDefault("type-filter", false));
+        Object budget = getOptions().get("query-budget");
+        DemandPTAResult result = new DemandPTAResult(pag, solver,
+                budget != null ? getOptions().getInt("query-budget") : null);
+        if (getOptions().getString("action") != null) {
+            // dumping or comparing needs the points-to sets of all pointers,
+            // otherwise the result stays unsolved until it is queried
+            new ResultProcessor(getOptions(), true)
+                    .process(result.getExhaustiveResult());
+        }
+        return result;
+    }
 }
@@ -0,0 +1,242 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+package pascal.taie.analysis.pta.ci;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import pascal.taie.World;
+import pascal.taie.analysis.graph.callgraph.CallGraph;
+import pascal.taie.analysis.pta.PointerAnalysisResult;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.language.classes.JField;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.language.type.Type;
+import pascal.taie.language.type.TypeSystem;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.Pair;
+import pascal.taie.util.collection.Sets;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Result of demand-driven pointer analysis, whose points-to sets are
+ * computed by {@link DemandSolver} when they are queried.
+ * <p>
+ * The points-to sets of answered queries are cached. Each query of
+ * a points-to set can be limited by a time budget; if the budget runs
+ * out, the query is answered conservatively by the objects (allocated
+ * in the methods reachable by RTA) whose types can be held by the queried
+ * pointer, and such answers are not cached, so that a later query
+ * resumes the solving. The queries of the whole program, i.e.,
+ * {@link #getVars()}, {@link #getObjects()} and {@link #getCallGraph()},
+ * are solved without time limit.
+ */
+class DemandPTAResult implements PointerAnalysisResult {
+
+    private static final Logger logger = LogManager.getLogger(DemandPTAResult.class);
+
+    private final PointerAssignmentGraph pag;
+
+    private final DemandSolver solver;
+
+    /**
+     * Time budget of each query in nanoseconds.
+     */
+    private final long budget;
+
+    private final TypeSystem typeSystem = World.get().getTypeSystem();
+
+    private final Map<Var, Set<Obj>> varPointsTo = Maps.newMap();
+
+    private final Map<JField, Set<Obj>> staticFieldPointsTo = Maps.newMap();
+
+    /**
+     * Points-to sets of field expressions, e.g., v.f.
+     */
+    private final Map<Pair<Var, JField>, Set<Obj>> fieldPointsTo = Maps.newMap();
+
+    private boolean solvedAll;
+
+    private Collection<Var> vars;
+
+    private Set<Obj> objects;
+
+    /**
+     * @param budget time budget of each query in milliseconds,
+     *               or null for unlimited queries.
+     */
+    DemandPTAResult(PointerAssignmentGraph pag, DemandSolver solver,
+                    Integer budget) {
+        this.pag = pag;
+        this.solver = solver;
+        this.budget = budget != null
+                ? TimeUnit.MILLISECONDS.toNanos(budget)
+                : DemandSolver.NO_BUDGET;
+    }
+
+    @Override
+    public Collection<Var> getVars() {
+        if (vars == null) {
+            solveAll();
+            CallGraph<Invoke, JMethod> callGraph = solver.getCallGraph();
+            vars = solver.getPointerFlowGraph()
+                    .getPointers()
+                    .stream()
+                    .filter(VarPtr.class::isInstance)
+                    .map(p -> ((VarPtr) p).getVar())
+                    .filter(v -> callGraph.contains(v.getMethod()))
+                    .toList();
+        }
+        return vars;
+    }
+
+    @Override
+    public Collection<Obj> getObjects() {
+        if (objects == null) {
+            objects = getVars()
+                    .stream()
+                    .flatMap(v -> getVarPtr(v).getPointsToSet().objects())
+                    .collect(Collectors.toUnmodifiableSet());
+        }
+        return objects;
+    }
+
+    @Override
+    public Set<Obj> getPointsToSet(Var var) {
+        Set<Obj> pts = varPointsTo.get(var);
+        if (pts == null) {
+            VarPtr varPtr = getVarPtr(var);
+            if (!query(varPtr)) {
+                return mayPointTo(varPtr);
+            }
+            pts = varPtr.getPointsToSet().getObjects();
+            varPointsTo.put(var, pts);
+        }
+        return pts;
+    }
+
+    @Override
+    public Set<Obj> getPointsToSet(Var base, JField field) {
+        if (field.isStatic()) {
+            logger.warn("{} is not instance field", field);
+        }
+        Pair<Var, JField> key = new Pair<>(base, field);
+        Set<Obj> pts = fieldPointsTo.get(key);
+        if (pts == null) {
+            Set<Obj> basePts = getPointsToSet(base);
+            if (!varPointsTo.containsKey(base)) {
+                // the base is not solved within the budget
+                return mayPointTo(field.getType());
+            }
+            PointerFlowGraph pfg = solver.getPointerFlowGraph();
+            List<InstanceField> fieldPtrs = basePts.stream()
+                    .map(o -> pfg.getInstanceField(o, field))
+                    .toList();
+            fieldPtrs.forEach(solver::demand);
+            if (!solver.solve(budget)) {
+                return mayPointTo(field.getType());
+            }
+            Set<Obj> result = Sets.newHybridSet();
+            fieldPtrs.forEach(p -> result.addAll(p.getPointsToSet().getObjects()));
+            pts = result;
+            fieldPointsTo.put(key, pts);
+        }
+        return pts;
+    }
+
+    @Override
+    public Set<Obj> getPointsToSet(JField field) {
+        if (!field.isStatic()) {
+            logger.warn("{} is not static field", field);
+        }
+        Set<Obj> pts = staticFieldPointsTo.get(field);
+        if (pts == null) {
+            StaticField fieldPtr = solver.getPointerFlowGraph().getStaticField(field);
+            if (!query(fieldPtr)) {
+                return mayPointTo(fieldPtr);
+            }
+            pts = fieldPtr.getPointsToSet().getObjects();
+            staticFieldPointsTo.put(field, pts);
+        }
+        return pts;
+    }
+
+    @Override
+    public CallGraph<Invoke, JMethod> getCallGraph() {
+        solveAll();
+        return solver.getCallGraph();
+    }
+
+    private VarPtr getVarPtr(Var var) {
+        return solver.getPointerFlowGraph().getVarPtr(var);
+    }
+
+    /**
+     * Solves the points-to set of given pointer within the budget.
+     *
+     * @return true if the points-to set is solved, otherwise false.
+     */
+    private boolean query(Pointer pointer) {
+        solver.demand(pointer);
+        return solver.solve(budget);
+    }
+
+    private void solveAll() {
+        if (!solvedAll) {
+            solver.demandAll();
+            solver.solve(DemandSolver.NO_BUDGET);
+            solvedAll = true;
+        }
+    }
+
+    /**
+     * Solves the whole program, and returns the result of all pointers
+     * instantiated by the demand-driven analysis, e.g., for dumping or
+     * comparing by {@link ResultProcessor}.
+     */
+    CIPTAResult getExhaustiveResult() {
+        solveAll();
+        return new CIPTAResult(solver.getPointerFlowGraph(), solver.getCallGraph());
+    }
+
+    private Set<Obj> mayPointTo(Pointer pointer) {
+        logger.debug("Query of {} runs out of budget", pointer);
+        return mayPointTo(pointer.getType());
+    }
+
+    /**
+     * @return the objects that can be held by a pointer of given type.
+     */
+    private Set<Obj> mayPointTo(Type type) {
+        return pag.getObjects()
+                .stream()
+                .filter(o -> typeSystem.isSubtype(type, o.getType()))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+}
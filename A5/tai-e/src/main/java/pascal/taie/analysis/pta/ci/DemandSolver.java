@@ -0,0 +1,429 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+package pascal.taie.analysis.pta.ci;
+
+import pascal.taie.World;
+import pascal.taie.analysis.graph.callgraph.CallGraphs;
+import pascal.taie.analysis.graph.callgraph.DefaultCallGraph;
+import pascal.taie.analysis.graph.callgraph.Edge;
+import pascal.taie.analysis.pta.core.heap.HeapModel;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.InvokeInstanceExp;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.language.classes.JField;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.Sets;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Demand-driven solver of context-insensitive pointer analysis.
+ * <p>
+ * Instead of processing all reachable methods as {@link Solver} does,
+ * this solver instantiates the constraints of the {@link PointerAssignmentGraph}
+ * backwards from the demanded pointers: demanding a pointer adds the PFG
+ * edges into it and demands their sources. For a load y = x.f, the base x
+ * is demanded, and the edge o.f -> y is added for each object o of x,
+ * which demands the stores to field f, i.e., loads and stores are matched
+ * by field and base object as in CFL-reachability. The statements of
+ * a method are instantiated only after the method becomes reachable, which
+ * is resolved on demand as well, from the call sites that may invoke it.
+ * <p>
+ * The points-to sets are propagated along the instantiated PFG in the same
+ * way as {@link Solver}, so the points-to set of a demanded pointer is the
+ * same as the one computed by {@link Solver}, after {@link #solve(long)}
+ * completes. The state is kept across queries, so that later queries
+ * reuse the constraints instantiated and the objects propagated by earlier
+ * ones, and a query interrupted by its time budget can be resumed.
+ */
+class DemandSolver {
+
+    /**
+     * Budget of {@link #solve(long)} for solving without time limit.
+     */
+    static final long NO_BUDGET = Long.MAX_VALUE;
+
+    private final PointerAssignmentGraph pag;
+
+    private final HeapModel heapModel;
+
+    private final TypeFilter typeFilter;
+
+    /**
+     * Pointer flow graph of the demanded pointers, whose points-to sets
+     * are small, thus they are hybrid sets.
+     */
+    private final PointerFlowGraph pointerFlowGraph = new PointerFlowGraph(null);
+
+    private final WorkList workList = new WorkList();
+
+    private final DefaultCallGraph callGraph = new DefaultCallGraph();
+
+    /**
+     * Pending instantiations of constraints, which are processed before
+     * the work-list entries.
+     */
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    private final Set<Pointer> demanded = Sets.newSet();
+
+    private final Set<JField> demandedFields = Sets.newSet();
+
+    private boolean arraysDemanded;
+
+    private final Set<JMethod> reachDemanded = Sets.newSet();
+
+    private final Set<Invoke> activeCallSites = Sets.newSet();
+
+    /**
+     * Actions to run when the methods become reachable.
+     */
+    private final Map<JMethod, List<Runnable>> reachListeners = Maps.newMap();
+
+    /**
+     * Actions to run on the objects newly pointed to by the pointers.
+     */
+    private final Map<Pointer, List<Consumer<Obj>>> objListeners = Maps.newMap();
+
+    /**
+     * Actions to run on the callees newly resolved for the call sites.
+     */
+    private final Map<Invoke, List<Consumer<JMethod>>> calleeListeners = Maps.newMap();
+
+    /**
+     * Actions to run on the call sites newly resolved to the methods.
+     */
+    private final Map<JMethod, List<Consumer<Invoke>>> callerListeners = Maps.newMap();
+
+    DemandSolver(PointerAssignmentGraph pag, HeapModel heapModel,
+                 boolean typeFiltering) {
+        this.pag = pag;
+        this.heapModel = heapModel;
+        this.typeFilter = typeFiltering
+                ? new TypeFilter(World.get().getTypeSystem()) : null;
+        JMethod main = World.get().getMainMethod();
+        callGraph.addEntryMethod(main);
+        markReachable(main);
+    }
+
+    PointerFlowGraph getPointerFlowGraph() {
+        return pointerFlowGraph;
+    }
+
+    DefaultCallGraph getCallGraph() {
+        return callGraph;
+    }
+
+    /**
+     * Demands the points-to set of given pointer. The points-to set is
+     * complete after {@link #solve(long)} returns true.
+     */
+    void demand(Pointer pointer) {
+        if (demanded.add(pointer)) {
+            tasks.add(() -> instantiate(pointer));
+        }
+    }
+
+    /**
+     * Demands the whole program, i.e., the call graph and the points-to
+     * sets of all variables in reachable methods, and of all fields and
+     * array indexes stored in reachable methods.
+     */
+    void demandAll() {
+        for (JMethod method : pag.getMethods()) {
+            method.getIR().forEach(stmt -> {
+                if (stmt instanceof Invoke invoke) {
+                    activateCallSite(invoke);
+                }
+            });
+            whenReachable(method, () -> method.getIR().getVars().forEach(
+                    var -> demand(pointerFlowGraph.getVarPtr(var))));
+        }
+        pag.getStoredStaticFields().forEach(field ->
+                demand(pointerFlowGraph.getStaticField(field)));
+        pag.getStoredFields().forEach(this::demandField);
+        demandArrays();
+    }
+
+    /**
+     * Solves the demanded pointers until the fixed point is reached,
+     * or the time budget runs out.
+     *
+     * @param budget time budget in nanoseconds, or {@link #NO_BUDGET}.
+     * @return true if the fixed point is reached, otherwise false.
+     * The solving can be resumed by calling this method again; each call
+     * takes at least one step, so that repeated calls with a tiny budget
+     * still reach the fixed point.
+     */
+    boolean solve(long budget) {
+        long start = System.nanoTime();
+        while (!tasks.isEmpty() || !workList.isEmpty()) {
+            if (!tasks.isEmpty()) {
+                tasks.poll().run();
+            } else {
+                WorkList.Entry entry = workList.pollEntry();
+                propagate(entry.pointer(), entry.pointsToSet());
+            }
+            if (System.nanoTime() - start > budget) {
+                return tasks.isEmpty() && workList.isEmpty();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Instantiates the constraints that flow objects into given pointer.
+     */
+    private void instantiate(Pointer pointer) {
+        if (pointer instanceof VarPtr varPtr) {
+            Var var = varPtr.getVar();
+            whenReachable(var.getMethod(), () -> instantiateVar(varPtr));
+        } else if (pointer instanceof StaticField staticField) {
+            // T.f = y;
+            pag.getStaticStores(staticField.getField()).forEach(y ->
+                    whenReachable(y.getMethod(), () ->
+                            addPFGEdge(pointerFlowGraph.getVarPtr(y), staticField)));
+        } else if (pointer instanceof InstanceField instanceField) {
+            demandField(instanceField.getField());
+        } else if (pointer instanceof ArrayIndex) {
+            demandArrays();
+        }
+    }
+
+    private void instantiateVar(VarPtr x) {
+        Var var = x.getVar();
+        // x = new T();
+        pag.getNews(var).forEach(newStmt -> workList.addEntry(
+                x, new PointsToSet(null, heapModel.getObj(newStmt))));
+        // x = y;
+        pag.getCopySources(var).forEach(y ->
+                addPFGEdge(pointerFlowGraph.getVarPtr(y), x));
+        // x = T.f;
+        pag.getStaticLoads(var).forEach(field ->
+                addPFGEdge(pointerFlowGraph.getStaticField(field), x));
+        // x = y.f;
+        pag.getLoads(var).forEach(load ->
+                onNewObj(pointerFlowGraph.getVarPtr(load.base()), o -> addPFGEdge(
+                        pointerFlowGraph.getInstanceField(o, load.field()), x)));
+        // x = y[i];
+        pag.getArrayLoads(var).forEach(base ->
+                onNewObj(pointerFlowGraph.getVarPtr(base), o ->
+                        addPFGEdge(pointerFlowGraph.getArrayIndex(o), x)));
+        // x = y.m(...) or x = T.m(...)
+        pag.getInvokeResults(var).forEach(l -> onNewCallee(l, m ->
+                m.getIR().getReturnVars().forEach(ret ->
+                        addPFGEdge(pointerFlowGraph.getVarPtr(ret), x))));
+        // parameters, which receive objects from the arguments (and
+        // the receiver objects) of the call sites of the method
+        JMethod m = var.getMethod();
+        IR ir = m.getIR();
+        if (var.equals(ir.getThis())) {
+            onNewCaller(m, l -> onNewObj(pointerFlowGraph.getVarPtr(getBase(l)), o -> {
+                if (m.equals(resolveCallee(o, l))) {
+                    workList.addEntry(x, new PointsToSet(null, o));
+                }
+            }));
+        }
+        int i = ir.getParams().indexOf(var);
+        if (i >= 0) {
+            onNewCaller(m, l -> addPFGEdge(
+                    pointerFlowGraph.getVarPtr(l.getInvokeExp().getArg(i)), x));
+        }
+    }
+
+    /**
+     * Instantiates the stores to given field, i.e., the edges y -> o.f
+     * of the stores x.f = y for the objects o of x.
+     */
+    private void demandField(JField field) {
+        if (demandedFields.add(field)) {
+            pag.getStores(field).forEach(store ->
+                    whenReachable(store.base().getMethod(), () -> onNewObj(
+                            pointerFlowGraph.getVarPtr(store.base()), o -> addPFGEdge(
+                                    pointerFlowGraph.getVarPtr(store.value()),
+                                    pointerFlowGraph.getInstanceField(o, field)))));
+        }
+    }
+
+    /**
+     * Instantiates the array stores, i.e., the edges y -> o[*]
+     * of the stores x[i] = y for the objects o of x.
+     */
+    private void demandArrays() {
+        if (!arraysDemanded) {
+            arraysDemanded = true;
+            pag.getArrayStores().forEach(store ->
+                    whenReachable(store.base().getMethod(), () -> onNewObj(
+                            pointerFlowGraph.getVarPtr(store.base()), o -> addPFGEdge(
+                                    pointerFlowGraph.getVarPtr(store.value()),
+                                    pointerFlowGraph.getArrayIndex(o)))));
+        }
+    }
+
+    /**
+     * Adds an edge "source -> target" to the PFG, and demands the source.
+     */
+    private void addPFGEdge(Pointer source, Pointer target) {
+        demand(source);
+        if (pointerFlowGraph.addEdge(source, target)) {
+            PointsToSet pts = source.getPointsToSet();
+            if (!pts.isEmpty()) {
+                workList.addEntry(target, pts);
+            }
+        }
+    }
+
+    /**
+     * Propagates pointsToSet to pt(pointer) and its PFG successors,
+     * and runs the listeners of pointer on the new objects.
+     */
+    private void propagate(Pointer pointer, PointsToSet pointsToSet) {
+        PointsToSet pts = typeFilter != null
+                ? typeFilter.filter(pointer, pointsToSet) : pointsToSet;
+        PointsToSet delta = pointer.getPointsToSet().addAllDiff(pts);
+        if (delta.isEmpty()) {
+            return;
+        }
+        pointerFlowGraph.getSuccsOf(pointer)
+                .forEach(s -> workList.addEntry(s, delta));
+        List<Consumer<Obj>> listeners = objListeners.get(pointer);
+        if (listeners != null) {
+            // listeners added by the listeners have seen delta
+            int n = listeners.size();
+            for (Obj obj : delta) {
+                for (int i = 0; i < n; ++i) {
+                    listeners.get(i).accept(obj);
+                }
+            }
+        }
+    }
+
+    /**
+     * Demands given pointer, and runs action on its objects,
+     * including the objects it already points to.
+     */
+    private void onNewObj(Pointer pointer, Consumer<Obj> action) {
+        demand(pointer);
+        objListeners.computeIfAbsent(pointer, p -> new ArrayList<>()).add(action);
+        List.copyOf(pointer.getPointsToSet().getObjects()).forEach(action);
+    }
+
+    /**
+     * Runs action when given method becomes reachable, or immediately
+     * if the method is already reachable.
+     */
+    private void whenReachable(JMethod method, Runnable action) {
+        if (callGraph.contains(method)) {
+            action.run();
+        } else {
+            reachListeners.computeIfAbsent(method, m -> new ArrayList<>()).add(action);
+            if (reachDemanded.add(method)) {
+                tasks.add(() -> pag.getCallSitesOf(method)
+                        .forEach(this::activateCallSite));
+            }
+        }
+    }
+
+    private void markReachable(JMethod method) {
+        if (callGraph.addReachableMethod(method)) {
+            List<Runnable> actions = reachListeners.remove(method);
+            if (actions != null) {
+                tasks.addAll(actions);
+            }
+        }
+    }
+
+    /**
+     * Resolves the callees of given call site after its container
+     * becomes reachable.
+     */
+    private void activateCallSite(Invoke l) {
+        if (activeCallSites.add(l)) {
+            whenReachable(l.getContainer(), () -> {
+                if (l.isStatic()) {
+                    JMethod callee = pag.getStaticCallee(l);
+                    if (callee != null) {
+                        addCallEdge(l, callee);
+                    }
+                } else {
+                    onNewObj(pointerFlowGraph.getVarPtr(getBase(l)), o -> {
+                        JMethod callee = resolveCallee(o, l);
+                        if (callee != null) {
+                            addCallEdge(l, callee);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    private void addCallEdge(Invoke l, JMethod m) {
+        if (callGraph.addEdge(new Edge<>(CallGraphs.getCallKind(l), l, m))) {
+            markReachable(m);
+            List<Consumer<JMethod>> callees = calleeListeners.get(l);
+            if (callees != null) {
+                List.copyOf(callees).forEach(action -> action.accept(m));
+            }
+            List<Consumer<Invoke>> callers = callerListeners.get(m);
+            if (callers != null) {
+                List.copyOf(callers).forEach(action -> action.accept(l));
+            }
+        }
+    }
+
+    /**
+     * Runs action on the callees of given call site,
+     * including the callees that have been resolved.
+     */
+    private void onNewCallee(Invoke l, Consumer<JMethod> action) {
+        activateCallSite(l);
+        calleeListeners.computeIfAbsent(l, k -> new ArrayList<>()).add(action);
+        List.copyOf(callGraph.getCalleesOf(l)).forEach(action);
+    }
+
+    /**
+     * Runs action on the call sites of given method,
+     * including the call sites that have been resolved.
+     */
+    private void onNewCaller(JMethod m, Consumer<Invoke> action) {
+        pag.getCallSitesOf(m).forEach(this::activateCallSite);
+        callerListeners.computeIfAbsent(m, k -> new ArrayList<>()).add(action);
+        List.copyOf(callGraph.getCallersOf(m)).forEach(action);
+    }
+
+    private static Var getBase(Invoke l) {
+        return ((InvokeInstanceExp) l.getInvokeExp()).getBase();
+    }
+
+    private static JMethod resolveCallee(Obj recv, Invoke callSite) {
+        return CallGraphs.resolveCallee(recv.getType(), callSite);
+    }
+}
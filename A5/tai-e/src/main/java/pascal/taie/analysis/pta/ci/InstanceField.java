@@ -24,6 +24,7 @@ package pascal.taie.analysis.pta.ci;
 
 import pascal.taie.analysis.pta.core.heap.Obj;
 import pascal.taie.language.classes.JField;
+import pascal.taie.language.type.Type;
 import pascal.taie.util.Hashes;
 
 /**
@@ -35,7 +36,8 @@ class InstanceField extends Pointer {
 
     private final JField field; // JField: 包含名字,修饰符,注解等
 
-    InstanceField(Obj base, JField field) {
+    InstanceField(Obj base, JField field, ObjIndexer indexer) {
+        super(indexer);
         this.base = base;
         this.field = field;
     }
@@ -54,6 +56,11 @@ class InstanceField extends Pointer {
         return field;
     }
 
+    @Override
+    Type getType() {
+        return field.getType();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -0,0 +1,88 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.ci;
+
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.util.collection.Maps;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Numbers the objects of one pointer analysis densely, so that points-to
+ * sets can be represented as bit sets over the numbers, and maps the
+ * numbers back to the objects.
+ * <p>
+ * The objects are created by the heap model in the library, so they are
+ * numbered when they first enter a points-to set instead of at creation.
+ * Each solver owns its indexer and passes it to the points-to sets it
+ * creates, which keep it, so the sets of one result always resolve to
+ * its own objects, however many analyses run in the same JVM.
+ */
+class ObjIndexer {
+
+    private final Map<Obj, Integer> indexes = Maps.newConcurrentMap();
+
+    /**
+     * Objects by index. The array is replaced (never modified in place
+     * below {@link #size}) when it grows, so reads need no lock.
+     */
+    private volatile Obj[] objects = new Obj[1024];
+
+    private int size;
+
+    /**
+     * @return the index of given object, or -1 if it has not been indexed.
+     */
+    int indexOf(Obj obj) {
+        Integer index = indexes.get(obj);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @return the index of given object, which is numbered if needed.
+     */
+    int getIndex(Obj obj) {
+        Integer index = indexes.get(obj);
+        return index != null ? index : addObject(obj);
+    }
+
+    private synchronized int addObject(Obj obj) {
+        Integer index = indexes.get(obj);
+        if (index != null) {
+            return index;
+        }
+        Obj[] objs = objects;
+        if (size == objs.length) {
+            objs = Arrays.copyOf(objs, size * 2);
+        }
+        objs[size] = obj;
+        objects = objs;
+        indexes.put(obj, size);
+        return size++;
+    }
+
+    Obj getObject(int index) {
+        return objects[index];
+    }
+}
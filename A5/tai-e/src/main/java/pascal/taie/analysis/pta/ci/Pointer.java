@@ -22,6 +22,8 @@
 
 package pascal.taie.analysis.pta.ci;
 
+import pascal.taie.language.type.Type;
+
 /**
  * Represents pointers in pointer analysis and nodes in pointer flow graph.
  *
@@ -29,9 +31,22 @@ package pascal.taie.analysis.pta.ci;
  */
 abstract class Pointer {
 
-    private final PointsToSet pointsToSet = new PointsToSet();
+    private final PointsToSet pointsToSet;
+
+    /**
+     * @param indexer indexer for the points-to set, or null.
+     * @see PointsToSet#PointsToSet(ObjIndexer)
+     */
+    Pointer(ObjIndexer indexer) {
+        pointsToSet = new PointsToSet(indexer);
+    }
 
     PointsToSet getPointsToSet() {
         return pointsToSet;
     }
+
+    /**
+     * @return the type of this pointer
+     */
+    abstract Type getType();
 }
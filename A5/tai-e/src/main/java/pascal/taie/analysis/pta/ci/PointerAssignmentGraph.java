@@ -0,0 +1,295 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+package pascal.taie.analysis.pta.ci;
+
+import pascal.taie.World;
+import pascal.taie.analysis.graph.callgraph.CallGraphs;
+import pascal.taie.analysis.pta.core.heap.HeapModel;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.ir.stmt.New;
+import pascal.taie.language.classes.JField;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.language.classes.Subsignature;
+import pascal.taie.language.type.Type;
+import pascal.taie.language.type.TypeSystem;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.MultiMap;
+import pascal.taie.util.collection.Sets;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pointer assignment graph (PAG) for demand-driven pointer analysis.
+ * <p>
+ * The PAG consists of the statements that {@link Solver} processes,
+ * taken from {@link StmtIndex}, and it is indexed by the targets of
+ * the statements (e.g., x of x = y), so that {@link DemandSolver} can
+ * traverse it backwards from the queried pointers. The statements are
+ * collected from the methods that are reachable by Rapid Type Analysis
+ * (RTA), i.e., the instance calls are resolved by the types allocated
+ * in reachable methods. RTA over-approximates the reachable methods of
+ * pointer analysis, which are resolved by the demand-driven analysis.
+ */
+class PointerAssignmentGraph {
+
+    private final HeapModel heapModel;
+
+    private final TypeSystem typeSystem = World.get().getTypeSystem();
+
+    private final StmtIndex stmtIndex = new StmtIndex();
+
+    private final Set<JMethod> methods = Sets.newSet();
+
+    private final List<Obj> objects = new ArrayList<>();
+
+    private final MultiMap<Var, New> news = Maps.newMultiMap();
+
+    private final MultiMap<Var, Var> copySources = Maps.newMultiMap();
+
+    private final MultiMap<Var, JField> staticLoads = Maps.newMultiMap();
+
+    private final MultiMap<JField, Var> staticStores = Maps.newMultiMap();
+
+    private final MultiMap<Var, Load> loads = Maps.newMultiMap();
+
+    private final MultiMap<JField, Store> stores = Maps.newMultiMap();
+
+    private final MultiMap<Var, Var> arrayLoads = Maps.newMultiMap();
+
+    private final List<Store> arrayStores = new ArrayList<>();
+
+    private final MultiMap<Var, Invoke> invokeResults = Maps.newMultiMap();
+
+    private final Map<Invoke, JMethod> staticCallees = Maps.newMap();
+
+    private final MultiMap<JMethod, Invoke> staticCallers = Maps.newMultiMap();
+
+    private final MultiMap<Subsignature, Invoke> instanceInvokes = Maps.newMultiMap();
+
+    PointerAssignmentGraph(HeapModel heapModel) {
+        this.heapModel = heapModel;
+        build(World.get().getMainMethod());
+    }
+
+    /**
+     * Collects the statements of the methods reachable from entry by RTA.
+     */
+    private void build(JMethod entry) {
+        Deque<JMethod> queue = new ArrayDeque<>();
+        List<Type> allocatedTypes = new ArrayList<>();
+        Set<Type> allocated = Sets.newSet();
+        List<Invoke> invokes = new ArrayList<>();
+        methods.add(entry);
+        queue.add(entry);
+        while (!queue.isEmpty()) {
+            JMethod method = queue.poll();
+            List<JMethod> callees = new ArrayList<>();
+            StmtIndex.MethodStmts stmts = stmtIndex.getMethodStmts(method);
+            for (New newStmt : stmts.getNews()) {
+                news.put(newStmt.getLValue(), newStmt);
+                objects.add(heapModel.getObj(newStmt));
+                Type type = newStmt.getRValue().getType();
+                if (allocated.add(type)) {
+                    allocatedTypes.add(type);
+                    invokes.forEach(invoke -> addCallee(callees, type, invoke));
+                }
+            }
+            stmts.getCopies().forEach(copy ->
+                    copySources.put(copy.getLValue(), copy.getRValue()));
+            stmts.getStaticLoads().forEach(load ->
+                    staticLoads.put(load.var(), load.field()));
+            stmts.getStaticStores().forEach(store ->
+                    staticStores.put(store.field(), store.var()));
+            stmts.getStaticCalls().forEach(call -> {
+                staticCallees.put(call.invoke(), call.callee());
+                staticCallers.put(call.callee(), call.invoke());
+                Var result = call.invoke().getLValue();
+                if (result != null) {
+                    invokeResults.put(result, call.invoke());
+                }
+                callees.add(call.callee());
+            });
+            for (Var x : method.getIR().getVars()) {
+                StmtIndex.VarStmts vStmts = stmtIndex.getVarStmts(x);
+                vStmts.getStoreFields().forEach(store ->
+                        stores.put(store.field(), new Store(x, store.var())));
+                vStmts.getLoadFields().forEach(load ->
+                        loads.put(load.var(), new Load(x, load.field())));
+                vStmts.getStoreArrays().forEach(y ->
+                        arrayStores.add(new Store(x, y)));
+                vStmts.getLoadArrays().forEach(y -> arrayLoads.put(y, x));
+                for (Invoke invoke : vStmts.getInvokes()) {
+                    invokes.add(invoke);
+                    instanceInvokes.put(invoke.getMethodRef().getSubsignature(), invoke);
+                    Var result = invoke.getLValue();
+                    if (result != null) {
+                        invokeResults.put(result, invoke);
+                    }
+                    allocatedTypes.forEach(type -> addCallee(callees, type, invoke));
+                }
+            }
+            for (JMethod callee : callees) {
+                if (callee != null && methods.add(callee)) {
+                    queue.add(callee);
+                }
+            }
+        }
+    }
+
+    private void addCallee(List<JMethod> callees, Type type, Invoke invoke) {
+        Type declaringType = invoke.getMethodRef().getDeclaringClass().getType();
+        if (typeSystem.isSubtype(declaringType, type)) {
+            callees.add(CallGraphs.resolveCallee(type, invoke));
+        }
+    }
+
+    /**
+     * @return the methods that are reachable by RTA.
+     */
+    Set<JMethod> getMethods() {
+        return Collections.unmodifiableSet(methods);
+    }
+
+    /**
+     * @return the objects allocated in the methods reachable by RTA.
+     */
+    List<Obj> getObjects() {
+        return Collections.unmodifiableList(objects);
+    }
+
+    /**
+     * @return the allocations x = new T() to given x.
+     */
+    Set<New> getNews(Var x) {
+        return news.get(x);
+    }
+
+    /**
+     * @return the variables y of copies x = y to given x.
+     */
+    Set<Var> getCopySources(Var x) {
+        return copySources.get(x);
+    }
+
+    /**
+     * @return the fields f of static loads y = T.f to given y.
+     */
+    Set<JField> getStaticLoads(Var y) {
+        return staticLoads.get(y);
+    }
+
+    /**
+     * @return the variables y of static stores T.f = y to given f.
+     */
+    Set<Var> getStaticStores(JField field) {
+        return staticStores.get(field);
+    }
+
+    /**
+     * @return the instance loads y = x.f to given y.
+     */
+    Set<Load> getLoads(Var y) {
+        return loads.get(y);
+    }
+
+    /**
+     * @return the instance stores x.f = y to given f.
+     */
+    Set<Store> getStores(JField field) {
+        return stores.get(field);
+    }
+
+    /**
+     * @return the static fields f of static stores T.f = y.
+     */
+    Set<JField> getStoredStaticFields() {
+        return Collections.unmodifiableSet(staticStores.keySet());
+    }
+
+    /**
+     * @return the instance fields f of instance stores x.f = y.
+     */
+    Set<JField> getStoredFields() {
+        return Collections.unmodifiableSet(stores.keySet());
+    }
+
+    /**
+     * @return the bases x of array loads y = x[i] to given y.
+     */
+    Set<Var> getArrayLoads(Var y) {
+        return arrayLoads.get(y);
+    }
+
+    /**
+     * @return all array stores x[i] = y.
+     */
+    List<Store> getArrayStores() {
+        return arrayStores;
+    }
+
+    /**
+     * @return the invocations whose results are assigned to given variable.
+     */
+    Set<Invoke> getInvokeResults(Var r) {
+        return invokeResults.get(r);
+    }
+
+    /**
+     * @return the resolved callee of a static invocation.
+     */
+    JMethod getStaticCallee(Invoke invoke) {
+        return staticCallees.get(invoke);
+    }
+
+    /**
+     * @return the static invocations of given method, and the instance
+     * invocations that may be dispatched to it.
+     */
+    Collection<Invoke> getCallSitesOf(JMethod method) {
+        if (method.isStatic()) {
+            return staticCallers.get(method);
+        }
+        return instanceInvokes.get(method.getSubsignature());
+    }
+
+    /**
+     * Instance load y = base.field.
+     */
+    record Load(Var base, JField field) {
+    }
+
+    /**
+     * Instance store base.field = value, or array store base[i] = value,
+     * whose field is omitted.
+     */
+    record Store(Var base, Var value) {
+    }
+}
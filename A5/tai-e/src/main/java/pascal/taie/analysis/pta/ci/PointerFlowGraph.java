@@ -39,6 +39,11 @@ import java.util.Set;
  */
 class PointerFlowGraph {
 
+    /**
+     * Indexer for the points-to sets of the pointers, or null.
+     */
+    private final ObjIndexer indexer;
+
     /**
      * Set of all pointer in this PFG.
      */
@@ -69,6 +74,14 @@ class PointerFlowGraph {
      */
     private final MultiMap<Pointer, Pointer> successors = Maps.newMultiMap();
 
+    /**
+     * @param indexer indexer for the points-to sets of the pointers,
+     *                or null if they are hybrid sets.
+     */
+    PointerFlowGraph(ObjIndexer indexer) {
+        this.indexer = indexer;
+    }
+
     /**
      * Returns all pointers in this PFG.
      */
@@ -81,7 +94,7 @@ class PointerFlowGraph {
      */
     VarPtr getVarPtr(Var var) {
         return varPtrs.computeIfAbsent(var, v -> {
-            VarPtr varPtr = new VarPtr(v);
+            VarPtr varPtr = new VarPtr(v, indexer);
             pointers.add(varPtr);
             return varPtr;
         });
@@ -92,7 +105,7 @@ class PointerFlowGraph {
      */
     StaticField getStaticField(JField field) {
         return staticFields.computeIfAbsent(field, f -> {
-            StaticField staticField = new StaticField(f);
+            StaticField staticField = new StaticField(f, indexer);
             pointers.add(staticField);
             return staticField;
         });
@@ -104,7 +117,7 @@ class PointerFlowGraph {
      */
     InstanceField getInstanceField(Obj base, JField field) {
         return instanceFields.computeIfAbsent(base, field, (b, f) -> {
-                InstanceField instanceField = new InstanceField(b, f);
+                InstanceField instanceField = new InstanceField(b, f, indexer);
                 pointers.add(instanceField);
                 return instanceField;
             });
@@ -115,7 +128,7 @@ class PointerFlowGraph {
      */
     ArrayIndex getArrayIndex(Obj array) {
         return arrayIndexes.computeIfAbsent(array, a -> {
-            ArrayIndex arrayIndex = new ArrayIndex(a);
+            ArrayIndex arrayIndex = new ArrayIndex(a, indexer);
             pointers.add(arrayIndex);
             return arrayIndex;
         });
@@ -25,6 +25,8 @@ package pascal.taie.analysis.pta.ci;
 import pascal.taie.analysis.pta.core.heap.Obj;
 import pascal.taie.util.collection.Sets;
 
+import java.util.AbstractSet;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Set;
@@ -32,24 +34,58 @@ import java.util.stream.Stream;
 
 /**
  * Represents of points-to sets.
+ * <p>
+ * A set is either a hybrid set of objects, or, if it is created with
+ * an {@link ObjIndexer} (option {@code pts:bitset}), a {@link BitSet}
+ * over the numbers of the indexer, whose union and difference are
+ * word-parallel.
  */
 class PointsToSet implements Iterable<Obj> {
 
-    private final Set<Obj> set = Sets.newHybridSet();
+    /**
+     * Objects of this set, or null if this set is a bit set.
+     */
+    private final Set<Obj> set;
+
+    /**
+     * Indexer of the bit set, or null if this set is a hybrid set.
+     */
+    private final ObjIndexer indexer;
+
+    private final BitSet bits;
 
     /**
      * Constructs an empty points-to set.
+     *
+     * @param indexer indexer of the objects of the running analysis,
+     *                or null if the set is a hybrid set.
      */
-    PointsToSet() {
+    PointsToSet(ObjIndexer indexer) {
+        this.indexer = indexer;
+        if (indexer != null) {
+            set = null;
+            bits = new BitSet();
+        } else {
+            set = Sets.newHybridSet();
+            bits = null;
+        }
     }
 
     /**
      * Constructs a points-to set containing one object.
      */
-    PointsToSet(Obj obj) {
+    PointsToSet(ObjIndexer indexer, Obj obj) {
+        this(indexer);
         addObject(obj);
     }
 
+    /**
+     * @return a new empty set of the same representation as this set.
+     */
+    PointsToSet emptySet() {
+        return new PointsToSet(indexer);
+    }
+
     /**
      * Adds an object to this set.
      *
@@ -57,51 +93,132 @@ class PointsToSet implements Iterable<Obj> {
      * otherwise false.
      */
     boolean addObject(Obj obj) {
-        return set.add(obj);
+        if (set != null) {
+            return set.add(obj);
+        }
+        int index = indexer.getIndex(obj);
+        if (bits.get(index)) {
+            return false;
+        }
+        bits.set(index);
+        return true;
+    }
+
+    /**
+     * Adds all objects in given set to this set.
+     *
+     * @return true if this points-to set changed as a result of the call,
+     * otherwise false.
+     */
+    boolean addAll(PointsToSet pts) {
+        if (set != null) {
+            return pts.set != null ? set.addAll(pts.set) : addAllOneByOne(pts);
+        }
+        if (pts.indexer != indexer) {
+            return addAllOneByOne(pts);
+        }
+        int oldSize = bits.cardinality();
+        bits.or(pts.bits);
+        return bits.cardinality() != oldSize;
+    }
+
+    private boolean addAllOneByOne(PointsToSet pts) {
+        boolean changed = false;
+        for (Obj obj : pts) {
+            changed |= addObject(obj);
+        }
+        return changed;
+    }
+
+    /**
+     * Adds all objects in given set to this set, and collects the objects
+     * that are not in this set before the call, in one pass.
+     *
+     * @return a new set of the objects actually added to this set,
+     * i.e., the difference of given set and this set before the call.
+     */
+    PointsToSet addAllDiff(PointsToSet pts) {
+        PointsToSet diff = new PointsToSet(indexer);
+        if (set == null && pts.indexer == indexer) {
+            diff.bits.or(pts.bits);
+            diff.bits.andNot(bits);
+            bits.or(diff.bits);
+            return diff;
+        }
+        for (Obj obj : pts) {
+            if (addObject(obj)) {
+                diff.addObject(obj);
+            }
+        }
+        return diff;
     }
 
     /**
      * @return true if this points-to set contains the given object, otherwise false.
      */
     boolean contains(Obj obj) {
-        return set.contains(obj);
+        if (set != null) {
+            return set.contains(obj);
+        }
+        int index = indexer.indexOf(obj);
+        return index >= 0 && bits.get(index);
     }
 
     /**
      * @return whether this set if empty.
      */
     boolean isEmpty() {
-        return set.isEmpty();
+        return set != null ? set.isEmpty() : bits.isEmpty();
     }
 
     /**
      * @return the number of objects in this set.
      */
     int size() {
-        return set.size();
+        return set != null ? set.size() : bits.cardinality();
     }
 
     /**
      * @return all objects in this set.
      */
     Stream<Obj> objects() {
-        return set.stream();
+        return set != null ? set.stream()
+                : bits.stream().mapToObj(indexer::getObject);
     }
 
     /**
      * @return all objects in this set.
      */
     Set<Obj> getObjects() {
-        return Collections.unmodifiableSet(set);
+        if (set != null) {
+            return Collections.unmodifiableSet(set);
+        }
+        return new AbstractSet<>() {
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Obj obj && PointsToSet.this.contains(obj);
+            }
+
+            @Override
+            public Iterator<Obj> iterator() {
+                return PointsToSet.this.iterator();
+            }
+
+            @Override
+            public int size() {
+                return PointsToSet.this.size();
+            }
+        };
     }
 
     @Override
     public Iterator<Obj> iterator() {
-        return set.iterator();
+        return set != null ? set.iterator() : objects().iterator();
     }
 
     @Override
     public String toString() {
-        return set.toString();
+        return set != null ? set.toString() : getObjects().toString();
     }
 }
@@ -30,14 +30,16 @@ import pascal.taie.analysis.graph.callgraph.DefaultCallGraph;
 import pascal.taie.analysis.graph.callgraph.Edge;
 import pascal.taie.analysis.pta.core.heap.HeapModel;
 import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.config.AnalysisOptions;
+import pascal.taie.config.ConfigException;
 import pascal.taie.ir.exp.FieldAccess;
 import pascal.taie.ir.exp.InstanceFieldAccess;
 import pascal.taie.ir.exp.InvokeInstanceExp;
 import pascal.taie.ir.exp.Var;
-import pascal.taie.ir.proginfo.MethodRef;
 import pascal.taie.ir.stmt.*;
 import pascal.taie.language.classes.*;
 import pascal.taie.language.type.Type;
+import pascal.taie.util.collection.Maps;
 
 import java.util.*;
 
@@ -47,6 +49,29 @@ class Solver {
 
     private final HeapModel heapModel;
 
+    /**
+     * Whether to solve by parallel wave propagation instead of
+     * the work-list algorithm.
+     */
+    private final boolean parallel;
+
+    /**
+     * Whether to filter the objects propagated to each pointer by
+     * the type of the pointer.
+     */
+    private final boolean typeFiltering;
+
+    /**
+     * Whether to exclude the statements of primitive types from
+     * the statement index.
+     */
+    private final boolean slim;
+
+    /**
+     * Indexer of the objects if points-to sets are bit sets, otherwise null.
+     */
+    private final ObjIndexer objIndexer;
+
     private DefaultCallGraph callGraph;
 
     private PointerFlowGraph pointerFlowGraph;
@@ -55,10 +80,52 @@ class Solver {
 
     private StmtProcessor stmtProcessor;
 
+    private StmtIndex stmtIndex;
+
+    private TypeFilter typeFilter;
+
+    /**
+     * Wave propagation over the SCC DAG of the PFG in parallel mode,
+     * otherwise null.
+     */
+    private WavePropagation wave;
+
     private ClassHierarchy hierarchy;
 
     Solver(HeapModel heapModel) {
+        this(heapModel, false, false, false, false);
+    }
+
+    /**
+     * Configures the solver by options "parallel" (default false),
+     * "type-filter" (default false), "slim" (default false) and "pts",
+     * which is either "hybrid" (hybrid sets of objects, the default)
+     * or "bitset" (bit sets over the indexes of objects).
+     */
+    Solver(HeapModel heapModel, AnalysisOptions options) {
+        this(heapModel, options.getBooleanOrDefault("parallel", false),
+                options.getBooleanOrDefault("type-filter", false),
+                options.getBooleanOrDefault("slim", false),
+                isBitSet(options.get("pts")));
+    }
+
+    private Solver(HeapModel heapModel, boolean parallel,
+                   boolean typeFiltering, boolean slim, boolean bitSet) {
         this.heapModel = heapModel;
+        this.parallel = parallel;
+        this.typeFiltering = typeFiltering;
+        this.slim = slim;
+        this.objIndexer = bitSet ? new ObjIndexer() : null;
+    }
+
+    private static boolean isBitSet(Object pts) {
+        if (pts == null || pts.equals("hybrid")) {
+            return false;
+        } else if (pts.equals("bitset")) {
+            return true;
+        } else {
+            throw new ConfigException("Unknown points-to set representation: " + pts);
+        }
     }
 
     /**
@@ -66,7 +133,11 @@ class Solver {
      */
     void solve() {
         initialize();
-        analyze();
+        if (parallel) {
+            analyzeInWaves();
+        } else {
+            analyze();
+        }
     }
 
     /**
@@ -74,9 +145,13 @@ class Solver {
      */
     private void initialize() {
         workList = new WorkList();
-        pointerFlowGraph = new PointerFlowGraph();
+        pointerFlowGraph = new PointerFlowGraph(objIndexer);
         callGraph = new DefaultCallGraph();
         stmtProcessor = new StmtProcessor();
+        stmtIndex = new StmtIndex(slim);
+        typeFilter = typeFiltering
+                ? new TypeFilter(World.get().getTypeSystem(), parallel) : null;
+        wave = parallel ? new WavePropagation(pointerFlowGraph, typeFilter) : null;
         hierarchy = World.get().getClassHierarchy();
         // initialize main method
         JMethod main = World.get().getMainMethod();
@@ -129,64 +204,53 @@ class Solver {
             // default Iterator<Stmt> iterator() {
             //     return getStmts().iterator();
             // }
-            method.getIR().forEach(stmt -> {
-                if (stmt instanceof New newStmt) {
-                    // x = new T();
-                    // 你可以使用 HeapModel 的 getObj(New) 方法来获得与它对应的抽象对象（即 Obj）。因为我们采用了第 8 讲课件第 44 页中介绍的创建点抽象，所以该方法为每个 New 语句返回一个唯一的抽象对象。
-                    Var x = newStmt.getLValue();
-                    Obj newT = heapModel.getObj(newStmt);
-                    workList.addEntry(pointerFlowGraph.getVarPtr(x), new PointsToSet(newT));
-                } else if (stmt instanceof Copy copyStmt) {
-                    // x = y;
-                    Var x = copyStmt.getRValue();
-                    Var y = copyStmt.getLValue();
-                    addPFGEdge(pointerFlowGraph.getVarPtr(x), pointerFlowGraph.getVarPtr(y)); // source, target
-                } else if (stmt instanceof StoreField storeFieldStmt) {
-                    // x.f = y;
-                    JField f = storeFieldStmt.getFieldRef().resolve();
-                    Var y = storeFieldStmt.getRValue();
-                    // 这两个类也提供了 isStatic() 方法来检查一个 LoadField/StoreField 语句是 load/store 静态字段还是实例字段
-                    // 静态字段的处理很简单：我们只需要在静态字段和变量之间传值。TODO 怎么没有静态变量之间的操作
-                    if (f.isStatic()) {
-                        addPFGEdge(pointerFlowGraph.getVarPtr(y), pointerFlowGraph.getStaticField(f)); // source, target
-                    }
-                } else if (stmt instanceof LoadField loadFieldStmt) {
-                    // y = x.f;
-                    // TODO resolve干了什么?
-                    JField f = loadFieldStmt.getFieldRef().resolve();
-                    Var y = loadFieldStmt.getLValue();
-                    if (f.isStatic()) {
-                        addPFGEdge(pointerFlowGraph.getStaticField(f), pointerFlowGraph.getVarPtr(y));
-                    }
-                } else if (stmt instanceof Invoke l) {
-                    // 只处理 static调用,因为 static调用不需要 receive object
-                    if (l.isStatic()) {
-                        // r = T.m(a1,...,an)
-                        MethodRef methodRef = l.getMethodRef();
-                        JMethod m = methodRef.getDeclaringClass().getDeclaredMethod(methodRef.getSubsignature());
-                        // 检查调用边是否已经添加过
-                        if (callGraph.addEdge(new Edge<>(CallGraphs.getCallKind(l), l, m))) {
-                            addReachable(m);
-                            addCallEdge(m, l);
-                        }
-                    }
+            StmtIndex.MethodStmts stmts = stmtIndex.getMethodStmts(method);
+            if (stmts.isEmpty()) {
+                return;
+            }
+            stmts.getNews().forEach(newStmt -> {
+                // x = new T();
+                // 你可以使用 HeapModel 的 getObj(New) 方法来获得与它对应的抽象对象（即 Obj）。因为我们采用了第 8 讲课件第 44 页中介绍的创建点抽象，所以该方法为每个 New 语句返回一个唯一的抽象对象。
+                Var x = newStmt.getLValue();
+                Obj newT = heapModel.getObj(newStmt);
+                workList.addEntry(pointerFlowGraph.getVarPtr(x), new PointsToSet(objIndexer, newT));
+            });
+            stmts.getCopies().forEach(copyStmt -> {
+                // x = y;
+                Var x = copyStmt.getRValue();
+                Var y = copyStmt.getLValue();
+                addPFGEdge(pointerFlowGraph.getVarPtr(x), pointerFlowGraph.getVarPtr(y)); // source, target
+            });
+            // 静态字段的处理很简单：我们只需要在静态字段和变量之间传值。
+            stmts.getStaticStores().forEach(store -> // T.f = y;
+                    addPFGEdge(pointerFlowGraph.getVarPtr(store.var()), pointerFlowGraph.getStaticField(store.field())));
+            stmts.getStaticLoads().forEach(load -> // y = T.f;
+                    addPFGEdge(pointerFlowGraph.getStaticField(load.field()), pointerFlowGraph.getVarPtr(load.var())));
+            // 只处理 static调用,因为 static调用不需要 receive object
+            stmts.getStaticCalls().forEach(call -> {
+                // r = T.m(a1,...,an)
+                Invoke l = call.invoke();
+                JMethod m = call.callee();
+                // 检查调用边是否已经添加过
+                if (callGraph.addEdge(new Edge<>(CallGraphs.getCallKind(l), l, m))) {
+                    addReachable(m);
+                    addCallEdge(m, l);
                 }
-                // 数组也是静态的呢?
             });
         }
     }
 
     private void addCallEdge(JMethod m, Invoke invokeStmt) {
+        StmtIndex.MethodStmts stmts = stmtIndex.getMethodStmts(m);
         // add actuals -> params
-        List<Var> params = m.getIR().getParams();
         List<Var> actuals = invokeStmt.getRValue().getArgs();
-        for (int i = 0; i < params.size(); i++) {
-            addPFGEdge(pointerFlowGraph.getVarPtr(actuals.get(i)), pointerFlowGraph.getVarPtr(params.get(i)));
-        }
+        stmts.getParams().forEach(param -> addPFGEdge(
+                pointerFlowGraph.getVarPtr(actuals.get(param.index())),
+                pointerFlowGraph.getVarPtr(param.var())));
         // add return values -> r
         Var lValue = invokeStmt.getLValue(); // @Nullable
         if (lValue != null) {
-            m.getIR().getReturnVars().forEach(returnVar -> {
+            stmts.getReturnVars().forEach(returnVar -> {
                 addPFGEdge(pointerFlowGraph.getVarPtr(returnVar), pointerFlowGraph.getVarPtr(lValue));
             });
         }
@@ -290,6 +354,9 @@ class Solver {
         // TODO - finish me
         // true if this PFG changed as a result of the call
         if (pointerFlowGraph.addEdge(source, target)) {
+            if (wave != null) {
+                wave.addEdge(source, target);
+            }
             PointsToSet pts = source.getPointsToSet();
             if (!pts.isEmpty()) {
                 // TODO 这里需要拷贝吗
@@ -298,12 +365,6 @@ class Solver {
         }
     }
 
-    private <T> Set<T> getSetDifference(Set<T> x, Set<T> y) {
-        Set<T> diff = new HashSet<>(x);
-        diff.removeAll(y);
-        return diff;
-    }
-
     /**
      * Processes work-list entries until the work-list is empty.
      */
@@ -318,53 +379,82 @@ class Solver {
             PointsToSet delta = propagate(n, pts);
             // 3. if n represents a variable x then
             if (n instanceof VarPtr varPtr) {
-                Var x = varPtr.getVar();
-                // 3.1 foreach oi in Δ do
-                delta.getObjects().forEach(oi -> {
-                    // 3.1.1 foreach x.f = y in S do
-                    x.getStoreFields().forEach(storeField -> {
-                        Var y = storeField.getRValue();
-                        JField f = storeField.getFieldRef().resolve();
-                        addPFGEdge(pointerFlowGraph.getVarPtr(y), pointerFlowGraph.getInstanceField(oi, f));
-                    });
-                    // 3.1.1 foreach y = x.f in S do
-                    x.getLoadFields().forEach(loadField -> {
-                        Var y = loadField.getLValue();
-                        JField f = loadField.getFieldRef().resolve();
-                        addPFGEdge(pointerFlowGraph.getInstanceField(oi, f), pointerFlowGraph.getVarPtr(y));
-                    });
-                    // TODO 不要忘记在这个方法中处理数组 loads/stores。
-                    x.getStoreArrays().forEach(storeArray -> {
-                        Var y = storeArray.getRValue();
-                        addPFGEdge(pointerFlowGraph.getVarPtr(y), pointerFlowGraph.getArrayIndex(oi));
-                    });
-                    x.getLoadArrays().forEach(loadArray -> {
-                        Var y = loadArray.getLValue();
-                        addPFGEdge(pointerFlowGraph.getArrayIndex(oi), pointerFlowGraph.getVarPtr(y));
-                    });
-                    processCall(varPtr.getVar(), oi);
-                });
+                processVar(varPtr, delta);
             }
         }
     }
 
+    /**
+     * Processes the objects newly pointed to by a variable.
+     */
+    private void processVar(VarPtr varPtr, PointsToSet delta) {
+        StmtIndex.VarStmts stmts = stmtIndex.getVarStmts(varPtr.getVar());
+        if (stmts.isEmpty()) {
+            return;
+        }
+        // 3.1 foreach oi in Δ do
+        delta.getObjects().forEach(oi -> {
+            // 3.1.1 foreach x.f = y in S do
+            stmts.getStoreFields().forEach(store -> addPFGEdge(
+                    pointerFlowGraph.getVarPtr(store.var()), pointerFlowGraph.getInstanceField(oi, store.field())));
+            // 3.1.1 foreach y = x.f in S do
+            stmts.getLoadFields().forEach(load -> addPFGEdge(
+                    pointerFlowGraph.getInstanceField(oi, load.field()), pointerFlowGraph.getVarPtr(load.var())));
+            stmts.getStoreArrays().forEach(y -> addPFGEdge(
+                    pointerFlowGraph.getVarPtr(y), pointerFlowGraph.getArrayIndex(oi)));
+            stmts.getLoadArrays().forEach(y -> addPFGEdge(
+                    pointerFlowGraph.getArrayIndex(oi), pointerFlowGraph.getVarPtr(y)));
+            processCall(stmts.getInvokes(), oi);
+        });
+    }
+
+    /**
+     * Solves by rounds of parallel wave propagation, instead of
+     * propagating the points-to sets of work-list entries one by one.
+     * Each round:
+     * <ol>
+     *     <li>adds the points-to sets of pending work-list entries to their
+     *     pointers (the PFG edges are handled by the wave);</li>
+     *     <li>propagates the new objects of this round over the PFG by
+     *     {@link WavePropagation};</li>
+     *     <li>processes the new objects of each variable, which may add
+     *     new PFG edges, reachable methods and work-list entries.</li>
+     * </ol>
+     * The analysis reaches the fixed point when a round adds no work-list
+     * entries, which gives the same result as {@link #analyze()} without
+     * type filtering. With type filtering, both the work-list entries and
+     * the objects propagated by the wave are filtered, which gives the
+     * same result as {@link #analyze()} as well.
+     */
+    private void analyzeInWaves() {
+        int rounds = 0;
+        while (!workList.isEmpty()) {
+            ++rounds;
+            while (!workList.isEmpty()) {
+                WorkList.Entry entry = workList.pollEntry();
+                Pointer pointer = entry.pointer();
+                wave.addEntry(pointer, filter(pointer, entry.pointsToSet()));
+            }
+            wave.propagate().forEach((pointer, delta) -> {
+                if (pointer instanceof VarPtr varPtr) {
+                    processVar(varPtr, delta);
+                }
+            });
+        }
+        logger.info("Wave propagation reached fixed point in {} rounds", rounds);
+    }
+
     /**
      * Propagates pointsToSet to pt(pointer) and its PFG successors,
      * returns the difference set of pointsToSet and pt(pointer).
      */
     private PointsToSet propagate(Pointer n, PointsToSet pts) {
         // TODO - finish me
+        pts = filter(n, pts);
         if (pts.isEmpty()) {
-            return new PointsToSet();
+            return new PointsToSet(objIndexer);
         }
-        PointsToSet ptn = n.getPointsToSet();
-        Set<Obj> difference = getSetDifference(pts.getObjects(), ptn.getObjects());
-
-        PointsToSet delta = new PointsToSet();
-        difference.forEach(obj -> {
-            ptn.addObject(obj);
-            delta.addObject(obj);
-        });
+        PointsToSet delta = n.getPointsToSet().addAllDiff(pts);
 
         if (!delta.isEmpty()) {
             pointerFlowGraph.getSuccsOf(n).forEach(s -> workList.addEntry(s, delta));
@@ -372,18 +462,24 @@ class Solver {
         return delta;
     }
 
+    /**
+     * @return the objects in pts that can be held by the pointer,
+     * if type filtering is enabled, otherwise pts itself.
+     */
+    private PointsToSet filter(Pointer pointer, PointsToSet pts) {
+        return typeFilter != null ? typeFilter.filter(pointer, pts) : pts;
+    }
+
     /**
      * Processes instance calls when points-to set of the receiver variable changes.
      *
-     * @param x the variable that holds receiver objects
-     * @param oi a new discovered object pointed by the variable.
+     * @param invokes the instance invocations on the variable
+     *                that holds receiver objects
+     * @param oi      a new discovered object pointed by the variable.
      */
-    private void processCall(Var x, Obj oi) {
+    private void processCall(List<Invoke> invokes, Obj oi) {
         // TODO - finish me
-        x.getInvokes().forEach(l -> {
-            if (l.isStatic()) { // static已经处理过了
-                return;
-            }
+        invokes.forEach(l -> { // static调用已经在 addReachable 中处理过了
             // 你将在这个方法中处理所有种类的实例方法调用，即虚调用、接口调用和特殊调用。
             // 处理接口调用和特殊调用的逻辑与处理虚调用的逻辑完全相同（你在课上已经学过）。
             // 你也可以使用上面提到的 resolveCallee() （代替算法中的 Dispatch）来解析所有种类的实例方法调用，
@@ -391,7 +487,7 @@ class Solver {
             JMethod m = resolveCallee(oi, l);
             // TODO m_this 怎么表示? 解决方法:调试到这里,查看m所有属性
             Var m_this = m.getIR().getThis();
-            workList.addEntry(pointerFlowGraph.getVarPtr(m_this), new PointsToSet(oi));
+            workList.addEntry(pointerFlowGraph.getVarPtr(m_this), new PointsToSet(objIndexer, oi));
 
             if (callGraph.addEdge(new Edge<>(CallGraphs.getCallKind(l), l, m))) { // true if the call graph changed as a result of the call
                 // 添加边成功,添加可达方法
@@ -0,0 +1,341 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.ci;
+
+import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.proginfo.MethodRef;
+import pascal.taie.ir.stmt.Copy;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.ir.stmt.LoadField;
+import pascal.taie.ir.stmt.New;
+import pascal.taie.ir.stmt.StoreField;
+import pascal.taie.language.classes.JField;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.language.type.ReferenceType;
+import pascal.taie.util.collection.Maps;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the statements relevant to pointer analysis. The statements
+ * of a method are indexed once when the method becomes reachable, with
+ * field references and static callees resolved, so that the solver does
+ * not resolve references when it processes the method and does not
+ * re-scan the IR when it processes points-to sets.
+ * <p>
+ * The index of a method is a compact summary of the method for pointer
+ * analysis, which also includes the parameters and return variables used
+ * by call edges. A method without any statement, parameter and return
+ * variable relevant to pointer analysis has an empty summary, so that
+ * the solver skips it. If the index is slim, the statements that only
+ * move values of primitive types, e.g., int x = y, are excluded, as
+ * they never hold objects; then the solver computes the same points-to
+ * sets, but does not create pointers of primitive types.
+ */
+class StmtIndex {
+
+    private final boolean slim;
+
+    private final Map<JMethod, MethodStmts> methodStmts = Maps.newMap();
+
+    private final Map<Var, VarStmts> varStmts = Maps.newMap();
+
+    StmtIndex() {
+        this(false);
+    }
+
+    /**
+     * @param slim whether to exclude the statements of primitive types.
+     */
+    StmtIndex(boolean slim) {
+        this.slim = slim;
+    }
+
+    /**
+     * @return the statements of given method that are processed when the
+     * method becomes reachable. Indexes the method on first request.
+     */
+    MethodStmts getMethodStmts(JMethod method) {
+        return methodStmts.computeIfAbsent(method, this::index);
+    }
+
+    /**
+     * @return the statements that are processed when the points-to set
+     * of given variable changes. The declaring method of the variable
+     * must have been indexed by {@link #getMethodStmts(JMethod)}.
+     */
+    VarStmts getVarStmts(Var var) {
+        return varStmts.getOrDefault(var, VarStmts.EMPTY);
+    }
+
+    private MethodStmts index(JMethod method) {
+        IR ir = method.getIR();
+        MethodStmts mStmts = new MethodStmts();
+        ir.forEach(stmt -> {
+            if (stmt instanceof New newStmt) {
+                mStmts.news.add(newStmt);
+            } else if (stmt instanceof Copy copy) {
+                if (isRelevant(copy.getLValue())) {
+                    mStmts.copies.add(copy);
+                }
+            } else if (stmt instanceof StoreField storeField
+                    && storeField.isStatic()) {
+                if (isRelevant(storeField.getRValue())) {
+                    JField f = storeField.getFieldRef().resolve();
+                    mStmts.staticStores.add(new FieldAccess(f, storeField.getRValue()));
+                }
+            } else if (stmt instanceof LoadField loadField
+                    && loadField.isStatic()) {
+                if (isRelevant(loadField.getLValue())) {
+                    JField f = loadField.getFieldRef().resolve();
+                    mStmts.staticLoads.add(new FieldAccess(f, loadField.getLValue()));
+                }
+            } else if (stmt instanceof Invoke invoke && invoke.isStatic()) {
+                MethodRef methodRef = invoke.getMethodRef();
+                JMethod callee = methodRef.getDeclaringClass()
+                        .getDeclaredMethod(methodRef.getSubsignature());
+                mStmts.staticCalls.add(new StaticCall(invoke, callee));
+            }
+        });
+        List<Var> params = ir.getParams();
+        for (int i = 0; i < params.size(); ++i) {
+            if (isRelevant(params.get(i))) {
+                mStmts.params.add(new Param(i, params.get(i)));
+            }
+        }
+        ir.getReturnVars().forEach(ret -> {
+            if (isRelevant(ret)) {
+                mStmts.returnVars.add(ret);
+            }
+        });
+        boolean hasVarStmts = false;
+        for (Var x : ir.getVars()) {
+            VarStmts vStmts = new VarStmts();
+            x.getStoreFields().forEach(storeField -> {
+                if (isRelevant(storeField.getRValue())) {
+                    vStmts.storeFields.add(new FieldAccess(
+                            storeField.getFieldRef().resolve(),
+                            storeField.getRValue()));
+                }
+            });
+            x.getLoadFields().forEach(loadField -> {
+                if (isRelevant(loadField.getLValue())) {
+                    vStmts.loadFields.add(new FieldAccess(
+                            loadField.getFieldRef().resolve(),
+                            loadField.getLValue()));
+                }
+            });
+            x.getStoreArrays().forEach(storeArray -> {
+                if (isRelevant(storeArray.getRValue())) {
+                    vStmts.storeArrays.add(storeArray.getRValue());
+                }
+            });
+            x.getLoadArrays().forEach(loadArray -> {
+                if (isRelevant(loadArray.getLValue())) {
+                    vStmts.loadArrays.add(loadArray.getLValue());
+                }
+            });
+            x.getInvokes().forEach(invoke -> {
+                if (!invoke.isStatic()) {
+                    vStmts.invokes.add(invoke);
+                }
+            });
+            if (!vStmts.isEmpty()) {
+                varStmts.put(x, vStmts);
+                hasVarStmts = true;
+            }
+        }
+        return mStmts.isEmpty() && !hasVarStmts ? MethodStmts.EMPTY : mStmts;
+    }
+
+    /**
+     * @return whether given variable may hold objects. If the index is
+     * not slim, all variables are considered.
+     */
+    private boolean isRelevant(Var var) {
+        return !slim || var.getType() instanceof ReferenceType;
+    }
+
+    /**
+     * Access to a resolved field, which moves objects from or to
+     * variable {@code var}, e.g., {@code var = x.field}.
+     */
+    record FieldAccess(JField field, Var var) {
+    }
+
+    /**
+     * Static invocation with its resolved callee.
+     */
+    record StaticCall(Invoke invoke, JMethod callee) {
+    }
+
+    /**
+     * Parameter of a method with its index.
+     */
+    record Param(int index, Var var) {
+    }
+
+    static class MethodStmts {
+
+        /**
+         * Summary of the methods that are irrelevant to pointer analysis.
+         */
+        private static final MethodStmts EMPTY = new MethodStmts();
+
+        private final List<New> news = new ArrayList<>();
+
+        private final List<Copy> copies = new ArrayList<>();
+
+        private final List<FieldAccess> staticStores = new ArrayList<>();
+
+        private final List<FieldAccess> staticLoads = new ArrayList<>();
+
+        private final List<StaticCall> staticCalls = new ArrayList<>();
+
+        private final List<Param> params = new ArrayList<>();
+
+        private final List<Var> returnVars = new ArrayList<>();
+
+        /**
+         * @return the allocations x = new T().
+         */
+        List<New> getNews() {
+            return news;
+        }
+
+        /**
+         * @return the copies x = y.
+         */
+        List<Copy> getCopies() {
+            return copies;
+        }
+
+        /**
+         * @return the static stores T.f = y, each with f and y.
+         */
+        List<FieldAccess> getStaticStores() {
+            return staticStores;
+        }
+
+        /**
+         * @return the static loads y = T.f, each with f and y.
+         */
+        List<FieldAccess> getStaticLoads() {
+            return staticLoads;
+        }
+
+        /**
+         * @return the static invocations r = T.m(...).
+         */
+        List<StaticCall> getStaticCalls() {
+            return staticCalls;
+        }
+
+        /**
+         * @return the parameters that receive objects from call sites.
+         */
+        List<Param> getParams() {
+            return params;
+        }
+
+        /**
+         * @return the return variables that pass objects to call sites.
+         */
+        List<Var> getReturnVars() {
+            return returnVars;
+        }
+
+        /**
+         * @return true if the method has no statements to process when
+         * it becomes reachable, and no parameters or return variables for
+         * call edges. The methods that are irrelevant to pointer analysis,
+         * i.e., whose variables have no {@link VarStmts} either, share one
+         * empty summary.
+         */
+        boolean isEmpty() {
+            return news.isEmpty() && copies.isEmpty()
+                    && staticStores.isEmpty() && staticLoads.isEmpty()
+                    && staticCalls.isEmpty()
+                    && params.isEmpty() && returnVars.isEmpty();
+        }
+    }
+
+    static class VarStmts {
+
+        private static final VarStmts EMPTY = new VarStmts();
+
+        private final List<FieldAccess> storeFields = new ArrayList<>();
+
+        private final List<FieldAccess> loadFields = new ArrayList<>();
+
+        private final List<Var> storeArrays = new ArrayList<>();
+
+        private final List<Var> loadArrays = new ArrayList<>();
+
+        private final List<Invoke> invokes = new ArrayList<>();
+
+        /**
+         * @return the instance stores x.f = y, each with f and y.
+         */
+        List<FieldAccess> getStoreFields() {
+            return storeFields;
+        }
+
+        /**
+         * @return the instance loads y = x.f, each with f and y.
+         */
+        List<FieldAccess> getLoadFields() {
+            return loadFields;
+        }
+
+        /**
+         * @return the variables y of array stores x[i] = y.
+         */
+        List<Var> getStoreArrays() {
+            return storeArrays;
+        }
+
+        /**
+         * @return the variables y of array loads y = x[i].
+         */
+        List<Var> getLoadArrays() {
+            return loadArrays;
+        }
+
+        /**
+         * @return the instance invocations on x.
+         */
+        List<Invoke> getInvokes() {
+            return invokes;
+        }
+
+        boolean isEmpty() {
+            return storeFields.isEmpty() && loadFields.isEmpty()
+                    && storeArrays.isEmpty() && loadArrays.isEmpty()
+                    && invokes.isEmpty();
+        }
+    }
+}
@@ -23,6 +23,7 @@
 package pascal.taie.analysis.pta.ci;
 
 import pascal.taie.ir.exp.Var;
+import pascal.taie.language.type.Type;
 
 /**
  * Represents local variable pointer in PFG.
@@ -31,7 +32,8 @@ class VarPtr extends Pointer {
 
     private final Var var;
 
-    VarPtr(Var var) {
+    VarPtr(Var var, ObjIndexer indexer) {
+        super(indexer);
         this.var = var;
     }
 
@@ -42,6 +44,11 @@ class VarPtr extends Pointer {
         return var;
     }
 
+    @Override
+    Type getType() {
+        return var.getType();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -0,0 +1,345 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.ci;
+
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.MultiMap;
+import pascal.taie.util.collection.Sets;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Wave propagation of points-to sets over the PFG.
+ * <p>
+ * The PFG is condensed into a DAG of its SCCs, which is maintained
+ * incrementally as edges are added: the SCCs are kept in a topological
+ * order (Pearce and Kelly's dynamic topological sort), and the SCCs on
+ * a cycle closed by a new edge are merged.
+ * <p>
+ * Each round only propagates the objects that pointers gained in this
+ * round, i.e., the deltas, and only visits the SCCs reachable from the
+ * pointers with new objects. These SCCs are grouped into waves: an SCC
+ * belongs to wave i if the longest path reaching it from a changed SCC
+ * has i edges. An SCC reads the deltas of its predecessors, which are
+ * all in earlier waves, and writes only the points-to sets and deltas of
+ * its own pointers, so the SCCs of one wave are processed concurrently.
+ */
+class WavePropagation {
+
+    private final PointerFlowGraph pointerFlowGraph;
+
+    /**
+     * Filter of the objects propagated to each pointer, or null if
+     * type filtering is disabled.
+     */
+    private final TypeFilter typeFilter;
+
+    /**
+     * Map from a pointer to the SCC that contains it.
+     */
+    private final Map<Pointer, SCC> sccs = Maps.newMap();
+
+    /**
+     * Map from a pointer to its predecessors in the PFG.
+     */
+    private final MultiMap<Pointer, Pointer> preds = Maps.newMultiMap();
+
+    /**
+     * Objects gained by each pointer in the current round.
+     */
+    private Map<Pointer, PointsToSet> deltas = Maps.newConcurrentMap();
+
+    private int nextOrder = 0;
+
+    WavePropagation(PointerFlowGraph pointerFlowGraph, TypeFilter typeFilter) {
+        this.pointerFlowGraph = pointerFlowGraph;
+        this.typeFilter = typeFilter;
+    }
+
+    /**
+     * Adds an edge (source -> target) of the PFG to the SCC DAG.
+     * The points-to set of source should be propagated to target by
+     * a separate entry, see {@link #addEntry(Pointer, PointsToSet)}.
+     */
+    void addEdge(Pointer source, Pointer target) {
+        preds.put(target, source);
+        SCC from = getSCC(source);
+        SCC to = getSCC(target);
+        if (from == to || !from.succs.add(to)) {
+            return;
+        }
+        to.preds.add(from);
+        if (from.order < to.order) {
+            return;
+        }
+        // the topological order is violated: reorder the affected SCCs,
+        // i.e., the ones reachable from `to` and the ones reaching `from`
+        // between the orders of `to` and `from`
+        Set<SCC> forward = Sets.newSet();
+        boolean cyclic = search(to, from.order, true, forward, from);
+        Set<SCC> backward = Sets.newSet();
+        search(from, to.order, false, backward, null);
+        // the SCCs on the new cycles are in both forward and backward,
+        // so their orders are collected once
+        Set<SCC> affected = Sets.newSet(forward.size() + backward.size());
+        affected.addAll(forward);
+        affected.addAll(backward);
+        List<Integer> orders = new ArrayList<>(affected.size());
+        affected.forEach(scc -> orders.add(scc.order));
+        orders.sort(null);
+        List<SCC> reordered = new ArrayList<>();
+        if (cyclic) {
+            // the SCCs both reachable from `to` and reaching `from`
+            // are on the new cycles
+            Set<SCC> cycle = Sets.newSet();
+            forward.forEach(scc -> {
+                if (backward.contains(scc)) {
+                    cycle.add(scc);
+                }
+            });
+            forward.removeAll(cycle);
+            backward.removeAll(cycle);
+            addSorted(reordered, backward);
+            reordered.add(merge(cycle));
+        } else {
+            addSorted(reordered, backward);
+        }
+        addSorted(reordered, forward);
+        // the SCCs merged into one leave some orders unused; the affected
+        // SCCs are connected to others only outside the range of orders,
+        // thus taking the smallest ones keeps the order topological
+        for (int i = 0; i < reordered.size(); ++i) {
+            reordered.get(i).order = orders.get(i);
+        }
+    }
+
+    /**
+     * Searches the SCCs reachable from start (or reaching start if not
+     * forward), whose orders are not beyond bound.
+     *
+     * @return true if target is reached.
+     */
+    private static boolean search(SCC start, int bound, boolean forward,
+                                  Set<SCC> visited, SCC target) {
+        boolean found = false;
+        Deque<SCC> stack = new ArrayDeque<>();
+        stack.push(start);
+        visited.add(start);
+        while (!stack.isEmpty()) {
+            SCC scc = stack.pop();
+            found |= scc == target;
+            for (SCC next : forward ? scc.succs : scc.preds) {
+                if ((forward ? next.order <= bound : next.order >= bound)
+                        && visited.add(next)) {
+                    stack.push(next);
+                }
+            }
+        }
+        return found;
+    }
+
+    private static void addSorted(List<SCC> list, Set<SCC> sccs) {
+        List<SCC> sorted = new ArrayList<>(sccs);
+        sorted.sort(Comparator.comparingInt(scc -> scc.order));
+        list.addAll(sorted);
+    }
+
+    /**
+     * Merges given SCCs into a new SCC.
+     */
+    private SCC merge(Set<SCC> cycle) {
+        SCC merged = new SCC(-1);
+        for (SCC scc : cycle) {
+            merged.pointers.addAll(scc.pointers);
+            scc.succs.forEach(succ -> {
+                if (!cycle.contains(succ)) {
+                    merged.succs.add(succ);
+                    succ.preds.remove(scc);
+                    succ.preds.add(merged);
+                }
+            });
+            scc.preds.forEach(pred -> {
+                if (!cycle.contains(pred)) {
+                    merged.preds.add(pred);
+                    pred.succs.remove(scc);
+                    pred.succs.add(merged);
+                }
+            });
+        }
+        merged.pointers.forEach(p -> sccs.put(p, merged));
+        return merged;
+    }
+
+    private SCC getSCC(Pointer pointer) {
+        return sccs.computeIfAbsent(pointer, p -> {
+            SCC scc = new SCC(nextOrder++);
+            scc.pointers.add(p);
+            return scc;
+        });
+    }
+
+    /**
+     * Adds pts to the points-to set of pointer, and records the new
+     * objects as the delta of pointer in the current round. The caller
+     * filters pts by the type of pointer.
+     */
+    void addEntry(Pointer pointer, PointsToSet pts) {
+        PointsToSet diff = pointer.getPointsToSet().addAllDiff(pts);
+        if (!diff.isEmpty()) {
+            getDelta(pointer).addAll(diff);
+        }
+    }
+
+    private PointsToSet getDelta(Pointer pointer) {
+        return deltas.computeIfAbsent(pointer, p -> p.getPointsToSet().emptySet());
+    }
+
+    /**
+     * Propagates the deltas of the current round along the PFG until
+     * every pointer contains the points-to sets of its predecessors.
+     *
+     * @return the objects gained by each pointer in this round.
+     */
+    Map<Pointer, PointsToSet> propagate() {
+        Set<SCC> reachable = Sets.newSet();
+        for (Pointer pointer : deltas.keySet()) {
+            SCC scc = getSCC(pointer);
+            if (!reachable.contains(scc)) {
+                search(scc, Integer.MAX_VALUE, true, reachable, null);
+            }
+        }
+        List<SCC> sorted = new ArrayList<>(reachable);
+        sorted.sort(Comparator.comparingInt(scc -> scc.order));
+        Map<SCC, Integer> levels = Maps.newMap(sorted.size());
+        List<List<SCC>> waves = new ArrayList<>();
+        for (SCC scc : sorted) {
+            int level = 0;
+            for (SCC pred : scc.preds) {
+                // predecessors precede scc in the topological order
+                Integer predLevel = levels.get(pred);
+                if (predLevel != null) {
+                    level = Math.max(level, predLevel + 1);
+                }
+            }
+            levels.put(scc, level);
+            if (level == waves.size()) {
+                waves.add(new ArrayList<>());
+            }
+            waves.get(level).add(scc);
+        }
+        for (List<SCC> wave : waves) {
+            wave.parallelStream().forEach(this::propagate);
+        }
+        Map<Pointer, PointsToSet> result = deltas;
+        deltas = Maps.newConcurrentMap();
+        return result;
+    }
+
+    /**
+     * Propagates the deltas of the predecessors of an SCC to its
+     * pointers, and then the new objects inside the SCC by a local
+     * work-list.
+     */
+    private void propagate(SCC scc) {
+        Map<Pointer, PointsToSet> pending = Maps.newMap();
+        Deque<Pointer> workList = new ArrayDeque<>();
+        for (Pointer pointer : scc.pointers) {
+            for (Pointer pred : preds.get(pointer)) {
+                PointsToSet delta = deltas.get(pred);
+                if (delta != null && sccs.get(pred) != scc) {
+                    addPending(pending, workList, pointer, delta);
+                }
+            }
+            // objects gained from work-list entries
+            PointsToSet delta = deltas.get(pointer);
+            if (delta != null) {
+                addToSuccs(scc, pointer, delta, pending, workList);
+            }
+        }
+        while (!workList.isEmpty()) {
+            Pointer pointer = workList.poll();
+            PointsToSet pts = pending.remove(pointer);
+            if (typeFilter != null) {
+                pts = typeFilter.filter(pointer, pts);
+            }
+            PointsToSet diff = pointer.getPointsToSet().addAllDiff(pts);
+            if (!diff.isEmpty()) {
+                getDelta(pointer).addAll(diff);
+                addToSuccs(scc, pointer, diff, pending, workList);
+            }
+        }
+    }
+
+    /**
+     * Adds pts to the pending objects of the successors of pointer
+     * in the same SCC.
+     */
+    private void addToSuccs(SCC scc, Pointer pointer, PointsToSet pts,
+                            Map<Pointer, PointsToSet> pending,
+                            Deque<Pointer> workList) {
+        for (Pointer succ : pointerFlowGraph.getSuccsOf(pointer)) {
+            if (sccs.get(succ) == scc) {
+                addPending(pending, workList, succ, pts);
+            }
+        }
+    }
+
+    private static void addPending(Map<Pointer, PointsToSet> pending,
+                                   Deque<Pointer> workList,
+                                   Pointer pointer, PointsToSet pts) {
+        PointsToSet objs = pending.get(pointer);
+        if (objs == null) {
+            objs = pts.emptySet();
+            pending.put(pointer, objs);
+            workList.add(pointer);
+        }
+        objs.addAll(pts);
+    }
+
+    /**
+     * Node of the SCC DAG.
+     */
+    private static class SCC {
+
+        private final List<Pointer> pointers = new ArrayList<>();
+
+        private final Set<SCC> succs = Sets.newHybridSet();
+
+        private final Set<SCC> preds = Sets.newHybridSet();
+
+        /**
+         * Position of this SCC in the topological order.
+         */
+        private int order;
+
+        private SCC(int order) {
+            this.order = order;
+        }
+    }
+}
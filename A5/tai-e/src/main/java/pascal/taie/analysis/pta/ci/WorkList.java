@@ -22,21 +22,56 @@
 
 package pascal.taie.analysis.pta.ci;
 
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.Sets;
+
 import java.util.ArrayDeque;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 
 /**
  * Represents work list in pointer analysis.
+ * <p>
+ * Pending points-to sets are merged per pointer, i.e., a pointer that
+ * receives several points-to sets before it is processed has only one
+ * entry, whose points-to set is the union of them. Pointers are
+ * processed in the order in which they first became pending.
  */
 class WorkList {
 
-    private final Queue<Entry> entries = new ArrayDeque<>();
+    /**
+     * Map from pending pointer to its pending points-to set.
+     */
+    private final Map<Pointer, PointsToSet> pointsToSets = Maps.newMap();
+
+    /**
+     * Pending pointers whose points-to sets are private copies owned by
+     * this work list. Other pending sets are shared with the caller,
+     * thus they are copied before another set is merged into them.
+     */
+    private final Set<Pointer> owned = Sets.newSet();
+
+    private final Queue<Pointer> pointers = new ArrayDeque<>();
 
     /**
-     * Adds an entry to the work list.
+     * Adds an entry to the work list. If the pointer is already pending,
+     * given points-to set is merged into its pending set.
      */
     void addEntry(Pointer pointer, PointsToSet pointsToSet) {
-        entries.add(new Entry(pointer, pointsToSet));
+        PointsToSet pending = pointsToSets.get(pointer);
+        if (pending == null) {
+            pointsToSets.put(pointer, pointsToSet);
+            pointers.add(pointer);
+        } else {
+            if (owned.add(pointer)) {
+                PointsToSet copy = pending.emptySet();
+                copy.addAll(pending);
+                pointsToSets.put(pointer, copy);
+                pending = copy;
+            }
+            pending.addAll(pointsToSet);
+        }
     }
 
     /**
@@ -44,14 +79,19 @@ class WorkList {
      * if this work list is empty.
      */
     Entry pollEntry() {
-        return entries.poll();
+        Pointer pointer = pointers.poll();
+        if (pointer == null) {
+            return null;
+        }
+        owned.remove(pointer);
+        return new Entry(pointer, pointsToSets.remove(pointer));
     }
 
     /**
      * @return true if the work list is empty, otherwise false.
      */
     boolean isEmpty() {
-        return entries.isEmpty();
+        return pointers.isEmpty();
     }
 
     /**
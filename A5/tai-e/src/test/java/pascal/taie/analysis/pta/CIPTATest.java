@@ -22,8 +22,18 @@
 
 package pascal.taie.analysis.pta;
 
+import org.junit.Assert;
 import org.junit.Test;
+import pascal.taie.World;
 import pascal.taie.analysis.Tests;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.language.type.ReferenceType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class CIPTATest {
 
@@ -78,4 +88,215 @@ public class CIPTATest {
     public void testMergeParam() {
         Tests.testCIPTA(DIR, "MergeParam");
     }
+
+    @Test
+    public void testInstanceFieldParallel() {
+        Tests.testCIPTA(DIR, "InstanceField", "parallel:true");
+    }
+
+    @Test
+    public void testCallParallel() {
+        Tests.testCIPTA(DIR, "Call", "parallel:true");
+    }
+
+    @Test
+    public void testArrayParallel() {
+        Tests.testCIPTA(DIR, "Array", "parallel:true");
+    }
+
+    @Test
+    public void testArrayTypeFilter() {
+        Tests.testCIPTA(DIR, "Array", "type-filter:true");
+    }
+
+    @Test
+    public void testArrayTypeFilterParallel() {
+        Tests.testCIPTA(DIR, "Array", "type-filter:true", "parallel:true");
+    }
+
+    @Test
+    public void testInstanceFieldBitSet() {
+        Tests.testCIPTA(DIR, "InstanceField", "pts:bitset");
+    }
+
+    @Test
+    public void testArrayBitSetParallel() {
+        Tests.testCIPTA(DIR, "Array", "pts:bitset", "parallel:true");
+    }
+
+    /**
+     * The PFG edges into the fields are added after propagation starts,
+     * and they close cycles that have predecessors outside, e.g.,
+     * p -> v -> w -> z -> o.f -> x -> y -> o.f. Wave propagation should
+     * compute the same result as the sequential work-list.
+     */
+    @Test
+    public void testLateCycleParallel() {
+        Map<String, Set<String>> expected = projectPointsToSets(
+                Tests.runCIPTA(DIR, "LateCycle"));
+        Assert.assertEquals(2, expected.get(
+                "<LateCycle: void main(java.lang.String[])>/x").size());
+        for (int i = 0; i < 20; ++i) {
+            Assert.assertEquals(expected, projectPointsToSets(
+                    Tests.runCIPTA(DIR, "LateCycle", "parallel:true")));
+        }
+    }
+
+    private static final List<String> PROGRAMS = List.of(
+            "Example", "Array", "Assign", "Assign2", "StoreLoad", "Call",
+            "InstanceField", "StaticField", "StaticCall", "MergeParam");
+
+    /**
+     * Slim mode drops the statements that only involve primitive variables,
+     * so the points-to sets of the reference variables must be unchanged.
+     */
+    @Test
+    public void testSlim() {
+        for (String main : PROGRAMS) {
+            Map<String, Set<String>> expected = projectReferencePointsToSets(
+                    Tests.runCIPTA(DIR, main));
+            Assert.assertEquals(main, expected, projectReferencePointsToSets(
+                    Tests.runCIPTA(DIR, main, "slim:true")));
+        }
+    }
+
+    @Test
+    public void testInstanceFieldDemand() {
+        Tests.testCIPTA(DIR, "InstanceField", "demand:true");
+    }
+
+    @Test
+    public void testArrayDemand() {
+        Tests.testCIPTA(DIR, "Array", "demand:true");
+    }
+
+    @Test
+    public void testStaticCallDemand() {
+        Tests.testCIPTA(DIR, "StaticCall", "demand:true", "query-budget:0");
+    }
+
+    /**
+     * Each query of demand-driven analysis without budget should answer
+     * the same points-to set as the exhaustive analysis.
+     */
+    @Test
+    public void testDemandQueries() {
+        for (String main : PROGRAMS) {
+            Map<String, Set<String>> expected = projectPointsToSets(
+                    Tests.runCIPTA(DIR, main));
+            PointerAnalysisResult result = Tests.runCIPTA(DIR, main, "demand:true");
+            Map<String, Var> vars = getAppVars();
+            expected.forEach((name, objs) -> Assert.assertEquals(main + ": " + name,
+                    objs, toStrings(result.getPointsToSet(vars.get(name)))));
+        }
+    }
+
+    /**
+     * The queries running out of budget should answer conservatively,
+     * and solving the whole program afterwards should resume the
+     * interrupted queries to the exhaustive result.
+     */
+    @Test
+    public void testDemandQueriesOutOfBudget() {
+        for (String main : PROGRAMS) {
+            Map<String, Set<String>> expected = projectPointsToSets(
+                    Tests.runCIPTA(DIR, main));
+            PointerAnalysisResult result = Tests.runCIPTA(DIR, main,
+                    "demand:true", "query-budget:0");
+            Map<String, Var> vars = getAppVars();
+            expected.forEach((name, objs) -> Assert.assertTrue(main + ": " + name,
+                    toStrings(result.getPointsToSet(vars.get(name))).containsAll(objs)));
+            // solves the whole program
+            result.getCallGraph();
+            expected.forEach((name, objs) -> Assert.assertEquals(main + ": " + name,
+                    objs, toStrings(result.getPointsToSet(vars.get(name)))));
+        }
+    }
+
+    /**
+     * The answers of the queries running out of budget are not cached,
+     * so repeating a query, without solving the whole program, should
+     * resume it to the exhaustive result.
+     */
+    @Test
+    public void testDemandQueriesResume() {
+        boolean resumed = false;
+        for (String main : PROGRAMS) {
+            Map<String, Set<String>> expected = projectPointsToSets(
+                    Tests.runCIPTA(DIR, main));
+            PointerAnalysisResult result = Tests.runCIPTA(DIR, main,
+                    "demand:true", "query-budget:0");
+            Map<String, Var> vars = getAppVars();
+            for (Map.Entry<String, Set<String>> e : expected.entrySet()) {
+                String name = main + ": " + e.getKey();
+                Var var = vars.get(e.getKey());
+                Set<String> pts = toStrings(result.getPointsToSet(var));
+                for (int i = 0; !pts.equals(e.getValue()); ++i) {
+                    Assert.assertTrue(name, pts.containsAll(e.getValue()));
+                    Assert.assertTrue(name + " does not converge",
+                            i < MAX_RESUMED_QUERIES);
+                    resumed = true;
+                    pts = toStrings(result.getPointsToSet(var));
+                }
+                // the exhaustive answer is cached
+                Assert.assertEquals(name, e.getValue(),
+                        toStrings(result.getPointsToSet(var)));
+            }
+        }
+        Assert.assertTrue("no query runs out of budget", resumed);
+    }
+
+    private static final int MAX_RESUMED_QUERIES = 100_000;
+
+    /**
+     * @return the points-to sets of the variables in given result,
+     * which can be compared across runs by their names.
+     */
+    private static Map<String, Set<String>> projectPointsToSets(
+            PointerAnalysisResult result) {
+        return result.getVars()
+                .stream()
+                .collect(Collectors.toMap(CIPTATest::getName,
+                        v -> toStrings(result.getPointsToSet(v))));
+    }
+
+    /**
+     * Projects the non-empty points-to sets of the reference variables;
+     * a variable missing from either side therefore also shows up
+     * as a difference.
+     */
+    private static Map<String, Set<String>> projectReferencePointsToSets(
+            PointerAnalysisResult result) {
+        return result.getVars()
+                .stream()
+                .filter(v -> v.getType() instanceof ReferenceType)
+                .filter(v -> !result.getPointsToSet(v).isEmpty())
+                .collect(Collectors.toMap(CIPTATest::getName,
+                        v -> toStrings(result.getPointsToSet(v))));
+    }
+
+    /**
+     * @return the variables of the application methods in current world,
+     * which are obtained without querying the result of pointer analysis.
+     */
+    private static Map<String, Var> getAppVars() {
+        return World.get()
+                .getClassHierarchy()
+                .applicationClasses()
+                .flatMap(c -> c.getDeclaredMethods().stream())
+                .filter(m -> !m.isAbstract())
+                .map(JMethod::getIR)
+                .flatMap(ir -> ir.getVars().stream())
+                .collect(Collectors.toMap(CIPTATest::getName, v -> v));
+    }
+
+    private static String getName(Var var) {
+        return var.getMethod() + "/" + var.getName();
+    }
+
+    private static Set<String> toStrings(Set<?> objs) {
+        return objs.stream()
+                .map(Object::toString)
+                .collect(Collectors.toSet());
+    }
 }
@@ -0,0 +1,31 @@
+class LateCycle {
+    public static void main(String[] args) {
+        A a = new A();
+        Object p = new Object();
+        Object v = p;
+        Object w = v;
+        Object z = w;
+        a.f = z;
+        Object x = a.f;
+        Object y = x;
+        a.f = y;
+        A b = a;
+        Object q = new Object();
+        b.g = q;
+        Object r = b.g;
+        a.f = r;
+        Object s = a.id(r);
+        Object t = s;
+        b.g = t;
+    }
+}
+
+class A {
+    Object f;
+    Object g;
+
+    Object id(Object o) {
+        this.f = o;
+        return this.f;
+    }
+}
@@ -31,20 +31,38 @@ import pascal.taie.analysis.pta.core.cs.element.CSMethod;
 import pascal.taie.ir.stmt.Invoke;
 import pascal.taie.ir.stmt.Stmt;
 import pascal.taie.language.classes.JMethod;
+import pascal.taie.util.collection.Maps;
 import pascal.taie.util.collection.Sets;
 import pascal.taie.util.collection.Views;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Stream;
 
 /**
  * Represents context-sensitive call graph.
+ * <p>
+ * Reachable methods and call edges can be added concurrently, e.g.,
+ * by parallel pointer analysis.
  */
 public class CSCallGraph extends AbstractCallGraph<CSCallSite, CSMethod> {
 
     private final CSManager csManager;
 
+    /**
+     * Map from method to the call sites in it, which are collected
+     * once for all contexts of the method.
+     */
+    private final Map<JMethod, List<Invoke>> invokes = Maps.newConcurrentMap();
+
+    /**
+     * Map from CS method to the CS call sites in it, which are created
+     * on first request.
+     */
+    private final Map<CSMethod, Set<CSCallSite>> csCallSites = Maps.newConcurrentMap();
+
     public CSCallGraph(CSManager csManager) {
         this.csManager = csManager;
     }
@@ -62,7 +80,7 @@ public class CSCallGraph extends AbstractCallGraph<CSCallSite, CSMethod> {
      * @return true if this call graph changed as a result of the call,
      * otherwise false.
      */
-    public boolean addReachableMethod(CSMethod csMethod) {
+    public synchronized boolean addReachableMethod(CSMethod csMethod) {
         if (reachableMethods.add(csMethod)) {
             callSitesIn(csMethod).forEach(csCallSite ->
                     csCallSite.setContainer(csMethod));
@@ -79,7 +97,7 @@ public class CSCallGraph extends AbstractCallGraph<CSCallSite, CSMethod> {
      * @return true if the call graph changed as a result of the call,
      * otherwise false.
      */
-    public boolean addEdge(Edge<CSCallSite, CSMethod> edge) {
+    public synchronized boolean addEdge(Edge<CSCallSite, CSMethod> edge) {
         if (edge.getCallSite().addEdge(edge)) {
             edge.getCallee().addEdge(edge);
             return true;
@@ -88,6 +106,33 @@ public class CSCallGraph extends AbstractCallGraph<CSCallSite, CSMethod> {
         }
     }
 
+    /**
+     * Removes a reachable method from this call graph, e.g., when
+     * incremental analysis retracts its incoming call edges.
+     *
+     * @return true if this call graph changed as a result of the call,
+     * otherwise false.
+     */
+    public synchronized boolean removeReachableMethod(CSMethod csMethod) {
+        return reachableMethods.remove(csMethod);
+    }
+
+    /**
+     * Removes a call graph edge from this call graph.
+     *
+     * @param edge the call edge to be removed
+     * @return true if the call graph changed as a result of the call,
+     * otherwise false.
+     */
+    public synchronized boolean removeEdge(Edge<CSCallSite, CSMethod> edge) {
+        if (edge.getCallSite().removeEdge(edge)) {
+            edge.getCallee().removeEdge(edge);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
     @Override
     public Set<CSCallSite> getCallersOf(CSMethod callee) {
         return Views.toMappedSet(callee.getEdges(), Edge::getCallSite);
@@ -105,16 +150,26 @@ public class CSCallGraph extends AbstractCallGraph<CSCallSite, CSMethod> {
 
     @Override
     public Set<CSCallSite> getCallSitesIn(CSMethod csMethod) {
-        JMethod method = csMethod.getMethod();
-        Context context = csMethod.getContext();
-        Set<CSCallSite> callSites = Sets.newHybridOrderedSet();
-        for (Stmt s : method.getIR()) {
-            if (s instanceof Invoke) {
-                CSCallSite csCallSite = csManager.getCSCallSite(context, (Invoke) s);
-                callSites.add(csCallSite);
-            }
+        Set<CSCallSite> callSites = csCallSites.get(csMethod);
+        if (callSites == null) {
+            callSites = csCallSites.computeIfAbsent(csMethod, m -> {
+                Context context = m.getContext();
+                Set<CSCallSite> result = Sets.newHybridOrderedSet();
+                for (Invoke invoke : getInvokesIn(m.getMethod())) {
+                    result.add(csManager.getCSCallSite(context, invoke));
+                }
+                return Collections.unmodifiableSet(result);
+            });
         }
-        return Collections.unmodifiableSet(callSites);
+        return callSites;
+    }
+
+    private List<Invoke> getInvokesIn(JMethod method) {
+        return invokes.computeIfAbsent(method, m -> m.getIR()
+                .stmts()
+                .filter(s -> s instanceof Invoke)
+                .map(s -> (Invoke) s)
+                .toList());
     }
 
     @Override
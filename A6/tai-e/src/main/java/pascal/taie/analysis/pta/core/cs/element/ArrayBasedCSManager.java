@@ -0,0 +1,330 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.core.cs.element;
+
+import pascal.taie.analysis.pta.core.cs.context.Context;
+import pascal.taie.analysis.pta.core.cs.context.ListContext;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.analysis.pta.pts.PointsToSetFactory;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.language.classes.JField;
+import pascal.taie.language.classes.JMethod;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongFunction;
+
+/**
+ * {@link CSManager} backed by arrays instead of nested hash maps.
+ * <p>
+ * Program elements (variables, objects, call sites, methods and fields)
+ * get dense ids from identity-based tables, and each context-sensitive
+ * element is looked up in an open-addressing table by a primitive key
+ * (context id << 32 | element id), so that a lookup neither hashes
+ * the context nor allocates. Contexts must be {@link ListContext}s,
+ * which carry interned ids.
+ * <p>
+ * This manager is not thread-safe.
+ */
+public class ArrayBasedCSManager implements CSManager {
+
+    private final Indexer<Var> varIds = new Indexer<>();
+
+    private final Indexer<Obj> objIds = new Indexer<>();
+
+    private final Indexer<Invoke> callSiteIds = new Indexer<>();
+
+    private final Indexer<JMethod> methodIds = new Indexer<>();
+
+    private final Indexer<JField> fieldIds = new Indexer<>();
+
+    private final LongTable<CSVar> vars = new LongTable<>();
+
+    private final LongTable<CSObj> objs = new LongTable<>();
+
+    private final LongTable<CSCallSite> callSites = new LongTable<>();
+
+    private final LongTable<CSMethod> methods = new LongTable<>();
+
+    private final LongTable<StaticField> staticFields = new LongTable<>();
+
+    private final LongTable<InstanceField> instanceFields = new LongTable<>();
+
+    private final LongTable<ArrayIndex> arrayIndexes = new LongTable<>();
+
+    /**
+     * CS variables of each variable, indexed by the id of the variable.
+     */
+    private final List<List<CSVar>> varToCSVars = new ArrayList<>();
+
+    private final PointsToSetFactory ptsFactory;
+
+    private final CSObjIndexer objIndexer;
+
+    /**
+     * @param ptsFactory makes the points-to sets of the pointers.
+     * @param objIndexer indexes the CS objects.
+     */
+    public ArrayBasedCSManager(PointsToSetFactory ptsFactory, CSObjIndexer objIndexer) {
+        this.ptsFactory = ptsFactory;
+        this.objIndexer = objIndexer;
+    }
+
+    private static long key(int high, int low) {
+        return ((long) high << 32) | (low & 0xffffffffL);
+    }
+
+    private static int idOf(Context context) {
+        return ((ListContext<?>) context).getId();
+    }
+
+    @Override
+    public CSVar getCSVar(Context context, Var var) {
+        int varId = varIds.getId(var);
+        return vars.computeIfAbsent(key(idOf(context), varId), k -> {
+            CSVar csVar = initializePointsToSet(new CSVar(var, context));
+            if (varId == varToCSVars.size()) {
+                varToCSVars.add(new ArrayList<>());
+            }
+            varToCSVars.get(varId).add(csVar);
+            return csVar;
+        });
+    }
+
+    @Override
+    public CSObj getCSObj(Context heapContext, Obj obj) {
+        return objs.computeIfAbsent(key(idOf(heapContext), objIds.getId(obj)),
+                k -> new CSObj(obj, heapContext, objIndexer));
+    }
+
+    @Override
+    public CSCallSite getCSCallSite(Context context, Invoke callSite) {
+        return callSites.computeIfAbsent(
+                key(idOf(context), callSiteIds.getId(callSite)),
+                k -> new CSCallSite(callSite, context));
+    }
+
+    @Override
+    public CSMethod getCSMethod(Context context, JMethod method) {
+        return methods.computeIfAbsent(key(idOf(context), methodIds.getId(method)),
+                k -> new CSMethod(method, context));
+    }
+
+    @Override
+    public StaticField getStaticField(JField field) {
+        return staticFields.computeIfAbsent(fieldIds.getId(field),
+                k -> initializePointsToSet(new StaticField(field)));
+    }
+
+    @Override
+    public InstanceField getInstanceField(CSObj base, JField field) {
+        return instanceFields.computeIfAbsent(
+                key(base.getIndex(), fieldIds.getId(field)),
+                k -> initializePointsToSet(new InstanceField(base, field)));
+    }
+
+    @Override
+    public ArrayIndex getArrayIndex(CSObj array) {
+        return arrayIndexes.computeIfAbsent(array.getIndex(),
+                k -> initializePointsToSet(new ArrayIndex(array)));
+    }
+
+    private <P extends Pointer> P initializePointsToSet(P pointer) {
+        pointer.setPointsToSet(ptsFactory.newSet());
+        return pointer;
+    }
+
+    @Override
+    public Collection<Var> getVars() {
+        return varIds.getElements();
+    }
+
+    @Override
+    public Collection<CSVar> getCSVarsOf(Var var) {
+        int varId = varIds.findId(var);
+        return varId >= 0 && varId < varToCSVars.size()
+                ? Collections.unmodifiableList(varToCSVars.get(varId))
+                : Collections.emptyList();
+    }
+
+    @Override
+    public Collection<CSVar> getCSVars() {
+        return vars.getValues();
+    }
+
+    @Override
+    public Collection<CSObj> getObjects() {
+        return objs.getValues();
+    }
+
+    @Override
+    public Collection<StaticField> getStaticFields() {
+        return staticFields.getValues();
+    }
+
+    @Override
+    public Collection<InstanceField> getInstanceFields() {
+        return instanceFields.getValues();
+    }
+
+    @Override
+    public Collection<ArrayIndex> getArrayIndexes() {
+        return arrayIndexes.getValues();
+    }
+
+    /**
+     * Assigns dense ids to elements by identity, with an open-addressing
+     * table.
+     */
+    private static class Indexer<E> {
+
+        private Object[] keys = new Object[64];
+
+        private int[] ids = new int[64];
+
+        private final List<E> elements = new ArrayList<>();
+
+        /**
+         * @return the id of given element, or -1 if it has no id.
+         */
+        private int findId(E elem) {
+            int mask = keys.length - 1;
+            for (int i = hash(elem) & mask; keys[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == elem) {
+                    return ids[i];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return the id of given element. Assigns a new id to the element
+         * if it has no id.
+         */
+        private int getId(E elem) {
+            int mask = keys.length - 1;
+            int i = hash(elem) & mask;
+            for (; keys[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == elem) {
+                    return ids[i];
+                }
+            }
+            int id = elements.size();
+            elements.add(elem);
+            keys[i] = elem;
+            ids[i] = id;
+            if (elements.size() * 2 > keys.length) {
+                resize();
+            }
+            return id;
+        }
+
+        private void resize() {
+            Object[] oldKeys = keys;
+            int[] oldIds = ids;
+            keys = new Object[oldKeys.length * 2];
+            ids = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; ++j) {
+                if (oldKeys[j] != null) {
+                    int i = hash(oldKeys[j]) & mask;
+                    while (keys[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    ids[i] = oldIds[j];
+                }
+            }
+        }
+
+        private static int hash(Object elem) {
+            int h = System.identityHashCode(elem);
+            return h ^ (h >>> 16);
+        }
+
+        private Collection<E> getElements() {
+            return Collections.unmodifiableList(elements);
+        }
+    }
+
+    /**
+     * Open-addressing table with primitive long keys.
+     */
+    private static class LongTable<V> {
+
+        private long[] keys = new long[64];
+
+        private Object[] values = new Object[64];
+
+        private final List<V> valueList = new ArrayList<>();
+
+        @SuppressWarnings("unchecked")
+        private V computeIfAbsent(long key, LongFunction<V> function) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return (V) values[i];
+                }
+            }
+            V value = function.apply(key);
+            keys[i] = key;
+            values[i] = value;
+            valueList.add(value);
+            if (valueList.size() * 2 > keys.length) {
+                resize();
+            }
+            return value;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Object[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; ++j) {
+                if (oldValues[j] != null) {
+                    int i = hash(oldKeys[j]) & mask;
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        private Collection<V> getValues() {
+            return Collections.unmodifiableList(valueList);
+        }
+    }
+}
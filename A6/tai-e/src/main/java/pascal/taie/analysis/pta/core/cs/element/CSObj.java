@@ -24,17 +24,44 @@ package pascal.taie.analysis.pta.core.cs.element;
 
 import pascal.taie.analysis.pta.core.cs.context.Context;
 import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.util.Indexable;
 
 /**
  * Represents context-sensitive objects.
+ * <p>
+ * Each CSObj receives a dense index from the {@link CSObjIndexer} of its
+ * analysis when it is created by {@link CSManager}, so that points-to sets
+ * can be represented as bit sets over the indexes.
  */
-public class CSObj extends AbstractCSElement {
+public class CSObj extends AbstractCSElement implements Indexable {
 // 表示一个带上下文（Context）的抽象对象（Obj）
+
     private final Obj obj;
 
+    private final int index;
+
+    /**
+     * Creates a CS object without index, which can only be held by
+     * hybrid points-to sets.
+     */
     CSObj(Obj obj, Context context) {
         super(context);
         this.obj = obj;
+        this.index = -1;
+    }
+
+    CSObj(Obj obj, Context context, CSObjIndexer indexer) {
+        super(context);
+        this.obj = obj;
+        this.index = indexer.add(this);
+    }
+
+    /**
+     * @return the index of this object, or -1 if it is not indexed.
+     */
+    @Override
+    public int getIndex() {
+        return index;
     }
 
     /**
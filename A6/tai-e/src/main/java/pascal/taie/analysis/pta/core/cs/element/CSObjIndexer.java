@@ -0,0 +1,65 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.core.cs.element;
+
+import java.util.Arrays;
+
+/**
+ * Numbers the {@link CSObj}s created by one pointer analysis densely,
+ * so that points-to sets can be represented over the numbers, and maps
+ * the numbers back to the objects.
+ * <p>
+ * Each solver owns an indexer, and passes it to the CS manager that
+ * creates the CS objects and to the factory of its points-to sets.
+ * Index-based points-to sets keep the indexer they are created with, so
+ * the sets of one result always resolve to its own objects, however many
+ * analyses run in the same JVM, and the objects are released together
+ * with the result.
+ */
+public class CSObjIndexer {
+
+    /**
+     * CS objects by index. The array is replaced (never modified in
+     * place below {@link #size}) when it grows, so reads need no lock.
+     */
+    private volatile CSObj[] objects = new CSObj[1024];
+
+    private int size;
+
+    synchronized int add(CSObj obj) {
+        CSObj[] objs = objects;
+        if (size == objs.length) {
+            objs = Arrays.copyOf(objs, size * 2);
+        }
+        objs[size] = obj;
+        objects = objs;
+        return size++;
+    }
+
+    /**
+     * @return the CS object of given index.
+     */
+    public CSObj getObject(int index) {
+        return objects[index];
+    }
+}
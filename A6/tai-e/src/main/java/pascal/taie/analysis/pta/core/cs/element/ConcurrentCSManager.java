@@ -0,0 +1,185 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.core.cs.element;
+
+import pascal.taie.analysis.pta.core.cs.context.Context;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.analysis.pta.pts.PointsToSetFactory;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.language.classes.JField;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.util.collection.Maps;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+
+/**
+ * Thread-safe {@link CSManager} for parallel pointer analysis.
+ * Elements are created atomically, i.e., concurrent requests for
+ * the same element always get the same instance.
+ */
+public class ConcurrentCSManager implements CSManager {
+
+    private final ConcurrentTwoKeyMap<Var, Context, CSVar> vars = new ConcurrentTwoKeyMap<>();
+
+    private final ConcurrentTwoKeyMap<Obj, Context, CSObj> objs = new ConcurrentTwoKeyMap<>();
+
+    private final ConcurrentTwoKeyMap<Invoke, Context, CSCallSite> callSites = new ConcurrentTwoKeyMap<>();
+
+    private final ConcurrentTwoKeyMap<JMethod, Context, CSMethod> methods = new ConcurrentTwoKeyMap<>();
+
+    private final ConcurrentMap<JField, StaticField> staticFields = Maps.newConcurrentMap();
+
+    private final ConcurrentTwoKeyMap<CSObj, JField, InstanceField> instanceFields = new ConcurrentTwoKeyMap<>();
+
+    private final ConcurrentMap<CSObj, ArrayIndex> arrayIndexes = Maps.newConcurrentMap();
+
+    private final PointsToSetFactory ptsFactory;
+
+    private final CSObjIndexer objIndexer;
+
+    /**
+     * @param ptsFactory makes the points-to sets of the pointers.
+     * @param objIndexer indexes the CS objects.
+     */
+    public ConcurrentCSManager(PointsToSetFactory ptsFactory, CSObjIndexer objIndexer) {
+        this.ptsFactory = ptsFactory;
+        this.objIndexer = objIndexer;
+    }
+
+    @Override
+    public CSVar getCSVar(Context context, Var var) {
+        return vars.computeIfAbsent(var, context, (v, c) ->
+                initializePointsToSet(new CSVar(v, c)));
+    }
+
+    @Override
+    public CSObj getCSObj(Context heapContext, Obj obj) {
+        return objs.computeIfAbsent(obj, heapContext, (o, c) -> new CSObj(o, c, objIndexer));
+    }
+
+    @Override
+    public CSCallSite getCSCallSite(Context context, Invoke callSite) {
+        return callSites.computeIfAbsent(callSite, context, CSCallSite::new);
+    }
+
+    @Override
+    public CSMethod getCSMethod(Context context, JMethod method) {
+        return methods.computeIfAbsent(method, context, CSMethod::new);
+    }
+
+    @Override
+    public StaticField getStaticField(JField field) {
+        return staticFields.computeIfAbsent(field, f ->
+                initializePointsToSet(new StaticField(f)));
+    }
+
+    @Override
+    public InstanceField getInstanceField(CSObj base, JField field) {
+        return instanceFields.computeIfAbsent(base, field, (b, f) ->
+                initializePointsToSet(new InstanceField(b, f)));
+    }
+
+    @Override
+    public ArrayIndex getArrayIndex(CSObj array) {
+        return arrayIndexes.computeIfAbsent(array, a ->
+                initializePointsToSet(new ArrayIndex(a)));
+    }
+
+    private <P extends Pointer> P initializePointsToSet(P pointer) {
+        pointer.setPointsToSet(ptsFactory.newSet());
+        return pointer;
+    }
+
+    @Override
+    public Collection<Var> getVars() {
+        return vars.keySet();
+    }
+
+    @Override
+    public Collection<CSVar> getCSVarsOf(Var var) {
+        return vars.get(var);
+    }
+
+    @Override
+    public Collection<CSVar> getCSVars() {
+        return vars.values();
+    }
+
+    @Override
+    public Collection<CSObj> getObjects() {
+        return objs.values();
+    }
+
+    @Override
+    public Collection<StaticField> getStaticFields() {
+        return Collections.unmodifiableCollection(staticFields.values());
+    }
+
+    @Override
+    public Collection<InstanceField> getInstanceFields() {
+        return instanceFields.values();
+    }
+
+    @Override
+    public Collection<ArrayIndex> getArrayIndexes() {
+        return Collections.unmodifiableCollection(arrayIndexes.values());
+    }
+
+    /**
+     * Two-level concurrent map.
+     */
+    private static class ConcurrentTwoKeyMap<K1, K2, V> {
+
+        private final ConcurrentMap<K1, ConcurrentMap<K2, V>> map =
+                Maps.newConcurrentMap();
+
+        private V computeIfAbsent(K1 key1, K2 key2,
+                                  BiFunction<K1, K2, V> function) {
+            return map.computeIfAbsent(key1, k -> Maps.newConcurrentMap())
+                    .computeIfAbsent(key2, k -> function.apply(key1, key2));
+        }
+
+        private Collection<K1> keySet() {
+            return Collections.unmodifiableSet(map.keySet());
+        }
+
+        private Collection<V> get(K1 key1) {
+            Map<K2, V> inner = map.get(key1);
+            return inner != null
+                    ? Collections.unmodifiableCollection(inner.values())
+                    : Collections.emptySet();
+        }
+
+        private Collection<V> values() {
+            return map.values()
+                    .stream()
+                    .flatMap(inner -> inner.values().stream())
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.core.cs.selector;
+
+import pascal.taie.analysis.pta.core.cs.context.Context;
+import pascal.taie.analysis.pta.core.cs.element.CSCallSite;
+import pascal.taie.analysis.pta.core.cs.element.CSMethod;
+import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.util.collection.Maps;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Context selector that can downgrade the context sensitivity of
+ * individual methods along a chain of variants, e.g., from 2-obj to
+ * 1-type to context insensitivity. The contexts that have been selected
+ * for a method are kept, and the new contexts of the method (and the
+ * heap contexts of the objects allocated in it) are selected by
+ * the current variant of the method.
+ */
+public class DowngradingSelector implements ContextSelector {
+
+    /**
+     * Names of the variants, from the most precise one.
+     */
+    private final List<String> variants;
+
+    /**
+     * Selectors of the variants, in the same order as {@link #variants}.
+     */
+    private final List<ContextSelector> selectors;
+
+    /**
+     * Map from downgraded method to the index of its current variant.
+     */
+    private final Map<JMethod, Integer> levels = Maps.newConcurrentMap();
+
+    public DowngradingSelector(List<String> variants,
+                               List<ContextSelector> selectors) {
+        this.variants = List.copyOf(variants);
+        this.selectors = List.copyOf(selectors);
+    }
+
+    private int getLevel(JMethod method) {
+        return levels.getOrDefault(method, 0);
+    }
+
+    /**
+     * @return the name of the current variant of given method.
+     */
+    public String getVariant(JMethod method) {
+        return variants.get(getLevel(method));
+    }
+
+    /**
+     * @return true if given method has a less precise variant.
+     */
+    public boolean canDowngrade(JMethod method) {
+        return getLevel(method) < variants.size() - 1;
+    }
+
+    /**
+     * Switches given method to its next (less precise) variant.
+     *
+     * @return the name of the new variant of the method.
+     */
+    public String downgrade(JMethod method) {
+        int level = Math.min(getLevel(method) + 1, variants.size() - 1);
+        levels.put(method, level);
+        return variants.get(level);
+    }
+
+    /**
+     * @return the map from downgraded method to the index of its
+     * current variant.
+     */
+    public Map<JMethod, Integer> getLevels() {
+        return Collections.unmodifiableMap(levels);
+    }
+
+    /**
+     * Replaces the variants of the methods by given levels, e.g.,
+     * when the state of an analysis is restored.
+     */
+    public void setLevels(Map<JMethod, Integer> levels) {
+        this.levels.clear();
+        this.levels.putAll(levels);
+    }
+
+    private ContextSelector getSelector(JMethod method) {
+        return selectors.get(getLevel(method));
+    }
+
+    @Override
+    public Context getEmptyContext() {
+        return selectors.get(0).getEmptyContext();
+    }
+
+    @Override
+    public Context selectContext(CSCallSite callSite, JMethod callee) {
+        return getSelector(callee).selectContext(callSite, callee);
+    }
+
+    @Override
+    public Context selectContext(CSCallSite callSite, CSObj recv, JMethod callee) {
+        return getSelector(callee).selectContext(callSite, recv, callee);
+    }
+
+    @Override
+    public Context selectHeapContext(CSMethod method, Obj obj) {
+        return getSelector(method.getMethod()).selectHeapContext(method, obj);
+    }
+}
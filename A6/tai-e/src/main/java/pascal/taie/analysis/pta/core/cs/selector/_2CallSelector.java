@@ -36,9 +36,11 @@ import pascal.taie.language.classes.JMethod;
  */
 public class _2CallSelector implements ContextSelector {
 
+    private final Context emptyContext = ListContext.newTrie();
+
     @Override
     public Context getEmptyContext() {
-        return ListContext.make();
+        return emptyContext;
     }
 
     @Override
@@ -52,9 +54,9 @@ public class _2CallSelector implements ContextSelector {
         // TODO - finish me
         Context c = callSite.getContext();
         if (c.getLength() > 0) {
-            return ListContext.make(c.getElementAt(c.getLength() - 1), callSite.getCallSite());
+            return ListContext.make(c, c.getElementAt(c.getLength() - 1), callSite.getCallSite());
         }
-        return ListContext.make(callSite.getCallSite());
+        return ListContext.make(c, callSite.getCallSite());
     }
 
     /**
@@ -70,8 +72,8 @@ public class _2CallSelector implements ContextSelector {
         // TODO - finish me
         Context c = method.getContext();
         if (c.getLength() > 0) {
-            return ListContext.make(c.getElementAt(c.getLength() - 1));
+            return ListContext.make(c, c.getElementAt(c.getLength() - 1));
         }
-        return getEmptyContext();
+        return ListContext.make(c);
     }
 }
@@ -0,0 +1,98 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.core.cs.selector;
+
+import pascal.taie.analysis.pta.core.cs.context.Context;
+import pascal.taie.analysis.pta.core.cs.context.ListContext;
+import pascal.taie.analysis.pta.core.cs.element.CSCallSite;
+import pascal.taie.analysis.pta.core.cs.element.CSMethod;
+import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.language.classes.JMethod;
+
+/**
+ * Implementation of selective hybrid 2-object sensitivity with 1 heap
+ * context (S-2obj+H), which uses 2-object sensitivity for instance calls,
+ * and for static calls, appends the call site to the receiver object
+ * in the caller context. Writing first(c) for the receiver element of
+ * context c (see {@link #getReceiverElement(Context)}), the contexts are:
+ * <ul>
+ *     <li>instance call on recv with heap context hc: [last(hc), recv]</li>
+ *     <li>static call at site l in caller context c: [first(c), l]</li>
+ *     <li>object allocated in method context c: [first(c)]</li>
+ * </ul>
+ * where an absent first(c) is dropped from the context.
+ */
+public class _2HybridSelector implements ContextSelector {
+
+    private final Context emptyContext = ListContext.newTrie();
+
+    @Override
+    public Context getEmptyContext() {
+        return emptyContext;
+    }
+
+    @Override
+    public Context selectContext(CSCallSite callSite, JMethod callee) {
+        Context c = callSite.getContext();
+        Object recv = getReceiverElement(c);
+        return recv != null
+                ? ListContext.make(c, recv, callSite.getCallSite())
+                : ListContext.make(c, callSite.getCallSite());
+    }
+
+    @Override
+    public Context selectContext(CSCallSite callSite, CSObj recv, JMethod callee) {
+        Context c = recv.getContext();
+        if (c.getLength() > 0) {
+            return ListContext.make(c, c.getElementAt(c.getLength() - 1), recv.getObject());
+        }
+        return ListContext.make(c, recv.getObject());
+    }
+
+    @Override
+    public Context selectHeapContext(CSMethod method, Obj obj) {
+        Context c = method.getContext();
+        Object recv = getReceiverElement(c);
+        return recv != null ? ListContext.make(c, recv) : ListContext.make(c);
+    }
+
+    /**
+     * @return the last object element in given context, i.e., the receiver
+     * object of the instance method that is (transitively) calling the
+     * method of the context, or null if there is no such element.
+     * A context of this selector is either [..., recv] for instance
+     * methods or [recv, l]/[l] for static methods, thus the result is
+     * the receiver object itself or the one carried by the static call.
+     */
+    private static Object getReceiverElement(Context c) {
+        for (int i = c.getLength() - 1; i >= 0; --i) {
+            Object elem = c.getElementAt(i);
+            if (!(elem instanceof Invoke)) {
+                return elem;
+            }
+        }
+        return null;
+    }
+}
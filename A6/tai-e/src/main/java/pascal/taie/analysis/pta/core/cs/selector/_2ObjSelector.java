@@ -35,9 +35,11 @@ import pascal.taie.language.classes.JMethod;
  */
 public class _2ObjSelector implements ContextSelector {
 
+    private final Context emptyContext = ListContext.newTrie();
+
     @Override
     public Context getEmptyContext() {
-        return ListContext.make();
+        return emptyContext;
     }
 
     @Override
@@ -51,9 +53,9 @@ public class _2ObjSelector implements ContextSelector {
         // TODO - finish me
         Context c1 = recv.getContext(); // c'
         if (c1.getLength() > 0) {
-            return ListContext.make(c1.getElementAt(c1.getLength() - 1), recv.getObject());
+            return ListContext.make(c1, c1.getElementAt(c1.getLength() - 1), recv.getObject());
         }
-        return ListContext.make(recv.getObject());
+        return ListContext.make(c1, recv.getObject());
     }
 
     @Override
@@ -61,8 +63,8 @@ public class _2ObjSelector implements ContextSelector {
         // TODO - finish me
         Context c = method.getContext();
         if (c.getLength() > 0) {
-            return ListContext.make(c.getElementAt(c.getLength() - 1));
+            return ListContext.make(c, c.getElementAt(c.getLength() - 1));
         }
-        return getEmptyContext();
+        return ListContext.make(c);
     }
 }
@@ -36,9 +36,11 @@ import pascal.taie.language.type.Type;
  */
 public class _2TypeSelector implements ContextSelector {
 
+    private final Context emptyContext = ListContext.newTrie();
+
     @Override
     public Context getEmptyContext() {
-        return ListContext.make();
+        return emptyContext;
     }
 
     @Override
@@ -52,9 +54,9 @@ public class _2TypeSelector implements ContextSelector {
         // TODO - finish me
         Context c1 = recv.getContext(); // c'
         if (c1.getLength() > 0) {
-            return ListContext.make(c1.getElementAt(c1.getLength() - 1), recv.getObject().getContainerType());
+            return ListContext.make(c1, c1.getElementAt(c1.getLength() - 1), recv.getObject().getContainerType());
         }
-        return ListContext.make(recv.getObject().getContainerType());
+        return ListContext.make(c1, recv.getObject().getContainerType());
     }
 
     @Override
@@ -62,8 +64,8 @@ public class _2TypeSelector implements ContextSelector {
         // TODO - finish me
         Context c = method.getContext();
         if (c.getLength() > 0) {
-            return ListContext.make(c.getElementAt(c.getLength() - 1));
+            return ListContext.make(c, c.getElementAt(c.getLength() - 1));
         }
-        return getEmptyContext();
+        return ListContext.make(c);
     }
 }
@@ -0,0 +1,81 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+package pascal.taie.analysis.pta.core.heap;
+
+import pascal.taie.config.AnalysisOptions;
+import pascal.taie.ir.exp.NewExp;
+import pascal.taie.ir.stmt.New;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Heap model that merges all allocation sites of designated heavy types,
+ * e.g., the internal nodes and tables of collections, which are allocated
+ * at few sites but flow to almost everywhere, into one {@link MergedObj}
+ * per type. Other objects are abstracted by their allocation sites.
+ * <p>
+ * The heavy types are given by option {@code heavy-types}, a type name
+ * or a list of type names; if absent, {@link #DEFAULT_HEAVY_TYPES} are merged.
+ */
+public class HeavyTypeMergingModel extends AbstractHeapModel {
+
+    public static final List<String> DEFAULT_HEAVY_TYPES = List.of(
+            "java.util.HashMap$Node",
+            "java.util.HashMap$Node[]",
+            "java.util.HashMap$TreeNode",
+            "java.util.LinkedHashMap$Entry",
+            "java.util.LinkedList$Node",
+            "java.util.TreeMap$Entry",
+            "java.util.Hashtable$Entry",
+            "java.util.Hashtable$Entry[]",
+            "java.util.WeakHashMap$Entry",
+            "java.util.WeakHashMap$Entry[]",
+            "java.util.concurrent.ConcurrentHashMap$Node",
+            "java.util.concurrent.ConcurrentHashMap$Node[]"
+    );
+
+    private final Set<String> heavyTypes;
+
+    public HeavyTypeMergingModel(AnalysisOptions options) {
+        super(options);
+        Object types = options.get("heavy-types");
+        if (types == null) {
+            heavyTypes = Set.copyOf(DEFAULT_HEAVY_TYPES);
+        } else if (types instanceof List<?> list) {
+            heavyTypes = list.stream()
+                    .map(Object::toString)
+                    .collect(Collectors.toUnmodifiableSet());
+        } else {
+            heavyTypes = Set.of(types.toString());
+        }
+    }
+
+    @Override
+    protected Obj doGetObj(New allocSite) {
+        NewExp newExp = allocSite.getRValue();
+        return heavyTypes.contains(newExp.getType().getName())
+                ? getMergedObj(allocSite)
+                : getNewObj(allocSite);
+    }
+}
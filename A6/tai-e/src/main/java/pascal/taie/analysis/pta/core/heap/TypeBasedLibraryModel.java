@@ -0,0 +1,45 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+package pascal.taie.analysis.pta.core.heap;
+
+import pascal.taie.config.AnalysisOptions;
+import pascal.taie.ir.stmt.New;
+
+/**
+ * Heap model that abstracts the objects allocated in library classes
+ * by their types, i.e., all allocation sites of the same type in library
+ * are merged into one {@link MergedObj}. The objects allocated in
+ * application classes are still abstracted by their allocation sites.
+ */
+public class TypeBasedLibraryModel extends AbstractHeapModel {
+
+    public TypeBasedLibraryModel(AnalysisOptions options) {
+        super(options);
+    }
+
+    @Override
+    protected Obj doGetObj(New allocSite) {
+        return allocSite.getContainer().getDeclaringClass().isApplication()
+                ? getNewObj(allocSite)
+                : getMergedObj(allocSite);
+    }
+}
@@ -26,15 +26,23 @@ import pascal.taie.analysis.ProgramAnalysis;
 import pascal.taie.analysis.pta.PointerAnalysisResult;
 import pascal.taie.analysis.pta.core.cs.selector.CISelector;
 import pascal.taie.analysis.pta.core.cs.selector.ContextSelector;
+import pascal.taie.analysis.pta.core.cs.selector.SelectiveSelector;
 import pascal.taie.analysis.pta.core.heap.AllocationSiteBasedModel;
+import pascal.taie.analysis.pta.core.heap.HeapModel;
+import pascal.taie.analysis.pta.core.heap.HeavyTypeMergingModel;
+import pascal.taie.analysis.pta.core.heap.TypeBasedLibraryModel;
 import pascal.taie.analysis.pta.plugin.ResultProcessor;
+import pascal.taie.analysis.pta.toolkit.scaler.Scaler;
 import pascal.taie.config.AnalysisConfig;
 import pascal.taie.config.AnalysisOptions;
 import pascal.taie.config.ConfigException;
+import pascal.taie.language.classes.JMethod;
 import pascal.taie.util.Strings;
+import pascal.taie.util.collection.Maps;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
 
 /**
  * Context-sensitive pointer analysis.
@@ -51,14 +59,67 @@ public class CSPTA extends ProgramAnalysis {
     public PointerAnalysisResult analyze() {
         AnalysisOptions options = getOptions();
         Solver solver = new Solver(options,
-                new AllocationSiteBasedModel(options),
-                getContextSelector(options.getString("cs")));
+                getHeapModel(options),
+                getContextSelector(options));
         solver.solve();
         PointerAnalysisResult result = solver.getResult();
         ResultProcessor.process(options, result);
         return result;
     }
 
+    /**
+     * Selects heap model by option {@code heap-model}:
+     * <ul>
+     *     <li>allocation-site (default): abstracts objects by allocation sites</li>
+     *     <li>type-library: merges objects allocated in library by types</li>
+     *     <li>heavy-types: merges objects of heavy types, see
+     *     {@link HeavyTypeMergingModel}</li>
+     * </ul>
+     */
+    private static HeapModel getHeapModel(AnalysisOptions options) {
+        Object model = options.get("heap-model");
+        if (model == null) {
+            return new AllocationSiteBasedModel(options);
+        }
+        return switch (model.toString()) {
+            case "allocation-site" -> new AllocationSiteBasedModel(options);
+            case "type-library" -> new TypeBasedLibraryModel(options);
+            case "heavy-types" -> new HeavyTypeMergingModel(options);
+            default -> throw new ConfigException("Unknown heap model: " + model);
+        };
+    }
+
+    private static ContextSelector getContextSelector(AnalysisOptions options) {
+        String cs = options.getString("cs");
+        return cs.equals("scaler")
+                ? getScalerSelector(options)
+                : getContextSelector(cs);
+    }
+
+    /**
+     * Selects context sensitivity variant for each method by Scaler,
+     * based on the result of a context-insensitive pre-analysis.
+     * The methods that are not selected by Scaler are analyzed
+     * context-insensitively.
+     */
+    private static ContextSelector getScalerSelector(AnalysisOptions options) {
+        // the pre-analysis uses default options, e.g., it does not
+        // save checkpoints or resume from them
+        Solver preSolver = new Solver(new AnalysisOptions(Map.of()),
+                getHeapModel(options), new CISelector());
+        preSolver.solve();
+        Object tst = options.get("scaler-tst");
+        Scaler scaler = tst != null
+                ? new Scaler(preSolver.getResult(), ((Number) tst).longValue())
+                : new Scaler(preSolver.getResult());
+        Map<String, ContextSelector> variants = Maps.newMap();
+        Map<JMethod, ContextSelector> selectors = Maps.newMap();
+        scaler.selectContext().forEach((method, variant) ->
+                selectors.put(method, variants.computeIfAbsent(
+                        variant, CSPTA::getContextSelector)));
+        return new SelectiveSelector(selectors, new CISelector());
+    }
+
     private static ContextSelector getContextSelector(String cs) {
         if (cs.equals("ci")) {
             return new CISelector();
@@ -0,0 +1,1125 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.cs;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import pascal.taie.World;
+import pascal.taie.analysis.graph.callgraph.CallKind;
+import pascal.taie.analysis.graph.callgraph.Edge;
+import pascal.taie.analysis.pta.core.cs.CSCallGraph;
+import pascal.taie.analysis.pta.core.cs.context.Context;
+import pascal.taie.analysis.pta.core.cs.context.ListContext;
+import pascal.taie.analysis.pta.core.cs.element.ArrayIndex;
+import pascal.taie.analysis.pta.core.cs.element.CSCallSite;
+import pascal.taie.analysis.pta.core.cs.element.CSManager;
+import pascal.taie.analysis.pta.core.cs.element.CSMethod;
+import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.cs.element.CSVar;
+import pascal.taie.analysis.pta.core.cs.element.InstanceField;
+import pascal.taie.analysis.pta.core.cs.element.Pointer;
+import pascal.taie.analysis.pta.core.cs.element.StaticField;
+import pascal.taie.analysis.pta.core.heap.HeapModel;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.analysis.pta.pts.PointsToSet;
+import pascal.taie.analysis.pta.pts.PointsToSetFactory;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.ir.stmt.New;
+import pascal.taie.language.classes.ClassHierarchy;
+import pascal.taie.language.classes.JField;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.language.type.Type;
+import pascal.taie.util.AnalysisException;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.Sets;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Saves the state of {@link Solver} to a binary file, and restores
+ * the state from the file, so that a long analysis can resume after
+ * a crash or timeout.
+ * <p>
+ * The state consists of the call graph, the collapsed PFG nodes,
+ * the non-empty points-to sets, the PFG edges, the pending work-list
+ * entries and reachable methods, and the state of the context budget.
+ * A checkpoint is taken between two work-list entries, when the effects
+ * of all processed entries are in the state.
+ * <p>
+ * The file is a header followed by segments, and each checkpoint appends
+ * one segment, which only holds the facts that have changed since the
+ * previous checkpoint: the solver records the new reachable methods and
+ * call edges, the new collapsed nodes, and the pointers whose points-to
+ * sets or PFG successors have changed. The pending work-list, the
+ * pending methods and the budget are small, so each segment holds them
+ * as a whole. The first checkpoint of a solver whose state was loaded
+ * from a file, rather than built from scratch, starts a new file with
+ * the whole state. A segment is prefixed by its length, and a truncated
+ * segment, e.g., after a crash during writing, is ignored on loading.
+ * <p>
+ * Segments are streams of ints and strings. Program elements (methods,
+ * contexts, objects, etc.) are defined at their first occurrence in the
+ * file and referred to by ids afterwards, and they are restored by their
+ * signatures and statement/variable indexes, so a checkpoint can only be
+ * resumed on the same program and options.
+ * <p>
+ * A checkpoint of a finished analysis is a snapshot for incremental
+ * analysis, which loads it for a program whose methods have changed.
+ * The elements referring to statements or variables of the changed
+ * methods are stale, and the facts on stale elements are dropped;
+ * the loader records the other pointers and methods that lose facts,
+ * from which {@link Retraction} starts.
+ * <p>
+ * The solver thread only encodes the changes of each checkpoint into
+ * memory buffers, which are written to the file by a background thread
+ * through a {@link FileChannel}.
+ */
+class Checkpoint {
+
+    private static final Logger logger = LogManager.getLogger(Checkpoint.class);
+
+    private static final int MAGIC = 0x54414945; // "TAIE"
+
+    private static final int VERSION = 2;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Tag of an element defined at this position, other tags are ids
+     * of defined elements.
+     */
+    private static final int NEW = -1;
+
+    // kinds of pointers
+    private static final int CS_VAR = 0;
+
+    private static final int STATIC_FIELD = 1;
+
+    private static final int INSTANCE_FIELD = 2;
+
+    private static final int ARRAY_INDEX = 3;
+
+    // kinds of context elements
+    private static final int CALL_SITE = 0;
+
+    private static final int OBJ = 1;
+
+    private static final int TYPE = 2;
+
+    private final CSManager csManager;
+
+    private final CSCallGraph callGraph;
+
+    private final PointerFlowGraph pointerFlowGraph;
+
+    private final WorkList workList;
+
+    private final HeapModel heapModel;
+
+    private final PointsToSetFactory ptsFactory;
+
+    /**
+     * Empty context of the analysis, in whose trie the loaded
+     * contexts are made.
+     */
+    private final Context emptyContext;
+
+    /**
+     * Budget of context sensitivity, or null if it is unlimited.
+     */
+    private final ContextBudget budget;
+
+    /**
+     * Whether the changes of the state are recorded for saving.
+     */
+    private final boolean journaling;
+
+    /**
+     * Encoder of the file being written, whose ids of elements are
+     * shared by all segments of the file, or null if no file has been
+     * started, or the next checkpoint must start a new file.
+     */
+    private Encoder encoder;
+
+    // changes since the previous checkpoint
+    private final Queue<CSMethod> newReachableMethods = new ConcurrentLinkedQueue<>();
+
+    private final Queue<Edge<CSCallSite, CSMethod>> newCallEdges = new ConcurrentLinkedQueue<>();
+
+    private final List<Pointer> newCollapsedReps = new ArrayList<>();
+
+    private final Set<Pointer> changedPointsToSets = ConcurrentHashMap.newKeySet();
+
+    private final Set<Pointer> changedSuccs = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Future<?> pendingWrite;
+
+    /**
+     * Methods whose statements and variables have changed since
+     * the checkpoint was saved.
+     */
+    private Predicate<JMethod> changed;
+
+    /**
+     * Pointers that lose objects or incoming PFG edges on stale elements.
+     */
+    private final Set<Pointer> lostPointers = Sets.newSet();
+
+    /**
+     * Methods that lose incoming call edges from stale call sites.
+     */
+    private final Set<CSMethod> lostCallees = Sets.newSet();
+
+    /**
+     * @param budget     the context budget, or null if it is unlimited.
+     * @param journaling whether checkpoints will be saved, so that
+     *                   the changes of the state are recorded.
+     */
+    Checkpoint(CSManager csManager, CSCallGraph callGraph,
+               PointerFlowGraph pointerFlowGraph, WorkList workList,
+               HeapModel heapModel, PointsToSetFactory ptsFactory,
+               Context emptyContext, ContextBudget budget, boolean journaling) {
+        this.csManager = csManager;
+        this.callGraph = callGraph;
+        this.pointerFlowGraph = pointerFlowGraph;
+        this.workList = workList;
+        this.heapModel = heapModel;
+        this.ptsFactory = ptsFactory;
+        this.emptyContext = emptyContext;
+        this.budget = budget;
+        this.journaling = journaling;
+    }
+
+    // ------------------------------------------------------------------
+    // recording of changes, which can be called concurrently
+    // ------------------------------------------------------------------
+
+    void recordReachableMethod(CSMethod csMethod) {
+        if (journaling) {
+            newReachableMethods.add(csMethod);
+        }
+    }
+
+    void recordCallEdge(Edge<CSCallSite, CSMethod> edge) {
+        if (journaling) {
+            newCallEdges.add(edge);
+        }
+    }
+
+    /**
+     * Records that the points-to set of given pointer has changed.
+     */
+    void recordPointsToSet(Pointer pointer) {
+        if (journaling) {
+            changedPointsToSets.add(pointer);
+        }
+    }
+
+    /**
+     * Records that given pointer has new successors in the PFG.
+     */
+    void recordSuccs(Pointer pointer) {
+        if (journaling) {
+            changedSuccs.add(pointer);
+        }
+    }
+
+    /**
+     * Records that pointers have been collapsed into given representative,
+     * which gets their points-to sets and PFG successors.
+     */
+    void recordCollapse(Pointer rep) {
+        if (journaling) {
+            newCollapsedReps.add(rep);
+            changedPointsToSets.add(rep);
+            changedSuccs.add(rep);
+        }
+    }
+
+    /**
+     * Saves the changes since the previous checkpoint to given file.
+     * If the previous checkpoint is still being written, this checkpoint
+     * is skipped, and its changes are saved by the next one.
+     *
+     * @param newMethods reachable methods that have not been processed
+     * @return true if the checkpoint is taken.
+     */
+    boolean save(Path file, Collection<CSMethod> newMethods) {
+        if (pendingWrite != null && !pendingWrite.isDone()) {
+            logger.debug("Skip checkpoint as the previous one is being written");
+            return false;
+        }
+        waitForWrite();
+        boolean whole = encoder == null;
+        if (whole) {
+            encoder = new Encoder();
+            encoder.putInt(MAGIC);
+            encoder.putInt(VERSION);
+        }
+        Encoder out = encoder;
+        out.startSegment();
+        // call graph
+        putMethods(out, callGraph.entryMethods().toList());
+        putMethods(out, whole ? callGraph.reachableMethods().toList()
+                : drain(newReachableMethods));
+        putMethods(out, newMethods);
+        List<Edge<CSCallSite, CSMethod>> edges = whole
+                ? callGraph.edges().toList() : drain(newCallEdges);
+        out.putInt(edges.size());
+        for (Edge<CSCallSite, CSMethod> edge : edges) {
+            out.putInt(edge.getKind().ordinal());
+            putCSCallSite(out, edge.getCallSite());
+            putCSMethod(out, edge.getCallee());
+        }
+        // collapsed nodes of PFG
+        Collection<Pointer> reps = toReps(whole
+                ? pointerFlowGraph.getCollapsedReps() : newCollapsedReps);
+        out.putInt(reps.size());
+        for (Pointer rep : reps) {
+            Collection<Pointer> members = pointerFlowGraph.getMembers(rep);
+            out.putInt(members.size());
+            members.forEach(member -> putPointer(out, member));
+        }
+        // points-to sets (members of collapsed nodes share the sets of
+        // their representatives)
+        List<Pointer> pointers = (whole
+                ? Stream.<Collection<? extends Pointer>>of(
+                        csManager.getCSVars(), csManager.getStaticFields(),
+                        csManager.getInstanceFields(), csManager.getArrayIndexes())
+                .flatMap(Collection::stream)
+                .map(p -> (Pointer) p)
+                .toList()
+                : toReps(changedPointsToSets))
+                .stream()
+                .filter(p -> !p.getPointsToSet().isEmpty()
+                        && pointerFlowGraph.getRep(p) == p)
+                .toList();
+        out.putInt(pointers.size());
+        for (Pointer pointer : pointers) {
+            putPointer(out, pointer);
+            putPointsToSet(out, pointer.getPointsToSet());
+        }
+        // PFG edges
+        Collection<Pointer> sources = whole
+                ? List.copyOf(pointerFlowGraph.getPointers())
+                : toReps(changedSuccs);
+        out.putInt(sources.size());
+        for (Pointer source : sources) {
+            putPointer(out, source);
+            List<Pointer> succs = List.copyOf(pointerFlowGraph.getSuccsOf(source));
+            out.putInt(succs.size());
+            succs.forEach(succ -> putPointer(out, succ));
+        }
+        // work-list
+        List<WorkList.Entry> entries = workList.getEntries();
+        out.putInt(entries.size());
+        for (WorkList.Entry entry : entries) {
+            putPointer(out, entry.pointer());
+            putPointsToSet(out, entry.pointsToSet());
+        }
+        putBudget(out);
+        newReachableMethods.clear();
+        newCallEdges.clear();
+        newCollapsedReps.clear();
+        changedPointsToSets.clear();
+        changedSuccs.clear();
+        ByteBuffer[] buffers = out.finishSegment();
+        pendingWrite = writer.submit(() -> write(file, buffers, whole));
+        return true;
+    }
+
+    private static <T> List<T> drain(Queue<T> queue) {
+        List<T> list = new ArrayList<>(queue.size());
+        for (T e; (e = queue.poll()) != null; ) {
+            list.add(e);
+        }
+        return list;
+    }
+
+    /**
+     * @return the distinct representatives of given pointers.
+     */
+    private Collection<Pointer> toReps(Collection<Pointer> pointers) {
+        Set<Pointer> reps = Sets.newHybridOrderedSet();
+        pointers.forEach(p -> reps.add(pointerFlowGraph.getRep(p)));
+        return reps;
+    }
+
+    /**
+     * Makes the next checkpoint start a new file with the whole state,
+     * e.g., after the state has been loaded from a file, or facts have
+     * been removed from the state.
+     */
+    void restart() {
+        encoder = null;
+    }
+
+    /**
+     * Saves the state of the finished analysis to given file,
+     * after the previous checkpoint has been written.
+     */
+    void saveFinal(Path file) {
+        waitForWrite();
+        save(file, List.of());
+    }
+
+    /**
+     * Writes a segment to given file. The first segment replaces
+     * the previous file only when it is complete, and the other
+     * segments are appended to the file.
+     */
+    private static void write(Path file, ByteBuffer[] buffers, boolean first) {
+        Path target = first
+                ? file.resolveSibling(file.getFileName() + ".tmp") : file;
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+            try (FileChannel channel = first
+                    ? FileChannel.open(target, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                    : FileChannel.open(target, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND)) {
+                long size = 0;
+                for (ByteBuffer buffer : buffers) {
+                    size += buffer.remaining();
+                }
+                for (long written = 0; written < size; ) {
+                    written += channel.write(buffers);
+                }
+            }
+            if (first) {
+                Files.move(target, file, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+            logger.info("Saved checkpoint to {}", file);
+        } catch (IOException e) {
+            throw new AnalysisException("Failed to write checkpoint " + file, e);
+        }
+    }
+
+    /**
+     * Waits until all checkpoints have been written, and stops
+     * the background writer.
+     */
+    void close() {
+        waitForWrite();
+        writer.shutdown();
+    }
+
+    private void waitForWrite() {
+        if (pendingWrite != null) {
+            try {
+                pendingWrite.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AnalysisException("Interrupted when writing checkpoint", e);
+            } catch (ExecutionException e) {
+                throw new AnalysisException("Failed to write checkpoint", e.getCause());
+            } finally {
+                pendingWrite = null;
+            }
+        }
+    }
+
+    /**
+     * Restores the state from given file into the (empty) CS manager,
+     * call graph, PFG and work-list of this checkpoint.
+     *
+     * @return the reachable methods that have not been processed.
+     */
+    List<CSMethod> load(Path file) {
+        return load(file, null);
+    }
+
+    /**
+     * Restores the state from given file, dropping the facts on stale
+     * elements, i.e., the elements referring to statements or variables
+     * of the changed methods, or to methods and fields that no longer
+     * exist. The pointers and methods that lose facts are available by
+     * {@link #getLostPointers()} and {@link #getLostCallees()}.
+     *
+     * @param changed the changed methods, or null if no method changed.
+     * @return the reachable methods that have not been processed.
+     */
+    List<CSMethod> load(Path file, Predicate<JMethod> changed) {
+        this.changed = changed;
+        // the state is not built from the changes recorded by this object
+        restart();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Decoder in = new Decoder(channel);
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new AnalysisException(file + " is not a checkpoint of this version");
+            }
+            int segments = 0;
+            List<CSMethod> newMethods = List.of();
+            List<WorkList.Entry> entries = List.of();
+            while (in.nextSegment()) {
+                ++segments;
+                newMethods = loadSegment(file, in);
+                // only the pending entries of the last segment are pending
+                entries = getEntries(in);
+                loadBudget(in);
+            }
+            if (segments == 0) {
+                throw new AnalysisException(file + " has no complete checkpoint");
+            }
+            entries.forEach(e -> workList.addEntry(e.pointer(), e.pointsToSet()));
+            logger.info("Resumed from checkpoint {} ({} segments)", file, segments);
+            return newMethods;
+        } catch (IOException e) {
+            throw new AnalysisException("Failed to read checkpoint " + file, e);
+        }
+    }
+
+    /**
+     * Loads the facts in a segment, except the work-list and the budget.
+     *
+     * @return the reachable methods that had not been processed when
+     * the segment was saved.
+     */
+    private List<CSMethod> loadSegment(Path file, Decoder in) throws IOException {
+        // call graph
+        getMethods(in).forEach(callGraph::addEntryMethod);
+        getMethods(in).forEach(callGraph::addReachableMethod);
+        List<CSMethod> newMethods = getMethods(in);
+        CallKind[] kinds = CallKind.values();
+        for (int i = in.getInt(); i > 0; --i) {
+            CallKind kind = kinds[in.getInt()];
+            CSCallSite csCallSite = getCSCallSite(in);
+            CSMethod csMethod = getCSMethod(in);
+            if (csCallSite != null && csMethod != null) {
+                callGraph.addEdge(new Edge<>(kind, csCallSite, csMethod));
+            } else if (csMethod != null) {
+                lostCallees.add(csMethod);
+            }
+        }
+        // collapsed nodes of PFG, whose sets are shared later
+        List<Collection<Pointer>> collapsed = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; --i) {
+            List<Pointer> members = new ArrayList<>();
+            for (int j = in.getInt(); j > 0; --j) {
+                members.add(getPointer(in));
+            }
+            if (changed != null) {
+                throw new AnalysisException("Cannot update " + file +
+                        " incrementally as it has collapsed PFG cycles");
+            }
+            pointerFlowGraph.collapse(members.get(0), members);
+            collapsed.add(members);
+        }
+        // points-to sets
+        for (int i = in.getInt(); i > 0; --i) {
+            Pointer pointer = getPointer(in);
+            PointsToSet pts = getPointsToSet(in, pointer);
+            if (pointer != null) {
+                pointer.getPointsToSet().addAll(pts);
+            }
+        }
+        for (Collection<Pointer> members : collapsed) {
+            PointsToSet pts = members.iterator().next().getPointsToSet();
+            members.forEach(member -> member.setPointsToSet(pts));
+        }
+        // PFG edges
+        for (int i = in.getInt(); i > 0; --i) {
+            Pointer source = getPointer(in);
+            for (int j = in.getInt(); j > 0; --j) {
+                Pointer target = getPointer(in);
+                if (source != null && target != null) {
+                    pointerFlowGraph.addEdge(source, target);
+                } else if (target != null) {
+                    lostPointers.add(target);
+                }
+            }
+        }
+        return newMethods;
+    }
+
+    private List<WorkList.Entry> getEntries(Decoder in) throws IOException {
+        List<WorkList.Entry> entries = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; --i) {
+            Pointer pointer = getPointer(in);
+            PointsToSet pts = getPointsToSet(in, pointer);
+            if (pointer != null) {
+                entries.add(new WorkList.Entry(pointer, pts));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return the pointers that lose objects or incoming PFG edges
+     * on stale elements in the last load.
+     */
+    Set<Pointer> getLostPointers() {
+        return lostPointers;
+    }
+
+    /**
+     * @return the methods that lose incoming call edges from stale
+     * call sites in the last load.
+     */
+    Set<CSMethod> getLostCallees() {
+        return lostCallees;
+    }
+
+    /**
+     * Puts the state of the context budget, i.e., the numbers of contexts
+     * of methods, the current limits, and the downgraded methods.
+     */
+    private void putBudget(Encoder out) {
+        if (budget == null) {
+            out.putInt(0);
+            return;
+        }
+        out.putInt(1);
+        putMethodInts(out, budget.getContextCounts());
+        out.putLong(budget.getMethodLimit());
+        out.putLong(Double.doubleToLongBits(budget.getHeapLimit()));
+        putMethodInts(out, budget.getLevels());
+    }
+
+    private static void putMethodInts(Encoder out, Map<JMethod, Integer> map) {
+        out.putInt(map.size());
+        map.forEach((method, i) -> {
+            putMethod(out, method);
+            out.putInt(i);
+        });
+    }
+
+    /**
+     * Restores the state of the context budget, if both the checkpoint
+     * and the solver have a budget.
+     */
+    private void loadBudget(Decoder in) throws IOException {
+        if (in.getInt() == 0) {
+            return;
+        }
+        Map<JMethod, Integer> counts = getMethodInts(in);
+        long methodLimit = in.getLong();
+        double heapLimit = Double.longBitsToDouble(in.getLong());
+        Map<JMethod, Integer> levels = getMethodInts(in);
+        if (budget != null) {
+            budget.restore(counts, methodLimit, heapLimit, levels);
+        }
+    }
+
+    private static Map<JMethod, Integer> getMethodInts(Decoder in) throws IOException {
+        Map<JMethod, Integer> map = Maps.newMap();
+        for (int i = in.getInt(); i > 0; --i) {
+            JMethod method = getMethod(in);
+            int value = in.getInt();
+            if (method != null) {
+                map.put(method, value);
+            }
+        }
+        return map;
+    }
+
+    // ------------------------------------------------------------------
+    // encoding of elements
+    // ------------------------------------------------------------------
+
+    private void putMethods(Encoder out, Collection<CSMethod> methods) {
+        out.putInt(methods.size());
+        methods.forEach(m -> putCSMethod(out, m));
+    }
+
+    private void putCSMethod(Encoder out, CSMethod csMethod) {
+        out.putRef(csMethod, () -> {
+            putContext(out, csMethod.getContext());
+            putMethod(out, csMethod.getMethod());
+        });
+    }
+
+    private void putCSCallSite(Encoder out, CSCallSite csCallSite) {
+        out.putRef(csCallSite, () -> {
+            putContext(out, csCallSite.getContext());
+            putInvoke(out, csCallSite.getCallSite());
+        });
+    }
+
+    private void putCSObj(Encoder out, CSObj csObj) {
+        out.putRef(csObj, () -> {
+            putContext(out, csObj.getContext());
+            putObj(out, csObj.getObject());
+        });
+    }
+
+    private void putPointer(Encoder out, Pointer pointer) {
+        out.putRef(pointer, () -> {
+            if (pointer instanceof CSVar csVar) {
+                out.putInt(CS_VAR);
+                putContext(out, csVar.getContext());
+                putMethod(out, csVar.getVar().getMethod());
+                out.putInt(csVar.getVar().getIndex());
+            } else if (pointer instanceof StaticField staticField) {
+                out.putInt(STATIC_FIELD);
+                putField(out, staticField.getField());
+            } else if (pointer instanceof InstanceField instanceField) {
+                out.putInt(INSTANCE_FIELD);
+                putCSObj(out, instanceField.getBase());
+                putField(out, instanceField.getField());
+            } else if (pointer instanceof ArrayIndex arrayIndex) {
+                out.putInt(ARRAY_INDEX);
+                putCSObj(out, arrayIndex.getArray());
+            } else {
+                throw new AnalysisException("Unknown pointer: " + pointer);
+            }
+        });
+    }
+
+    private void putPointsToSet(Encoder out, PointsToSet pts) {
+        List<CSObj> objs = pts.objects().toList();
+        out.putInt(objs.size());
+        objs.forEach(obj -> putCSObj(out, obj));
+    }
+
+    private void putContext(Encoder out, Context context) {
+        out.putRef(context, () -> {
+            out.putInt(context.getLength());
+            for (int i = 0; i < context.getLength(); ++i) {
+                Object elem = context.getElementAt(i);
+                if (elem instanceof Invoke invoke) {
+                    out.putInt(CALL_SITE);
+                    putInvoke(out, invoke);
+                } else if (elem instanceof Obj obj) {
+                    out.putInt(OBJ);
+                    putObj(out, obj);
+                } else if (elem instanceof Type type) {
+                    out.putInt(TYPE);
+                    out.putRef(type, () -> out.putString(type.getName()));
+                } else {
+                    throw new AnalysisException("Unknown context element: " + elem);
+                }
+            }
+        });
+    }
+
+    private void putObj(Encoder out, Obj obj) {
+        out.putRef(obj, () -> {
+            New newStmt = getAllocationSite(obj);
+            if (newStmt == null) {
+                throw new AnalysisException("Cannot save object " + obj);
+            }
+            putMethod(out, newStmt.getContainer());
+            out.putInt(newStmt.getIndex());
+        });
+    }
+
+    /**
+     * @return an allocation site from which the heap model gives the
+     * object, or null if the object is not allocated by any site.
+     * A merged object is given by any allocation site it represents.
+     */
+    private static New getAllocationSite(Obj obj) {
+        Object alloc = obj.getAllocation();
+        if (alloc instanceof New newStmt) {
+            return newStmt;
+        }
+        if (alloc instanceof Set<?> represented) {
+            for (Object o : represented) {
+                New newStmt = o instanceof Obj repObj
+                        ? getAllocationSite(repObj) : null;
+                if (newStmt != null) {
+                    return newStmt;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void putInvoke(Encoder out, Invoke invoke) {
+        out.putRef(invoke, () -> {
+            putMethod(out, invoke.getContainer());
+            out.putInt(invoke.getIndex());
+        });
+    }
+
+    private static void putMethod(Encoder out, JMethod method) {
+        out.putRef(method, () -> out.putString(method.getSignature()));
+    }
+
+    private static void putField(Encoder out, JField field) {
+        out.putRef(field, () -> out.putString(field.getSignature()));
+    }
+
+    // ------------------------------------------------------------------
+    // decoding of elements, in the same order as encoding; stale
+    // elements, and the elements composed of them, are decoded as null
+    // ------------------------------------------------------------------
+
+    private List<CSMethod> getMethods(Decoder in) throws IOException {
+        List<CSMethod> methods = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; --i) {
+            CSMethod csMethod = getCSMethod(in);
+            if (csMethod != null) {
+                methods.add(csMethod);
+            }
+        }
+        return methods;
+    }
+
+    private CSMethod getCSMethod(Decoder in) throws IOException {
+        return in.getRef(() -> {
+            Context context = getContext(in);
+            JMethod method = getMethod(in);
+            return context != null && method != null
+                    ? csManager.getCSMethod(context, method) : null;
+        });
+    }
+
+    private CSCallSite getCSCallSite(Decoder in) throws IOException {
+        return in.getRef(() -> {
+            Context context = getContext(in);
+            Invoke invoke = getInvoke(in);
+            return context != null && invoke != null
+                    ? csManager.getCSCallSite(context, invoke) : null;
+        });
+    }
+
+    private CSObj getCSObj(Decoder in) throws IOException {
+        return in.getRef(() -> {
+            Context context = getContext(in);
+            Obj obj = getObj(in);
+            return context != null && obj != null
+                    ? csManager.getCSObj(context, obj) : null;
+        });
+    }
+
+    private Pointer getPointer(Decoder in) throws IOException {
+        return in.<Pointer>getRef(() -> switch (in.getInt()) {
+            case CS_VAR -> {
+                Context context = getContext(in);
+                JMethod method = getUnchangedMethod(in);
+                int index = in.getInt();
+                yield context != null && method != null
+                        ? csManager.getCSVar(context, method.getIR().getVar(index))
+                        : null;
+            }
+            case STATIC_FIELD -> {
+                JField field = getField(in);
+                yield field != null ? csManager.getStaticField(field) : null;
+            }
+            case INSTANCE_FIELD -> {
+                CSObj base = getCSObj(in);
+                JField field = getField(in);
+                yield base != null && field != null
+                        ? csManager.getInstanceField(base, field) : null;
+            }
+            case ARRAY_INDEX -> {
+                CSObj array = getCSObj(in);
+                yield array != null ? csManager.getArrayIndex(array) : null;
+            }
+            default -> throw new AnalysisException("Corrupted checkpoint");
+        });
+    }
+
+    /**
+     * @param pointer the pointer of the points-to set, which loses
+     *                objects if any object is stale.
+     */
+    private PointsToSet getPointsToSet(Decoder in, Pointer pointer) throws IOException {
+        PointsToSet pts = ptsFactory.newSet();
+        for (int i = in.getInt(); i > 0; --i) {
+            CSObj obj = getCSObj(in);
+            if (obj != null) {
+                pts.addObject(obj);
+            } else if (pointer != null) {
+                lostPointers.add(pointer);
+            }
+        }
+        return pts;
+    }
+
+    private Context getContext(Decoder in) throws IOException {
+        return in.getRef(() -> {
+            Object[] elems = new Object[in.getInt()];
+            boolean stale = false;
+            for (int i = 0; i < elems.length; ++i) {
+                elems[i] = switch (in.getInt()) {
+                    case CALL_SITE -> getInvoke(in);
+                    case OBJ -> getObj(in);
+                    case TYPE -> in.getRef(() -> World.get()
+                            .getTypeSystem().getType(in.getString()));
+                    default -> throw new AnalysisException("Corrupted checkpoint");
+                };
+                stale |= elems[i] == null;
+            }
+            return stale ? null : ListContext.make(emptyContext, elems);
+        });
+    }
+
+    private Obj getObj(Decoder in) throws IOException {
+        return in.getRef(() -> {
+            JMethod method = getUnchangedMethod(in);
+            int index = in.getInt();
+            return method != null
+                    ? heapModel.getObj((New) method.getIR().getStmt(index))
+                    : null;
+        });
+    }
+
+    private Invoke getInvoke(Decoder in) throws IOException {
+        return in.getRef(() -> {
+            JMethod method = getUnchangedMethod(in);
+            int index = in.getInt();
+            return method != null
+                    ? (Invoke) method.getIR().getStmt(index)
+                    : null;
+        });
+    }
+
+    /**
+     * @return the method, or null if it has changed, so that its
+     * statements and variables cannot be restored by indexes.
+     */
+    private JMethod getUnchangedMethod(Decoder in) throws IOException {
+        JMethod method = getMethod(in);
+        return method != null && (changed == null || !changed.test(method))
+                ? method : null;
+    }
+
+    private static JMethod getMethod(Decoder in) throws IOException {
+        return in.getRef(() -> hierarchy().getMethod(in.getString()));
+    }
+
+    private static JField getField(Decoder in) throws IOException {
+        return in.getRef(() -> hierarchy().getField(in.getString()));
+    }
+
+    private static ClassHierarchy hierarchy() {
+        return World.get().getClassHierarchy();
+    }
+
+    /**
+     * Encodes ints and strings into lists of buffers, one list per segment.
+     * The ids of elements are kept across segments.
+     */
+    private static class Encoder {
+
+        private final Map<Object, Integer> ids = Maps.newMap();
+
+        private List<ByteBuffer> buffers = new ArrayList<>();
+
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        /**
+         * Buffer and position of the length of the current segment.
+         */
+        private ByteBuffer lengthBuffer;
+
+        private int lengthPosition;
+
+        /**
+         * Number of bytes of the current segment.
+         */
+        private int segmentSize;
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                buffers.add(buffer.flip());
+                buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, bytes));
+            }
+        }
+
+        private void putInt(int i) {
+            ensure(Integer.BYTES);
+            buffer.putInt(i);
+            segmentSize += Integer.BYTES;
+        }
+
+        private void putLong(long l) {
+            ensure(Long.BYTES);
+            buffer.putLong(l);
+            segmentSize += Long.BYTES;
+        }
+
+        private void putString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            ensure(bytes.length);
+            buffer.put(bytes);
+            segmentSize += bytes.length;
+        }
+
+        /**
+         * Puts the id of given element, or defines the element by
+         * {@code definition} if it has not been put yet. Elements get
+         * their ids after their definitions, which may define other
+         * elements, i.e., in the same order as {@link Decoder#getRef}.
+         */
+        private void putRef(Object elem, Runnable definition) {
+            Integer id = ids.get(elem);
+            if (id != null) {
+                putInt(id);
+            } else {
+                putInt(NEW);
+                definition.run();
+                ids.put(elem, ids.size());
+            }
+        }
+
+        /**
+         * Starts a segment, whose length is filled by {@link #finishSegment()}.
+         */
+        private void startSegment() {
+            ensure(Integer.BYTES);
+            lengthBuffer = buffer;
+            lengthPosition = buffer.position();
+            buffer.putInt(0);
+            segmentSize = 0;
+        }
+
+        /**
+         * @return the buffers of the current segment, and of the file
+         * header if the segment is the first one.
+         */
+        private ByteBuffer[] finishSegment() {
+            lengthBuffer.putInt(lengthPosition, segmentSize);
+            buffers.add(buffer.flip());
+            ByteBuffer[] result = buffers.toArray(ByteBuffer[]::new);
+            buffers = new ArrayList<>();
+            buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            lengthBuffer = null;
+            return result;
+        }
+    }
+
+    /**
+     * Decodes ints and strings from a channel.
+     */
+    private static class Decoder {
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private final List<Object> elems = new ArrayList<>();
+
+        private Decoder(FileChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                buffer.compact();
+                while (buffer.position() < bytes) {
+                    if (channel.read(buffer) < 0) {
+                        throw new AnalysisException("Truncated checkpoint");
+                    }
+                }
+                buffer.flip();
+            }
+        }
+
+        private int getInt() throws IOException {
+            ensure(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        private long getLong() throws IOException {
+            ensure(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        /**
+         * Reads the length of the next segment.
+         *
+         * @return true if the next segment is complete, or false if there
+         * is no more segment, or the rest of the file is truncated.
+         */
+        private boolean nextSegment() throws IOException {
+            long remaining = channel.size()
+                    - (channel.position() - buffer.remaining());
+            if (remaining == 0) {
+                return false;
+            }
+            if (remaining < Integer.BYTES
+                    || getInt() > remaining - Integer.BYTES) {
+                logger.warn("Ignored truncated checkpoint segment");
+                return false;
+            }
+            return true;
+        }
+
+        private String getString() throws IOException {
+            byte[] bytes = new byte[getInt()];
+            for (int i = 0; i < bytes.length; ) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), bytes.length - i);
+                buffer.get(bytes, i, n);
+                i += n;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T getRef(Definition<T> definition) throws IOException {
+            int id = getInt();
+            if (id != NEW) {
+                return (T) elems.get(id);
+            }
+            T elem = definition.read();
+            elems.add(elem);
+            return elem;
+        }
+    }
+
+    /**
+     * Reads the definition of an element.
+     */
+    @FunctionalInterface
+    private interface Definition<T> {
+        T read() throws IOException;
+    }
+}
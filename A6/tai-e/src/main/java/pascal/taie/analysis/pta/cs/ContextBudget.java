@@ -0,0 +1,209 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.cs;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import pascal.taie.analysis.pta.core.cs.selector.DowngradingSelector;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.util.collection.Maps;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Budget of context sensitivity. It monitors the number of
+ * context-sensitive methods and the heap usage of the analysis, and
+ * when either exceeds its limit, it downgrades the context sensitivity
+ * of the methods that have the most contexts, instead of letting
+ * the analysis run out of memory.
+ * <p>
+ * The heap usage is measured after the most recent garbage collection,
+ * so that the garbage, which will be collected anyway, does not trigger
+ * downgrades. The contexts that have been created are never released, so after
+ * a downgrade the limits are raised, i.e., each further downgrade
+ * happens only when the analysis keeps growing.
+ */
+class ContextBudget {
+
+    private static final Logger logger = LogManager.getLogger(ContextBudget.class);
+
+    /**
+     * The heap usage is measured once every (HEAP_CHECK_MASK + 1) checks.
+     */
+    private static final int HEAP_CHECK_MASK = 0xfff;
+
+    private final DowngradingSelector selector;
+
+    /**
+     * Map from method to the number of its contexts.
+     */
+    private final Map<JMethod, Integer> contextCounts = Maps.newConcurrentMap();
+
+    private final AtomicInteger totalContexts = new AtomicInteger();
+
+    /**
+     * Limit of the number of context-sensitive methods.
+     */
+    private long methodLimit;
+
+    /**
+     * Limit of the ratio of used heap to max heap.
+     */
+    private double heapLimit;
+
+    private int checks;
+
+    ContextBudget(DowngradingSelector selector, long methodLimit, double heapLimit) {
+        this.selector = selector;
+        this.methodLimit = methodLimit;
+        this.heapLimit = heapLimit;
+    }
+
+    /**
+     * Records a new context-sensitive method, i.e., a new context
+     * of given method. This method can be called concurrently.
+     */
+    void addContext(JMethod method) {
+        contextCounts.merge(method, 1, Integer::sum);
+        totalContexts.incrementAndGet();
+    }
+
+    /**
+     * @return the map from method to the number of its contexts.
+     */
+    Map<JMethod, Integer> getContextCounts() {
+        return Collections.unmodifiableMap(contextCounts);
+    }
+
+    long getMethodLimit() {
+        return methodLimit;
+    }
+
+    double getHeapLimit() {
+        return heapLimit;
+    }
+
+    /**
+     * @return the map from downgraded method to the index of its variant.
+     */
+    Map<JMethod, Integer> getLevels() {
+        return selector.getLevels();
+    }
+
+    /**
+     * Restores the state saved in a checkpoint.
+     */
+    void restore(Map<JMethod, Integer> contextCounts, long methodLimit,
+                 double heapLimit, Map<JMethod, Integer> levels) {
+        this.contextCounts.clear();
+        this.contextCounts.putAll(contextCounts);
+        totalContexts.set(contextCounts.values()
+                .stream()
+                .mapToInt(Integer::intValue)
+                .sum());
+        this.methodLimit = methodLimit;
+        this.heapLimit = heapLimit;
+        selector.setLevels(levels);
+    }
+
+    /**
+     * Checks the budget, and downgrades methods if it is exceeded.
+     * The number of context-sensitive methods is checked on every call,
+     * and the heap usage periodically, so this method is cheap enough
+     * to be called after each work-list entry. It should not be called
+     * concurrently.
+     */
+    void check() {
+        int total = totalContexts.get();
+        boolean overMethods = total > methodLimit;
+        double heap = 0;
+        if (overMethods || (++checks & HEAP_CHECK_MASK) == 0) {
+            heap = getHeapUsage();
+        }
+        boolean overHeap = heap > heapLimit;
+        if (!overMethods && !overHeap) {
+            return;
+        }
+        logger.warn("Context budget exceeded: {} context-sensitive methods" +
+                        " (limit: {}), {}% heap used (limit: {}%)",
+                total, methodLimit, Math.round(heap * 100), Math.round(heapLimit * 100));
+        downgrade();
+        if (overMethods) {
+            methodLimit = total + methodLimit / 2;
+        }
+        if (overHeap) {
+            heapLimit = (heap + 1) / 2;
+        }
+    }
+
+    /**
+     * @return the ratio of the heap used after the most recent garbage
+     * collection to max heap, or 0 if no collection has happened.
+     */
+    private static double getHeapUsage() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP
+                    ? pool.getCollectionUsage() : null;
+            if (usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return (double) used / Runtime.getRuntime().maxMemory();
+    }
+
+    /**
+     * Downgrades the methods with the most contexts, until they cover
+     * half of the contexts of the methods that can be downgraded.
+     */
+    private void downgrade() {
+        List<Map.Entry<JMethod, Integer>> candidates = contextCounts.entrySet()
+                .stream()
+                .filter(e -> selector.canDowngrade(e.getKey()))
+                .sorted(Comparator.<Map.Entry<JMethod, Integer>>comparingInt(
+                                Map.Entry::getValue).reversed()
+                        .thenComparing(e -> e.getKey().getSignature()))
+                .toList();
+        int total = candidates.stream().mapToInt(Map.Entry::getValue).sum();
+        int covered = 0;
+        for (Map.Entry<JMethod, Integer> e : candidates) {
+            if (covered * 2 >= total) {
+                break;
+            }
+            JMethod method = e.getKey();
+            String from = selector.getVariant(method);
+            String to = selector.downgrade(method);
+            logger.info("Downgraded {} ({} contexts) from {} to {}",
+                    method, e.getValue(), from, to);
+            covered += e.getValue();
+        }
+    }
+}
@@ -25,18 +25,57 @@ package pascal.taie.analysis.pta.cs;
 import pascal.taie.analysis.pta.core.cs.element.Pointer;
 import pascal.taie.util.collection.Maps;
 import pascal.taie.util.collection.MultiMap;
+import pascal.taie.util.collection.Sets;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * Represents pointer flow graph in context-sensitive pointer analysis.
+ * <p>
+ * Pointers on a cycle of the PFG always end up with the same points-to
+ * set, thus they can be collapsed into one node, of which one pointer is
+ * the representative and the others are members. Edges of collapsed
+ * pointers are moved to the representative, but their targets are kept
+ * as-is, so clients should map the targets to representatives by
+ * {@link #getRep(Pointer)}.
+ * <p>
+ * A concurrent PFG allows adding edges from different pointers in
+ * parallel; the successors of each pointer must still be accessed under
+ * a lock of that pointer. Cycles cannot be collapsed in a concurrent PFG.
  */
 class PointerFlowGraph {
 
     /**
      * Map from a pointer (node) to its successors in PFG.
      */
-    private final MultiMap<Pointer, Pointer> successors = Maps.newMultiMap();
+    private final MultiMap<Pointer, Pointer> successors;
+
+    /**
+     * Map from a collapsed pointer to the pointer it has been merged into.
+     */
+    private final Map<Pointer, Pointer> parents = Maps.newMap();
+
+    /**
+     * Map from a representative to the other pointers collapsed into it.
+     */
+    private final MultiMap<Pointer, Pointer> members = Maps.newMultiMap();
+
+    PointerFlowGraph() {
+        this(false);
+    }
+
+    PointerFlowGraph(boolean concurrent) {
+        successors = concurrent
+                ? Maps.newMultiMap(Maps.newConcurrentMap())
+                : Maps.newMultiMap();
+    }
 
     /**
      * Adds an edge (source -> target) to this PFG.
@@ -45,7 +84,22 @@ class PointerFlowGraph {
      * otherwise false.
      */
     boolean addEdge(Pointer source, Pointer target) {
-        return successors.put(source, target);
+        if (parents.isEmpty()) {
+            return successors.put(source, target);
+        }
+        Pointer rep = getRep(source);
+        return rep != getRep(target) && successors.put(rep, target);
+    }
+
+    /**
+     * Removes an edge (source -> target) from this PFG. Edges of
+     * collapsed pointers cannot be removed.
+     *
+     * @return true if this PFG changed as a result of the call,
+     * otherwise false.
+     */
+    boolean removeEdge(Pointer source, Pointer target) {
+        return successors.remove(source, target);
     }
 
     /**
@@ -54,4 +108,120 @@ class PointerFlowGraph {
     Set<Pointer> getSuccsOf(Pointer pointer) {
         return successors.get(pointer);
     }
+
+    /**
+     * @return the pointers that have successors in the PFG.
+     */
+    Set<Pointer> getPointers() {
+        return successors.keySet();
+    }
+
+    /**
+     * @return the representatives of the collapsed nodes.
+     */
+    Set<Pointer> getCollapsedReps() {
+        return members.keySet();
+    }
+
+    /**
+     * @return the representative of the collapsed node that contains
+     * given pointer, or the pointer itself if it is not collapsed.
+     */
+    Pointer getRep(Pointer pointer) {
+        Pointer parent = parents.get(pointer);
+        if (parent == null) {
+            return pointer;
+        }
+        Pointer rep = getRep(parent);
+        if (rep != parent) {
+            parents.put(pointer, rep); // path compression
+        }
+        return rep;
+    }
+
+    /**
+     * @return the pointers in the node represented by given pointer,
+     * including the representative itself.
+     */
+    Collection<Pointer> getMembers(Pointer rep) {
+        Set<Pointer> others = members.get(rep);
+        if (others.isEmpty()) {
+            return List.of(rep);
+        }
+        List<Pointer> result = new ArrayList<>(others.size() + 1);
+        result.add(rep);
+        result.addAll(others);
+        return result;
+    }
+
+    /**
+     * Finds the representatives on the paths from {@code from} to
+     * {@code to}. Together with an edge {@code to -> from}, they form
+     * cycles, i.e., they belong to the same SCC.
+     *
+     * @return the representatives on the cycles (including both given
+     * pointers), or an empty set if {@code to} is unreachable.
+     */
+    Set<Pointer> findCycle(Pointer from, Pointer to) {
+        Set<Pointer> onCycle = Sets.newSet();
+        onCycle.add(to);
+        Set<Pointer> visited = Sets.newSet();
+        visited.add(to);
+        visited.add(from);
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(from, getSuccsOf(from).iterator()));
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.succs.hasNext()) {
+                Pointer succ = getRep(frame.succs.next());
+                if (onCycle.contains(succ)) {
+                    frame.reachesTarget = true;
+                } else if (visited.add(succ)) {
+                    stack.push(new Frame(succ, getSuccsOf(succ).iterator()));
+                }
+            } else {
+                stack.pop();
+                if (frame.reachesTarget) {
+                    onCycle.add(frame.node);
+                    if (!stack.isEmpty()) {
+                        stack.peek().reachesTarget = true;
+                    }
+                }
+            }
+        }
+        return onCycle.contains(from) ? onCycle : Set.of();
+    }
+
+    /**
+     * Collapses given representatives into {@code rep}.
+     */
+    void collapse(Pointer rep, Collection<Pointer> pointers) {
+        for (Pointer pointer : pointers) {
+            if (pointer != rep) {
+                parents.put(pointer, rep);
+                members.put(rep, pointer);
+                members.putAll(rep, members.get(pointer));
+                members.removeAll(pointer);
+                successors.putAll(rep, successors.get(pointer));
+                successors.removeAll(pointer);
+            }
+        }
+    }
+
+    /**
+     * Stack frame of iterative depth-first search in {@link #findCycle}.
+     */
+    private static class Frame {
+
+        private final Pointer node;
+
+        private final Iterator<Pointer> succs;
+
+        private boolean reachesTarget;
+
+        private Frame(Pointer node, Iterator<Pointer> succs) {
+            this.node = node;
+            this.succs = succs;
+        }
+    }
 }
@@ -0,0 +1,360 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+package pascal.taie.analysis.pta.cs;
+
+import pascal.taie.analysis.graph.callgraph.Edge;
+import pascal.taie.analysis.pta.core.cs.CSCallGraph;
+import pascal.taie.analysis.pta.core.cs.context.Context;
+import pascal.taie.analysis.pta.core.cs.element.CSCallSite;
+import pascal.taie.analysis.pta.core.cs.element.CSManager;
+import pascal.taie.analysis.pta.core.cs.element.CSMethod;
+import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.cs.element.CSVar;
+import pascal.taie.analysis.pta.core.cs.element.Pointer;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.language.classes.JClass;
+import pascal.taie.language.type.ClassType;
+import pascal.taie.language.type.Type;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.MultiMap;
+import pascal.taie.util.collection.Sets;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Retracts the facts of a restored solver state that may be derived
+ * from changed methods, i.e., the over-deletion phase of DRed (delete
+ * and rederive) incremental analysis.
+ * <p>
+ * Facts are retracted at the granularity of pointers: a pointer is
+ * affected if its points-to set may contain objects that are derived
+ * from deleted facts. Starting from the pointers that lose facts when
+ * the state is restored, the affected pointers are closed under
+ * <ul>
+ *     <li>PFG edges, i.e., the successors of an affected pointer are
+ *     affected;</li>
+ *     <li>the PFG edges and call edges derived from the points-to sets
+ *     of affected variables (by field/array accesses and instance
+ *     calls), which are removed together with their targets;</li>
+ *     <li>unreachable methods, i.e., the methods that are no longer
+ *     reachable from the entry methods, whose variables are affected
+ *     and whose PFG edges and call edges are removed.</li>
+ * </ul>
+ * The points-to sets of affected pointers are then cleared, and the
+ * solver rederives them from the unaffected pointers, and the facts
+ * derived from them, by its usual rules. The unaffected facts are not
+ * derived from any deleted fact, so they hold after the change.
+ * <p>
+ * The dispatch of the objects whose classes (or their supertypes)
+ * have changed may also change, thus the receiver variables pointing
+ * to such objects are affected as well.
+ */
+class Retraction {
+
+    private final CSManager csManager;
+
+    private final CSCallGraph callGraph;
+
+    private final PointerFlowGraph pointerFlowGraph;
+
+    private final StmtIndex stmtIndex;
+
+    private final Set<String> changedClasses;
+
+    private final Set<Pointer> affected = Sets.newSet();
+
+    private final Deque<Pointer> queue = new ArrayDeque<>();
+
+    /**
+     * CS methods containing affected variables.
+     */
+    private final Set<CSMethod> touchedMethods = Sets.newSet();
+
+    /**
+     * CS methods that lose incoming call edges.
+     */
+    private final Set<CSMethod> lostCallees = Sets.newSet();
+
+    private final Set<CSMethod> deadMethods = Sets.newSet();
+
+    /**
+     * Cache of whether the dispatch on each type may change.
+     */
+    private final Map<Type, Boolean> changedTypes = Maps.newMap();
+
+    Retraction(CSManager csManager, CSCallGraph callGraph,
+               PointerFlowGraph pointerFlowGraph, StmtIndex stmtIndex,
+               Set<String> changedClasses) {
+        this.csManager = csManager;
+        this.callGraph = callGraph;
+        this.pointerFlowGraph = pointerFlowGraph;
+        this.stmtIndex = stmtIndex;
+        this.changedClasses = changedClasses;
+    }
+
+    /**
+     * Retracts the facts derived from given lost facts, and clears
+     * the points-to sets of the affected pointers.
+     *
+     * @param lostPointers pointers that lose objects or incoming edges
+     * @param lostCallees  methods that lose incoming call edges
+     */
+    void retract(Collection<Pointer> lostPointers,
+                 Collection<CSMethod> lostCallees) {
+        lostPointers.forEach(this::markAffected);
+        lostCallees.forEach(callee -> {
+            this.lostCallees.add(callee);
+            markThisAffected(callee);
+        });
+        markChangedReceivers();
+        do {
+            propagate();
+        } while (sweep());
+        affected.forEach(p -> p.setPointsToSet(p.getPointsToSet().emptySet()));
+    }
+
+    boolean isAffected(Pointer pointer) {
+        return affected.contains(pointer);
+    }
+
+    Set<Pointer> getAffectedPointers() {
+        return affected;
+    }
+
+    /**
+     * @return the CS methods that contain affected variables, whose
+     * statements need to be processed again.
+     */
+    Set<CSMethod> getTouchedMethods() {
+        return touchedMethods;
+    }
+
+    /**
+     * @return the CS methods that lose incoming call edges, whose
+     * parameter and return edges need to be added again for the
+     * remaining call edges.
+     */
+    Set<CSMethod> getLostCallees() {
+        return lostCallees;
+    }
+
+    Set<CSMethod> getDeadMethods() {
+        return deadMethods;
+    }
+
+    /**
+     * @return the PFG edges from unaffected pointers to affected
+     * pointers, as a map from targets to sources, along which the
+     * points-to sets of affected pointers are rederived.
+     */
+    MultiMap<Pointer, Pointer> getBoundaryEdges() {
+        MultiMap<Pointer, Pointer> edges = Maps.newMultiMap();
+        for (Pointer source : pointerFlowGraph.getPointers()) {
+            if (!affected.contains(source)) {
+                for (Pointer target : pointerFlowGraph.getSuccsOf(source)) {
+                    if (affected.contains(target)) {
+                        edges.put(target, source);
+                    }
+                }
+            }
+        }
+        return edges;
+    }
+
+    private void markAffected(Pointer pointer) {
+        if (affected.add(pointer)) {
+            queue.add(pointer);
+        }
+    }
+
+    private void markThisAffected(CSMethod csMethod) {
+        Var thisVar = stmtIndex.getIR(csMethod.getMethod()).getThis();
+        if (thisVar != null) {
+            markAffected(csManager.getCSVar(csMethod.getContext(), thisVar));
+        }
+    }
+
+    /**
+     * Marks the receiver variables that point to objects of changed
+     * types as affected, as their callees may change.
+     */
+    private void markChangedReceivers() {
+        for (CSVar csVar : List.copyOf(csManager.getCSVars())) {
+            if (!stmtIndex.getVarStmts(csVar.getVar()).getInvokes().isEmpty()
+                    && csVar.getPointsToSet().objects().anyMatch(o ->
+                    isChanged(o.getObject().getType()))) {
+                markAffected(csVar);
+            }
+        }
+    }
+
+    private boolean isChanged(Type type) {
+        return changedTypes.computeIfAbsent(type, t ->
+                t instanceof ClassType classType
+                        && isChanged(classType.getJClass()));
+    }
+
+    private boolean isChanged(JClass jclass) {
+        if (jclass == null) {
+            return false;
+        }
+        return changedClasses.contains(jclass.getName())
+                || isChanged(jclass.getSuperClass())
+                || jclass.getInterfaces().stream().anyMatch(this::isChanged);
+    }
+
+    /**
+     * Closes the affected pointers under PFG edges and the facts
+     * derived from affected variables.
+     */
+    private void propagate() {
+        while (!queue.isEmpty()) {
+            Pointer pointer = queue.poll();
+            pointerFlowGraph.getSuccsOf(pointer).forEach(this::markAffected);
+            if (pointer instanceof CSVar csVar) {
+                retractDerivedFacts(csVar);
+            }
+        }
+    }
+
+    /**
+     * Removes the PFG edges and call edges derived from the points-to
+     * set of an affected variable.
+     */
+    private void retractDerivedFacts(CSVar csVar) {
+        Var x = csVar.getVar();
+        Context c = csVar.getContext();
+        touchedMethods.add(csManager.getCSMethod(c, x.getMethod()));
+        StmtIndex.VarStmts stmts = stmtIndex.getVarStmts(x);
+        if (stmts.isEmpty()) {
+            return;
+        }
+        for (CSObj obj : csVar.getPointsToSet()) {
+            stmts.getStoreFields().forEach(store -> removePFGEdge(
+                    csManager.getCSVar(c, store.var()), csManager.getInstanceField(obj, store.field())));
+            stmts.getLoadFields().forEach(load -> removePFGEdge(
+                    csManager.getInstanceField(obj, load.field()), csManager.getCSVar(c, load.var())));
+            stmts.getStoreArrays().forEach(y -> removePFGEdge(
+                    csManager.getCSVar(c, y), csManager.getArrayIndex(obj)));
+            stmts.getLoadArrays().forEach(y -> removePFGEdge(
+                    csManager.getArrayIndex(obj), csManager.getCSVar(c, y)));
+        }
+        for (Invoke invoke : stmts.getInvokes()) {
+            removeCallEdges(csManager.getCSCallSite(c, invoke));
+        }
+    }
+
+    private void removePFGEdge(Pointer source, Pointer target) {
+        if (pointerFlowGraph.removeEdge(source, target)) {
+            markAffected(target);
+        }
+    }
+
+    /**
+     * Removes the call edges of a call site, and the parameter and
+     * return edges of them.
+     */
+    private void removeCallEdges(CSCallSite csCallSite) {
+        Invoke invoke = csCallSite.getCallSite();
+        Context c = csCallSite.getContext();
+        for (Edge<CSCallSite, CSMethod> edge : List.copyOf(csCallSite.getEdges())) {
+            callGraph.removeEdge(edge);
+            CSMethod callee = edge.getCallee();
+            lostCallees.add(callee);
+            markThisAffected(callee);
+            Context ct = callee.getContext();
+            IR ir = stmtIndex.getIR(callee.getMethod());
+            List<Var> params = ir.getParams();
+            List<Var> args = invoke.getInvokeExp().getArgs();
+            for (int i = 0; i < params.size(); ++i) {
+                CSVar param = csManager.getCSVar(ct, params.get(i));
+                removePFGEdge(csManager.getCSVar(c, args.get(i)), param);
+                markAffected(param);
+            }
+            Var r = invoke.getLValue();
+            if (r != null) {
+                CSVar csR = csManager.getCSVar(c, r);
+                ir.getReturnVars().forEach(ret ->
+                        removePFGEdge(csManager.getCSVar(ct, ret), csR));
+                markAffected(csR);
+            }
+        }
+    }
+
+    /**
+     * Retracts the methods that are no longer reachable from
+     * the entry methods.
+     *
+     * @return true if any method is retracted.
+     */
+    private boolean sweep() {
+        Set<CSMethod> live = Sets.newSet();
+        Deque<CSMethod> stack = new ArrayDeque<>();
+        callGraph.entryMethods().forEach(m -> {
+            if (live.add(m)) {
+                stack.push(m);
+            }
+        });
+        while (!stack.isEmpty()) {
+            CSMethod csMethod = stack.pop();
+            for (CSCallSite csCallSite : callGraph.getCallSitesIn(csMethod)) {
+                for (CSMethod callee : callGraph.getCalleesOf(csCallSite)) {
+                    if (live.add(callee)) {
+                        stack.push(callee);
+                    }
+                }
+            }
+        }
+        List<CSMethod> dead = callGraph.reachableMethods()
+                .filter(m -> !live.contains(m))
+                .toList();
+        dead.forEach(this::retractMethod);
+        return !dead.isEmpty();
+    }
+
+    /**
+     * Retracts an unreachable method: its variables are affected, and
+     * the PFG edges and call edges of its statements are removed.
+     */
+    private void retractMethod(CSMethod csMethod) {
+        callGraph.removeReachableMethod(csMethod);
+        deadMethods.add(csMethod);
+        Context c = csMethod.getContext();
+        callGraph.getCallSitesIn(csMethod).forEach(this::removeCallEdges);
+        for (Var var : stmtIndex.getIR(csMethod.getMethod()).getVars()) {
+            CSVar csVar = csManager.getCSVar(c, var);
+            markAffected(csVar);
+            List.copyOf(pointerFlowGraph.getSuccsOf(csVar))
+                    .forEach(target -> removePFGEdge(csVar, target));
+        }
+        stmtIndex.getMethodStmts(csMethod.getMethod()).getStaticLoads()
+                .forEach(load -> removePFGEdge(csManager.getStaticField(load.field()),
+                        csManager.getCSVar(c, load.var())));
+    }
+}
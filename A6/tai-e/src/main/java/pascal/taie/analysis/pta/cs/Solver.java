@@ -32,40 +32,59 @@ import pascal.taie.analysis.pta.PointerAnalysisResult;
 import pascal.taie.analysis.pta.PointerAnalysisResultImpl;
 import pascal.taie.analysis.pta.core.cs.CSCallGraph;
 import pascal.taie.analysis.pta.core.cs.context.Context;
+import pascal.taie.analysis.pta.core.cs.element.ArrayBasedCSManager;
 import pascal.taie.analysis.pta.core.cs.element.ArrayIndex;
 import pascal.taie.analysis.pta.core.cs.element.CSCallSite;
 import pascal.taie.analysis.pta.core.cs.element.CSManager;
 import pascal.taie.analysis.pta.core.cs.element.CSMethod;
 import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.cs.element.CSObjIndexer;
 import pascal.taie.analysis.pta.core.cs.element.CSVar;
+import pascal.taie.analysis.pta.core.cs.element.ConcurrentCSManager;
 import pascal.taie.analysis.pta.core.cs.element.InstanceField;
 import pascal.taie.analysis.pta.core.cs.element.MapBasedCSManager;
 import pascal.taie.analysis.pta.core.cs.element.Pointer;
 import pascal.taie.analysis.pta.core.cs.element.StaticField;
+import pascal.taie.analysis.pta.core.cs.selector.CISelector;
 import pascal.taie.analysis.pta.core.cs.selector.ContextSelector;
+import pascal.taie.analysis.pta.core.cs.selector.DowngradingSelector;
+import pascal.taie.analysis.pta.core.cs.selector._1TypeSelector;
 import pascal.taie.analysis.pta.core.heap.HeapModel;
 import pascal.taie.analysis.pta.core.heap.Obj;
 import pascal.taie.analysis.pta.pts.PointsToSet;
 import pascal.taie.analysis.pta.pts.PointsToSetFactory;
 import pascal.taie.config.AnalysisOptions;
+import pascal.taie.config.ConfigException;
 import pascal.taie.ir.exp.InvokeExp;
+import pascal.taie.ir.exp.InvokeInstanceExp;
 import pascal.taie.ir.exp.Var;
-import pascal.taie.ir.proginfo.MethodRef;
-import pascal.taie.ir.stmt.Copy;
 import pascal.taie.ir.stmt.Invoke;
 import pascal.taie.ir.stmt.LoadArray;
-import pascal.taie.ir.stmt.LoadField;
-import pascal.taie.ir.stmt.New;
 import pascal.taie.ir.stmt.StmtVisitor;
 import pascal.taie.ir.stmt.StoreArray;
-import pascal.taie.ir.stmt.StoreField;
-import pascal.taie.language.classes.JField;
 import pascal.taie.language.classes.JMethod;
 import pascal.taie.language.type.Type;
-
-import java.util.HashSet;
+import pascal.taie.util.AnalysisException;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.MultiMap;
+import pascal.taie.util.collection.Sets;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 class Solver {
 
@@ -77,6 +96,92 @@ class Solver {
 
     private final ContextSelector contextSelector;
 
+    /**
+     * Whether to collapse the cycles in PFG, i.e., online cycle elimination.
+     */
+    private final boolean cycleElimination;
+
+    /**
+     * PFG edges that have been checked by lazy cycle detection.
+     */
+    private final MultiMap<Pointer, Pointer> checkedEdges = Maps.newMultiMap();
+
+    /**
+     * Whether to filter the objects propagated to each pointer by
+     * the type of the pointer, enabled by option "type-filter".
+     */
+    private final boolean typeFiltering;
+
+    /**
+     * Whether to process work-list entries and new reachable methods
+     * by multiple threads.
+     */
+    private final boolean parallel;
+
+    /**
+     * Striped locks that guard the points-to set and PFG successors of
+     * each pointer in parallel mode.
+     */
+    private final Object[] locks;
+
+    /**
+     * Work-list entries added by the worker threads, which are moved
+     * to the work-list after each parallel step.
+     */
+    private final Queue<WorkList.Entry> pendingEntries = new ConcurrentLinkedQueue<>();
+
+    /**
+     * New reachable methods that are waiting to be processed
+     * in parallel mode.
+     */
+    private final Queue<CSMethod> newMethods = new ConcurrentLinkedQueue<>();
+
+    /**
+     * File to save checkpoints to, or null if checkpointing is disabled.
+     * The final state of the analysis is also saved to the file, as
+     * the snapshot for incremental analysis.
+     */
+    private final Path checkpointFile;
+
+    /**
+     * Minimum interval between two checkpoints, in milliseconds.
+     */
+    private final long checkpointInterval;
+
+    /**
+     * Checkpoint file to resume the analysis from, or null.
+     */
+    private final Path resumeFile;
+
+    /**
+     * Snapshot to update incrementally for the changed classes, or null.
+     */
+    private final Path snapshotFile;
+
+    /**
+     * Names of the classes that have changed since the snapshot.
+     */
+    private final Set<String> changedClasses;
+
+    /**
+     * Budget of context sensitivity, or null if it is unlimited.
+     */
+    private final ContextBudget contextBudget;
+
+    /**
+     * Indexes the CS objects of this analysis, see {@link CSObjIndexer}.
+     */
+    private final CSObjIndexer objIndexer = new CSObjIndexer();
+
+    /**
+     * Makes the points-to sets of this analysis, selected by option "pts".
+     */
+    private final PointsToSetFactory ptsFactory;
+
+    private Checkpoint checkpoint;
+
+    private long lastCheckpointTime;
+
     private CSManager csManager;
 
     private CSCallGraph callGraph;
@@ -85,25 +190,167 @@ class Solver {
 
     private WorkList workList;
 
+    private StmtIndex stmtIndex;
+
+    private TypeFilter typeFilter;
+
     private PointerAnalysisResult result;
 
     Solver(AnalysisOptions options, HeapModel heapModel,
            ContextSelector contextSelector) {
         this.options = options;
         this.heapModel = heapModel;
-        this.contextSelector = contextSelector;
+        if (options.get("cs-budget") != null || options.get("heap-budget") != null) {
+            DowngradingSelector selector = makeDowngradingSelector(
+                    options.getString("cs"), contextSelector);
+            this.contextSelector = selector;
+            this.contextBudget = new ContextBudget(selector,
+                    options.get("cs-budget") != null
+                            ? options.getInt("cs-budget") : Long.MAX_VALUE,
+                    options.get("heap-budget") != null
+                            ? options.getFloat("heap-budget") : 1.0);
+        } else {
+            this.contextSelector = contextSelector;
+            this.contextBudget = null;
+        }
+        this.cycleElimination = options.getBooleanOrDefault("cycle-elim", false);
+        this.typeFiltering = options.getBooleanOrDefault("type-filter", false);
+        this.ptsFactory = new PointsToSetFactory(options, objIndexer);
+        this.parallel = options.getBooleanOrDefault("parallel", false);
+        if (parallel && cycleElimination) {
+            throw new ConfigException(
+                    "cycle-elim is not supported in parallel mode");
+        }
+        if (parallel && ptsFactory.isShared()) {
+            // reads of shared sets merge their pending objects
+            throw new ConfigException(
+                    "pts:shared is not supported in parallel mode");
+        }
+        String checkpoint = options.getString("checkpoint");
+        this.checkpointFile = checkpoint != null ? Path.of(checkpoint) : null;
+        Object interval = options.get("checkpoint-interval");
+        this.checkpointInterval = TimeUnit.SECONDS.toMillis(
+                interval != null ? options.getInt("checkpoint-interval") : 600);
+        String resume = options.getString("resume");
+        this.resumeFile = resume != null ? Path.of(resume) : null;
+        String snapshot = options.getString("incremental");
+        this.snapshotFile = snapshot != null ? Path.of(snapshot) : null;
+        if (snapshotFile != null && (cycleElimination || resumeFile != null)) {
+            throw new ConfigException(
+                    "incremental cannot be used with cycle-elim or resume");
+        }
+        Object changed = options.get("changed-classes");
+        if (changed instanceof List<?> list) {
+            this.changedClasses = list.stream()
+                    .map(Object::toString)
+                    .collect(Collectors.toSet());
+        } else {
+            this.changedClasses = changed != null
+                    ? Set.of(changed.toString()) : Set.of();
+        }
+        this.locks = new Object[parallel ? 256 : 1];
+        for (int i = 0; i < locks.length; ++i) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Makes a selector that downgrades methods from given variant
+     * to 1-type, and then to context insensitivity.
+     */
+    private static DowngradingSelector makeDowngradingSelector(
+            String cs, ContextSelector selector) {
+        List<String> variants = new ArrayList<>();
+        List<ContextSelector> selectors = new ArrayList<>();
+        variants.add(cs);
+        selectors.add(selector);
+        if (!cs.equals("1-type") && !cs.equals("ci")) {
+            variants.add("1-type");
+            selectors.add(new _1TypeSelector());
+        }
+        if (!cs.equals("ci")) {
+            variants.add("ci");
+            selectors.add(new CISelector());
+        }
+        return new DowngradingSelector(variants, selectors);
     }
 
     void solve() {
-        initialize();
-        analyze();
+        try {
+            initialize();
+            if (parallel) {
+                analyzeInParallel();
+            } else {
+                analyze();
+            }
+            if (checkpointFile != null) {
+                checkpoint.saveFinal(checkpointFile);
+            }
+        } finally {
+            if (checkpoint != null) {
+                checkpoint.close();
+            }
+        }
+        if (ptsFactory.isShared()) {
+            reportSharing();
+        }
+        if (cycleElimination) {
+            reportCollapsing();
+        }
+    }
+
+    /**
+     * Reports how many PFG nodes have been removed by cycle elimination.
+     */
+    private void reportCollapsing() {
+        Collection<Pointer> reps = pointerFlowGraph.getCollapsedReps();
+        int collapsed = reps.stream()
+                .mapToInt(rep -> pointerFlowGraph.getMembers(rep).size())
+                .sum();
+        logger.info("Cycle elimination collapsed {} pointers into {} nodes" +
+                " (removed {} nodes)", collapsed, reps.size(), collapsed - reps.size());
+    }
+
+    /**
+     * Reports how many non-empty points-to sets share the same contents.
+     */
+    private void reportSharing() {
+        List<PointsToSet> sets = Stream.<Collection<? extends Pointer>>of(
+                        csManager.getCSVars(), csManager.getStaticFields(),
+                        csManager.getInstanceFields(), csManager.getArrayIndexes())
+                .flatMap(Collection::stream)
+                .map(Pointer::getPointsToSet)
+                .filter(pts -> !pts.isEmpty())
+                .toList();
+        int distinct = PointsToSetFactory.countDistinctContents(sets);
+        logger.info("{} non-empty points-to sets share {} distinct contents" +
+                        " (sharing ratio: {})", sets.size(), distinct,
+                String.format("%.2f", distinct == 0 ? 0 : (double) sets.size() / distinct));
     }
 
     private void initialize() {
-        csManager = new MapBasedCSManager();
+        csManager = makeCSManager();
         callGraph = new CSCallGraph(csManager);
-        pointerFlowGraph = new PointerFlowGraph();
+        pointerFlowGraph = new PointerFlowGraph(parallel);
         workList = new WorkList();
+        stmtIndex = new StmtIndex();
+        typeFilter = typeFiltering
+                ? new TypeFilter(World.get().getTypeSystem(), parallel) : null;
+        if (checkpointFile != null || resumeFile != null || snapshotFile != null) {
+            checkpoint = new Checkpoint(csManager, callGraph,
+                    pointerFlowGraph, workList, heapModel, ptsFactory,
+                    contextSelector.getEmptyContext(), contextBudget,
+                    checkpointFile != null);
+            lastCheckpointTime = System.currentTimeMillis();
+        }
+        if (resumeFile != null) {
+            resume();
+            return;
+        }
+        if (snapshotFile != null) {
+            update();
+            return;
+        }
         // process program entry, i.e., main method
         Context defContext = contextSelector.getEmptyContext();
         JMethod main = World.get().getMainMethod();
@@ -112,73 +359,235 @@ class Solver {
         addReachable(csMethod);
     }
 
+    /**
+     * Restores the state of the solver from the checkpoint in resumeFile.
+     */
+    private void resume() {
+        List<CSMethod> pendingMethods = checkpoint.load(resumeFile);
+        // the var-statements of reachable methods are needed to process
+        // the pending work-list entries
+        callGraph.reachableMethods()
+                .forEach(m -> stmtIndex.getMethodStmts(m.getMethod()));
+        if (parallel) {
+            newMethods.addAll(pendingMethods);
+        } else {
+            pendingMethods.forEach(this::processNewMethod);
+        }
+    }
+
+    /**
+     * Restores the state from the snapshot in snapshotFile, and updates
+     * it for the changed classes in the way of DRed: retracts the facts
+     * that may be derived from the changed methods (see {@link Retraction}),
+     * and rederives the retracted facts that still hold, and the facts of
+     * the changed methods, by the usual rules. The rest of the analysis
+     * only propagates the points-to sets of the affected pointers.
+     */
+    private void update() {
+        List<CSMethod> pendingMethods = checkpoint.load(snapshotFile,
+                m -> changedClasses.contains(m.getDeclaringClass().getName()));
+        callGraph.reachableMethods()
+                .forEach(m -> stmtIndex.getMethodStmts(m.getMethod()));
+        List<CSMethod> changedMethods = callGraph.reachableMethods()
+                .filter(m -> changedClasses.contains(
+                        m.getMethod().getDeclaringClass().getName()))
+                .toList();
+        Retraction retraction = new Retraction(csManager, callGraph,
+                pointerFlowGraph, stmtIndex, changedClasses);
+        retraction.retract(checkpoint.getLostPointers(), checkpoint.getLostCallees());
+        // rederive the points-to sets along the remaining PFG edges
+        retraction.getBoundaryEdges().forEach((target, source) ->
+                addEntry(target, source.getPointsToSet()));
+        // rederive the objects, and the PFG edges and static calls, of
+        // the statements of the changed and affected methods
+        Set<CSMethod> methods = Sets.newSet();
+        methods.addAll(retraction.getTouchedMethods());
+        methods.addAll(changedMethods);
+        methods.removeIf(m -> !callGraph.contains(m));
+        methods.forEach(this::processNewMethod);
+        // rederive the parameter/return edges and this objects of the
+        // remaining call edges to the methods that lost call edges
+        Set<CSMethod> callees = Sets.newSet();
+        callees.addAll(retraction.getLostCallees());
+        callees.addAll(changedMethods);
+        for (CSMethod callee : callees) {
+            if (callGraph.contains(callee)) {
+                for (Edge<CSCallSite, CSMethod> edge : List.copyOf(callee.getEdges())) {
+                    rederiveCallEdge(retraction, edge);
+                }
+            }
+        }
+        // rederive the field/array edges and call edges of the unaffected
+        // variables in the methods of the affected ones
+        for (CSMethod csMethod : methods) {
+            Context c = csMethod.getContext();
+            for (Var var : stmtIndex.getIR(csMethod.getMethod()).getVars()) {
+                CSVar csVar = csManager.getCSVar(c, var);
+                if (!retraction.isAffected(csVar)
+                        && !csVar.getPointsToSet().isEmpty()) {
+                    processDelta(csVar, csVar.getPointsToSet());
+                }
+            }
+        }
+        if (parallel) {
+            newMethods.addAll(pendingMethods);
+            flushPendingEntries();
+        } else {
+            pendingMethods.forEach(this::processNewMethod);
+        }
+        logger.info("Updated snapshot {} for {} changed methods:" +
+                        " {} affected pointers, {} unreachable methods",
+                snapshotFile, changedMethods.size(),
+                retraction.getAffectedPointers().size(),
+                retraction.getDeadMethods().size());
+    }
+
+    private void rederiveCallEdge(Retraction retraction,
+                                  Edge<CSCallSite, CSMethod> edge) {
+        CSCallSite csCallSite = edge.getCallSite();
+        Invoke invoke = csCallSite.getCallSite();
+        Context c = csCallSite.getContext();
+        addCallEdge(edge.getCallee(), invoke, c);
+        if (invoke.getInvokeExp() instanceof InvokeInstanceExp invokeExp) {
+            CSVar recv = csManager.getCSVar(c, invokeExp.getBase());
+            // affected receivers rederive their call edges by themselves
+            if (!retraction.isAffected(recv)) {
+                recv.getPointsToSet().forEach(obj ->
+                        processCall(recv, List.of(invoke), obj));
+            }
+        }
+    }
+
+    private void recordCallEdge(Edge<CSCallSite, CSMethod> edge) {
+        if (checkpoint != null) {
+            checkpoint.recordCallEdge(edge);
+        }
+    }
+
+    /**
+     * Saves a checkpoint if checkpointing is enabled and the interval
+     * since the last checkpoint has elapsed.
+     */
+    private void checkpointIfDue() {
+        if (checkpointFile != null) {
+            long now = System.currentTimeMillis();
+            if (now - lastCheckpointTime >= checkpointInterval
+                    && checkpoint.save(checkpointFile, newMethods)) {
+                lastCheckpointTime = now;
+            }
+        }
+    }
+
+    /**
+     * Makes the CS manager selected by option "cs-manager", i.e.,
+     * "map" or "array". The default is "map" for hybrid points-to sets,
+     * and "array" for the others, as {@link MapBasedCSManager} neither
+     * indexes CS objects nor makes other sets. Parallel mode always uses
+     * {@link ConcurrentCSManager}.
+     */
+    private CSManager makeCSManager() {
+        if (parallel) {
+            return new ConcurrentCSManager(ptsFactory, objIndexer);
+        }
+        String kind = options.getString("cs-manager");
+        if (kind == null) {
+            kind = ptsFactory.isHybrid() ? "map" : "array";
+        }
+        if (kind.equals("map")) {
+            if (!ptsFactory.isHybrid()) {
+                throw new ConfigException(
+                        "cs-manager:map only supports pts:hybrid");
+            }
+            return new MapBasedCSManager();
+        } else if (kind.equals("array")) {
+            return new ArrayBasedCSManager(ptsFactory, objIndexer);
+        } else {
+            throw new ConfigException("Unknown CS manager: " + kind);
+        }
+    }
+
     /**
      * Processes new reachable context-sensitive method.
      */
     private void addReachable(CSMethod csMethod) {
         // TODO - finish me
+        if (parallel) {
+            // 先通过 StmtIndex 构建 IR, 避免调用图与索引并发地构建同一方法的 IR
+            stmtIndex.getMethodStmts(csMethod.getMethod());
+        }
         if (callGraph.addReachableMethod(csMethod)) {
-            // default Iterator<Stmt> iterator() {
-            //     return getStmts().iterator();
-            // }
-            Context c = csMethod.getContext();
-            csMethod.getMethod().getIR().forEach(stmt -> {
-                if (stmt instanceof New newStmt) {
-                    // x = new T();
-                    // 你可以使用 HeapModel 的 getObj(New) 方法来获得与它对应的抽象对象（即 Obj）。因为我们采用了第 8 讲课件第 44 页中介绍的创建点抽象，所以该方法为每个 New 语句返回一个唯一的抽象对象。
-                    Var x = newStmt.getLValue();
-                    Obj newT = heapModel.getObj(newStmt);
-                    // 堆上下文不一定就使用方法的上下文,需要用 ContextSelector选择
-                    Context heapContext = contextSelector.selectHeapContext(csMethod, newT);
-                    CSObj csObj = csManager.getCSObj(heapContext, newT);
-                    workList.addEntry(csManager.getCSVar(c, x), PointsToSetFactory.make(csObj));
-                } else if (stmt instanceof Copy copyStmt) {
-                    // x = y;
-                    Var x = copyStmt.getRValue();
-                    Var y = copyStmt.getLValue();
-                    addPFGEdge(csManager.getCSVar(c, x), csManager.getCSVar(c, y)); // source, target
-                } else if (stmt instanceof StoreField storeFieldStmt) {
-                    // x.f = y;
-                    JField f = storeFieldStmt.getFieldRef().resolve();
-                    Var y = storeFieldStmt.getRValue();
-                    // 这两个类也提供了 isStatic() 方法来检查一个 LoadField/StoreField 语句是 load/store 静态字段还是实例字段
-                    // 静态字段的处理很简单：我们只需要在静态字段和变量之间传值。TODO 怎么没有静态变量之间的操作
-                    if (f.isStatic()) {
-                        addPFGEdge(csManager.getCSVar(c, y), csManager.getStaticField(f)); // source, target
-                    }
-                } else if (stmt instanceof LoadField loadFieldStmt) {
-                    // y = x.f;
-                    // TODO resolve干了什么?
-                    JField f = loadFieldStmt.getFieldRef().resolve();
-                    Var y = loadFieldStmt.getLValue();
-                    if (f.isStatic()) {
-                        addPFGEdge(csManager.getStaticField(f), csManager.getCSVar(c, y));
-                    }
-                } else if (stmt instanceof Invoke l) {
-                    // 只处理 static调用,因为 static调用不需要 receive object
-                    if (l.isStatic()) {
-                        // r = T.m(a1,...,an)
-                        MethodRef methodRef = l.getMethodRef();
-                        JMethod m = methodRef.getDeclaringClass().getDeclaredMethod(methodRef.getSubsignature());
-                        // Select(c,l,c':oi)
-                        // 根据调用点的信息(上下文,接受对象)选择目标方法的上下文 ct
-                        CSCallSite csCallSite = csManager.getCSCallSite(c, l);
-                        Context ct = contextSelector.selectContext(csCallSite, m);
-                        CSMethod ctMethod = csManager.getCSMethod(ct, m);
-                        // 检查调用边是否已经添加过
-                        if (callGraph.addEdge(new Edge<>(CallGraphs.getCallKind(l), csCallSite, ctMethod))) {
-                            addReachable(ctMethod);
-                            addCallEdge(ctMethod, l, c);
-                        }
-                    }
-                }
-            });
+            if (contextBudget != null) {
+                contextBudget.addContext(csMethod.getMethod());
+            }
+            if (checkpoint != null) {
+                checkpoint.recordReachableMethod(csMethod);
+            }
+            if (parallel) {
+                // 并行模式下, 新的可达方法交给工作线程处理
+                newMethods.add(csMethod);
+            } else {
+                processNewMethod(csMethod);
+            }
         }
     }
 
+    /**
+     * Processes the statements of a new reachable method.
+     */
+    private void processNewMethod(CSMethod csMethod) {
+        // default Iterator<Stmt> iterator() {
+        //     return getStmts().iterator();
+        // }
+        Context c = csMethod.getContext();
+        StmtIndex.MethodStmts stmts = stmtIndex.getMethodStmts(csMethod.getMethod());
+        stmts.getNews().forEach(newStmt -> {
+            // x = new T();
+            // 你可以使用 HeapModel 的 getObj(New) 方法来获得与它对应的抽象对象（即 Obj）。因为我们采用了第 8 讲课件第 44 页中介绍的创建点抽象，所以该方法为每个 New 语句返回一个唯一的抽象对象。
+            Var x = newStmt.getLValue();
+            Obj newT;
+            synchronized (heapModel) {
+                newT = heapModel.getObj(newStmt);
+            }
+            // 堆上下文不一定就使用方法的上下文,需要用 ContextSelector选择
+            Context heapContext = contextSelector.selectHeapContext(csMethod, newT);
+            CSObj csObj = csManager.getCSObj(heapContext, newT);
+            addEntry(csManager.getCSVar(c, x), ptsFactory.newSet(csObj));
+        });
+        stmts.getCopies().forEach(copyStmt -> {
+            // x = y;
+            Var x = copyStmt.getRValue();
+            Var y = copyStmt.getLValue();
+            addPFGEdge(csManager.getCSVar(c, x), csManager.getCSVar(c, y)); // source, target
+        });
+        // 静态字段的处理很简单：我们只需要在静态字段和变量之间传值。
+        stmts.getStaticStores().forEach(store -> // T.f = y;
+                addPFGEdge(csManager.getCSVar(c, store.var()), csManager.getStaticField(store.field())));
+        stmts.getStaticLoads().forEach(load -> // y = T.f;
+                addPFGEdge(csManager.getStaticField(load.field()), csManager.getCSVar(c, load.var())));
+        // 只处理 static调用,因为 static调用不需要 receive object
+        stmts.getStaticCalls().forEach(call -> {
+            // r = T.m(a1,...,an)
+            Invoke l = call.invoke();
+            JMethod m = call.callee();
+            // Select(c,l,c':oi)
+            // 根据调用点的信息(上下文,接受对象)选择目标方法的上下文 ct
+            CSCallSite csCallSite = csManager.getCSCallSite(c, l);
+            Context ct = contextSelector.selectContext(csCallSite, m);
+            CSMethod ctMethod = csManager.getCSMethod(ct, m);
+            // 检查调用边是否已经添加过
+            Edge<CSCallSite, CSMethod> edge =
+                    new Edge<>(CallGraphs.getCallKind(l), csCallSite, ctMethod);
+            if (callGraph.addEdge(edge)) {
+                recordCallEdge(edge);
+                addReachable(ctMethod);
+                addCallEdge(ctMethod, l, c);
+            }
+        });
+    }
+
     private void addCallEdge(CSMethod m, Invoke invokeStmt, Context c) {
         // add actuals -> params
-        List<Var> params = m.getMethod().getIR().getParams();
+        List<Var> params = stmtIndex.getIR(m.getMethod()).getParams();
         List<Var> actuals = invokeStmt.getRValue().getArgs();
         Context ct = m.getContext();
         for (int i = 0; i < params.size(); i++) {
@@ -188,7 +597,7 @@ class Solver {
         // add return values -> r
         Var r = invokeStmt.getLValue(); // @Nullable
         if (r != null) {
-            m.getMethod().getIR().getReturnVars().forEach(returnVar -> {
+            stmtIndex.getIR(m.getMethod()).getReturnVars().forEach(returnVar -> {
                 // ct:m_ret -> c:r
                 addPFGEdge(csManager.getCSVar(ct, returnVar), csManager.getCSVar(c, r));
             });
@@ -219,19 +628,42 @@ class Solver {
     private void addPFGEdge(Pointer source, Pointer target) {
         // TODO - finish me
         // true if this PFG changed as a result of the call
-        if (pointerFlowGraph.addEdge(source, target)) {
-            PointsToSet pts = source.getPointsToSet();
-            if (!pts.isEmpty()) {
-                // TODO 这里需要拷贝吗
-                workList.addEntry(target, pts);
+        PointsToSet pts = null;
+        synchronized (lockOf(source)) {
+            if (pointerFlowGraph.addEdge(source, target)) {
+                if (checkpoint != null) {
+                    checkpoint.recordSuccs(source);
+                }
+                pts = source.getPointsToSet();
+                if (parallel && !pts.isEmpty()) {
+                    // 其他线程可能还会修改 pt(source), 所以拷贝一份
+                    pts = pts.emptySet().addAllDiff(pts);
+                }
             }
         }
+        if (pts != null && !pts.isEmpty()) {
+            addEntry(target, pts);
+        }
+    }
+
+    /**
+     * @return the lock that guards the points-to set and PFG successors
+     * of given pointer.
+     */
+    private Object lockOf(Pointer pointer) {
+        return locks[(pointer.hashCode() & 0x7fffffff) % locks.length];
     }
 
-    private <T> Set<T> getSetDifference(Set<T> x, Set<T> y) {
-        Set<T> diff = new HashSet<>(x);
-        diff.removeAll(y);
-        return diff;
+    /**
+     * Adds a work-list entry. In parallel mode, the entry is pending
+     * until the current parallel step finishes.
+     */
+    private void addEntry(Pointer pointer, PointsToSet pointsToSet) {
+        if (parallel) {
+            pendingEntries.add(new WorkList.Entry(pointer, pointsToSet));
+        } else {
+            workList.addEntry(pointer, pointsToSet);
+        }
     }
 
     /**
@@ -240,43 +672,135 @@ class Solver {
     private void analyze() {
         // TODO - finish me
         while (!workList.isEmpty()) {
+            checkpointIfDue();
+            if (contextBudget != null) {
+                contextBudget.check();
+            }
             // 1. remove <n,pts> from WL
-            WorkList.Entry entry = workList.pollEntry();
-            Pointer n = entry.pointer();
-            PointsToSet pts = entry.pointsToSet();
-            // 2. Δ
-            PointsToSet delta = propagate(n, pts);
-            // 3. if n represents a variable x then
-            if (n instanceof CSVar csVar) {
-                Var x = csVar.getVar();
-                Context c = csVar.getContext();
-                // 3.1 foreach oi in Δ do
-                delta.getObjects().forEach(csoi -> {
-                    // 3.1.1 foreach x.f = y in S do
-                    x.getStoreFields().forEach(storeField -> {
-                        Var y = storeField.getRValue();
-                        JField f = storeField.getFieldRef().resolve();
-                        addPFGEdge(csManager.getCSVar(c, y), csManager.getInstanceField(csoi, f));
-                    });
-                    // 3.1.1 foreach y = x.f in S do
-                    x.getLoadFields().forEach(loadField -> {
-                        Var y = loadField.getLValue();
-                        JField f = loadField.getFieldRef().resolve();
-                        addPFGEdge(csManager.getInstanceField(csoi, f), csManager.getCSVar(c, y));
-                    });
-                    // TODO 不要忘记在这个方法中处理数组 loads/stores。
-                    x.getStoreArrays().forEach(storeArray -> {
-                        Var y = storeArray.getRValue();
-                        addPFGEdge(csManager.getCSVar(c, y), csManager.getArrayIndex(csoi));
-                    });
-                    x.getLoadArrays().forEach(loadArray -> {
-                        Var y = loadArray.getLValue();
-                        addPFGEdge(csManager.getArrayIndex(csoi), csManager.getCSVar(c, y));
-                    });
-                    CSVar cx = csManager.getCSVar(c, x);
-                    processCall(cx, csoi);
+            processEntry(workList.pollEntry());
+        }
+    }
+
+    private void processEntry(WorkList.Entry entry) {
+        Pointer pointer = entry.pointer();
+        Pointer n = pointerFlowGraph.getRep(pointer);
+        // 按指针本身(而不是它所在环的代表)的类型过滤对象
+        PointsToSet pts = filter(pointer, entry.pointsToSet());
+        // 2. Δ
+        PointsToSet delta = propagate(n, pts);
+        // 3. if n represents a variable x then
+        // (合并环后, n 代表环上的所有指针, 它们共享同一个指针集)
+        for (Pointer member : pointerFlowGraph.getMembers(n)) {
+            processDelta(member, delta);
+        }
+    }
+
+    /**
+     * Processes work-list entries and new reachable methods by rounds of
+     * parallel steps, instead of one by one. Each round:
+     * <ol>
+     *     <li>processes the new reachable methods in parallel;</li>
+     *     <li>drains the work-list, whose entries have distinct pointers
+     *     as the entries of the same pointer are merged, and processes
+     *     the entries in parallel.</li>
+     * </ol>
+     * The entries and methods found by each step are processed in later
+     * steps. The result does not depend on the order of the steps, as
+     * the analysis computes the same (least) fixed point.
+     */
+    private void analyzeInParallel() {
+        int nThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        int rounds = 0;
+        try {
+            while (!workList.isEmpty() || !newMethods.isEmpty()) {
+                ++rounds;
+                checkpointIfDue();
+                if (contextBudget != null) {
+                    contextBudget.check();
+                }
+                List<CSMethod> methods = new ArrayList<>(newMethods.size());
+                for (CSMethod m; (m = newMethods.poll()) != null; ) {
+                    methods.add(m);
+                }
+                runInParallel(executor, nThreads, methods, this::processNewMethod);
+                List<WorkList.Entry> entries = new ArrayList<>();
+                while (!workList.isEmpty()) {
+                    entries.add(workList.pollEntry());
+                }
+                runInParallel(executor, nThreads, entries, this::processEntry);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.info("Parallel analysis reached fixed point in {} rounds" +
+                " with {} threads", rounds, nThreads);
+    }
+
+    /**
+     * Processes given items by at most nThreads tasks and waits for
+     * the tasks, then moves the pending entries to the work-list.
+     */
+    private <T> void runInParallel(ExecutorService executor, int nThreads,
+                                   List<T> items, Consumer<T> action) {
+        if (!items.isEmpty()) {
+            int chunkSize = (items.size() + nThreads - 1) / nThreads;
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < items.size(); i += chunkSize) {
+                List<T> chunk = items.subList(i, Math.min(i + chunkSize, items.size()));
+                tasks.add(() -> {
+                    chunk.forEach(action);
+                    return null;
                 });
             }
+            try {
+                for (Future<Void> future : executor.invokeAll(tasks)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AnalysisException("Parallel pointer analysis is interrupted", e);
+            } catch (ExecutionException e) {
+                throw new AnalysisException("Parallel pointer analysis failed", e.getCause());
+            }
+        }
+        flushPendingEntries();
+    }
+
+    /**
+     * Moves the pending entries to the work-list.
+     */
+    private void flushPendingEntries() {
+        for (WorkList.Entry entry; (entry = pendingEntries.poll()) != null; ) {
+            workList.addEntry(entry.pointer(), entry.pointsToSet());
+        }
+    }
+
+    /**
+     * Processes the objects newly pointed to by a pointer.
+     */
+    private void processDelta(Pointer pointer, PointsToSet delta) {
+        if (pointer instanceof CSVar csVar) {
+            Var x = csVar.getVar();
+            Context c = csVar.getContext();
+            StmtIndex.VarStmts stmts = stmtIndex.getVarStmts(x);
+            if (stmts.isEmpty()) {
+                return;
+            }
+            // 3.1 foreach oi in Δ do
+            delta.getObjects().forEach(csoi -> {
+                // 3.1.1 foreach x.f = y in S do
+                stmts.getStoreFields().forEach(store -> addPFGEdge(
+                        csManager.getCSVar(c, store.var()), csManager.getInstanceField(csoi, store.field())));
+                // 3.1.1 foreach y = x.f in S do
+                stmts.getLoadFields().forEach(load -> addPFGEdge(
+                        csManager.getInstanceField(csoi, load.field()), csManager.getCSVar(c, load.var())));
+                stmts.getStoreArrays().forEach(y -> addPFGEdge(
+                        csManager.getCSVar(c, y), csManager.getArrayIndex(csoi)));
+                stmts.getLoadArrays().forEach(y -> addPFGEdge(
+                        csManager.getArrayIndex(csoi), csManager.getCSVar(c, y)));
+                processCall(csVar, stmts.getInvokes(), csoi);
+            });
         }
     }
 
@@ -287,51 +811,146 @@ class Solver {
     private PointsToSet propagate(Pointer n, PointsToSet pts) {
         // TODO - finish me
         if (pts.isEmpty()) {
-            return PointsToSetFactory.make();
+            return ptsFactory.newSet();
+        }
+        PointsToSet delta;
+        List<Pointer> succs;
+        synchronized (lockOf(n)) {
+            delta = n.getPointsToSet().addAllDiff(pts);
+            if (delta.isEmpty()) {
+                return delta;
+            }
+            if (checkpoint != null) {
+                checkpoint.recordPointsToSet(n);
+            }
+            succs = List.copyOf(pointerFlowGraph.getSuccsOf(n));
+        }
+        succs.forEach(s -> addEntry(s, delta));
+        if (cycleElimination) {
+            detectCycles(n);
         }
-        PointsToSet ptn = n.getPointsToSet();
-        Set<CSObj> difference = getSetDifference(pts.getObjects(), ptn.getObjects());
+        return delta;
+    }
 
-        PointsToSet delta = PointsToSetFactory.make();
-        difference.forEach(obj -> {
-            ptn.addObject(obj);
-            delta.addObject(obj);
-        });
+    /**
+     * @return the objects in pts that can be held by the pointer,
+     * if type filtering is enabled, otherwise pts itself.
+     */
+    private PointsToSet filter(Pointer pointer, PointsToSet pts) {
+        return typeFilter != null ? typeFilter.filter(pointer, pts) : pts;
+    }
 
-        if (!delta.isEmpty()) {
-            pointerFlowGraph.getSuccsOf(n).forEach(s -> workList.addEntry(s, delta));
+    /**
+     * Lazy cycle detection: an edge n -> s whose source and target have
+     * the same points-to set is likely on a cycle, so we search for
+     * a path back from s to n (at most once per edge), and collapse
+     * the pointers on the found cycle. With type filtering, the objects
+     * are filtered by the type of each pointer, but the pointers of
+     * a collapsed node share one points-to set, so cycles whose pointers
+     * have different types are not collapsed.
+     */
+    private void detectCycles(Pointer n) {
+        for (Pointer succ : List.copyOf(pointerFlowGraph.getSuccsOf(n))) {
+            Pointer rep = pointerFlowGraph.getRep(n);
+            Pointer s = pointerFlowGraph.getRep(succ);
+            if (s != rep && haveSamePointsToSet(rep, s)
+                    && checkedEdges.put(rep, s)) {
+                Set<Pointer> cycle = pointerFlowGraph.findCycle(s, rep);
+                if (!cycle.isEmpty()
+                        && (typeFilter == null || haveSameType(cycle))) {
+                    collapse(rep, cycle);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if given representatives have the same type. The
+     * pointers collapsed into each representative have its type.
+     */
+    private static boolean haveSameType(Set<Pointer> reps) {
+        Type type = null;
+        for (Pointer rep : reps) {
+            if (type == null) {
+                type = rep.getType();
+            } else if (!type.equals(rep.getType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean haveSamePointsToSet(Pointer p1, Pointer p2) {
+        return PointsToSetFactory.haveSameObjects(
+                p1.getPointsToSet(), p2.getPointsToSet());
+    }
+
+    /**
+     * Collapses the representatives on a PFG cycle into rep. All pointers
+     * in the collapsed node share one points-to set, which is the union
+     * of their points-to sets; each pointer processes the objects it
+     * gains from the union as a usual delta.
+     */
+    private void collapse(Pointer rep, Set<Pointer> cycle) {
+        PointsToSet union = ptsFactory.newSet();
+        cycle.forEach(p -> union.addAll(p.getPointsToSet()));
+        List<Pointer> pointers = new ArrayList<>();
+        List<PointsToSet> deltas = new ArrayList<>();
+        for (Pointer p : cycle) {
+            PointsToSet delta = ptsFactory.newSet();
+            PointsToSet old = p.getPointsToSet();
+            union.forEach(obj -> {
+                if (!old.contains(obj)) {
+                    delta.addObject(obj);
+                }
+            });
+            for (Pointer member : pointerFlowGraph.getMembers(p)) {
+                member.setPointsToSet(union);
+                if (!delta.isEmpty()) {
+                    pointers.add(member);
+                    deltas.add(delta);
+                }
+            }
+        }
+        pointerFlowGraph.collapse(rep, cycle);
+        if (checkpoint != null) {
+            checkpoint.recordCollapse(rep);
+        }
+        logger.debug("Collapsed {} pointers into {}", cycle.size(), rep);
+        pointerFlowGraph.getSuccsOf(rep).forEach(s -> addEntry(s, union));
+        for (int i = 0; i < pointers.size(); ++i) {
+            processDelta(pointers.get(i), deltas.get(i));
         }
-        return delta;
     }
 
     /**
      * Processes instance calls when points-to set of the receiver variable changes.
      *
-     * @param cx    the receiver variable
-     * @param csoi set of new discovered objects pointed by the variable.
+     * @param cx      the receiver variable
+     * @param invokes the instance invocations on the receiver variable
+     * @param csoi    set of new discovered objects pointed by the variable.
      */
-    private void processCall(CSVar cx, CSObj csoi) {
+    private void processCall(CSVar cx, List<Invoke> invokes, CSObj csoi) {
         // TODO - finish me
         Context c = cx.getContext();
-        Var x = cx.getVar();
-        x.getInvokes().forEach(l -> {
-            if (l.isStatic()) { // static已经处理过了
-                return;
-            }
+        invokes.forEach(l -> { // static调用已经在 addReachable 中处理过了
             // 你将在这个方法中处理所有种类的实例方法调用，即虚调用、接口调用和特殊调用。
             // 处理接口调用和特殊调用的逻辑与处理虚调用的逻辑完全相同（你在课上已经学过）。
             // 你也可以使用上面提到的 resolveCallee() （代替算法中的 Dispatch）来解析所有种类的实例方法调用，
             // 即虚调用、接口调用和特殊调用。
             JMethod m = resolveCallee(csoi, l);
             // TODO m_this 怎么表示? 解决方法:调试到这里,查看m所有属性
-            Var m_this = m.getIR().getThis();
+            Var m_this = stmtIndex.getIR(m).getThis();
             CSCallSite csCallSite = csManager.getCSCallSite(c, l);
             // ct = Select(c,l,c':oi)
             Context ct = contextSelector.selectContext(csCallSite, csoi, m); // selectContext(csCallSite, m) -> selectContext(csCallSite, csoi, m)
             CSMethod ctMethod = csManager.getCSMethod(ct, m);
-            workList.addEntry(csManager.getCSVar(ct, m_this), PointsToSetFactory.make(csoi));
+            addEntry(csManager.getCSVar(ct, m_this), ptsFactory.newSet(csoi));
 
-            if (callGraph.addEdge(new Edge<>(CallGraphs.getCallKind(l), csCallSite, ctMethod))) { // true if the call graph changed as a result of the call
+            Edge<CSCallSite, CSMethod> edge =
+                    new Edge<>(CallGraphs.getCallKind(l), csCallSite, ctMethod);
+            if (callGraph.addEdge(edge)) { // true if the call graph changed as a result of the call
+                recordCallEdge(edge);
                 // 添加边成功,添加可达方法
                 addReachable(ctMethod);
                 addCallEdge(ctMethod, l, c);
@@ -349,7 +968,10 @@ class Solver {
      */
     private JMethod resolveCallee(CSObj recv, Invoke callSite) {
         Type type = recv != null ? recv.getObject().getType() : null;
-        return CallGraphs.resolveCallee(type, callSite);
+        // 方法派发会修改类层次结构中的缓存
+        synchronized (World.get().getClassHierarchy()) {
+            return CallGraphs.resolveCallee(type, callSite);
+        }
     }
 
     PointerAnalysisResult getResult() {
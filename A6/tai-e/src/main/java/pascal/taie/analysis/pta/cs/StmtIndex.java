@@ -0,0 +1,260 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.cs;
+
+import pascal.taie.World;
+import pascal.taie.ir.IR;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.proginfo.MethodRef;
+import pascal.taie.ir.stmt.Copy;
+import pascal.taie.ir.stmt.Invoke;
+import pascal.taie.ir.stmt.LoadField;
+import pascal.taie.ir.stmt.New;
+import pascal.taie.ir.stmt.StoreField;
+import pascal.taie.language.classes.JField;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.util.collection.Maps;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the statements relevant to pointer analysis. The statements
+ * of a method are indexed once when the method first becomes reachable
+ * (in any context), with field references and static callees resolved,
+ * so that the solver neither re-scans the IR nor resolves references
+ * when it processes new reachable methods and points-to sets.
+ * <p>
+ * The index can be accessed concurrently. The IR of a method is built
+ * when the method is indexed, so that parallel solvers, which access
+ * IR through {@link #getIR(JMethod)}, never build the IR of a method
+ * twice. Methods are indexed under the lock of the class hierarchy,
+ * which resolves the references.
+ */
+class StmtIndex {
+
+    private final Map<JMethod, MethodStmts> methodStmts = Maps.newConcurrentMap();
+
+    private final Map<Var, VarStmts> varStmts = Maps.newConcurrentMap();
+
+    /**
+     * @return the statements of given method that are processed when the
+     * method becomes reachable. Indexes the method on first request.
+     */
+    MethodStmts getMethodStmts(JMethod method) {
+        MethodStmts stmts = methodStmts.get(method);
+        if (stmts == null) {
+            synchronized (World.get().getClassHierarchy()) {
+                stmts = methodStmts.computeIfAbsent(method, this::index);
+            }
+        }
+        return stmts;
+    }
+
+    /**
+     * @return the IR of given method. Indexes the method on first request.
+     */
+    IR getIR(JMethod method) {
+        return getMethodStmts(method).ir;
+    }
+
+    /**
+     * @return the statements that are processed when the points-to set
+     * of given variable changes. The declaring method of the variable
+     * must have been indexed by {@link #getMethodStmts(JMethod)}.
+     */
+    VarStmts getVarStmts(Var var) {
+        return varStmts.getOrDefault(var, VarStmts.EMPTY);
+    }
+
+    private MethodStmts index(JMethod method) {
+        IR ir = method.getIR();
+        MethodStmts mStmts = new MethodStmts(ir);
+        ir.forEach(stmt -> {
+            if (stmt instanceof New newStmt) {
+                mStmts.news.add(newStmt);
+            } else if (stmt instanceof Copy copy) {
+                mStmts.copies.add(copy);
+            } else if (stmt instanceof StoreField storeField
+                    && storeField.isStatic()) {
+                JField f = storeField.getFieldRef().resolve();
+                mStmts.staticStores.add(new FieldAccess(f, storeField.getRValue()));
+            } else if (stmt instanceof LoadField loadField
+                    && loadField.isStatic()) {
+                JField f = loadField.getFieldRef().resolve();
+                mStmts.staticLoads.add(new FieldAccess(f, loadField.getLValue()));
+            } else if (stmt instanceof Invoke invoke && invoke.isStatic()) {
+                MethodRef methodRef = invoke.getMethodRef();
+                JMethod callee = methodRef.getDeclaringClass()
+                        .getDeclaredMethod(methodRef.getSubsignature());
+                mStmts.staticCalls.add(new StaticCall(invoke, callee));
+            }
+        });
+        for (Var x : ir.getVars()) {
+            VarStmts vStmts = new VarStmts();
+            x.getStoreFields().forEach(storeField -> vStmts.storeFields.add(
+                    new FieldAccess(storeField.getFieldRef().resolve(),
+                            storeField.getRValue())));
+            x.getLoadFields().forEach(loadField -> vStmts.loadFields.add(
+                    new FieldAccess(loadField.getFieldRef().resolve(),
+                            loadField.getLValue())));
+            x.getStoreArrays().forEach(storeArray ->
+                    vStmts.storeArrays.add(storeArray.getRValue()));
+            x.getLoadArrays().forEach(loadArray ->
+                    vStmts.loadArrays.add(loadArray.getLValue()));
+            x.getInvokes().forEach(invoke -> {
+                if (!invoke.isStatic()) {
+                    vStmts.invokes.add(invoke);
+                }
+            });
+            if (!vStmts.isEmpty()) {
+                varStmts.put(x, vStmts);
+            }
+        }
+        return mStmts;
+    }
+
+    /**
+     * Access to a resolved field, which moves objects from or to
+     * variable {@code var}, e.g., {@code var = x.field}.
+     */
+    record FieldAccess(JField field, Var var) {
+    }
+
+    /**
+     * Static invocation with its resolved callee.
+     */
+    record StaticCall(Invoke invoke, JMethod callee) {
+    }
+
+    static class MethodStmts {
+
+        private final IR ir;
+
+        private final List<New> news = new ArrayList<>();
+
+        private final List<Copy> copies = new ArrayList<>();
+
+        private final List<FieldAccess> staticStores = new ArrayList<>();
+
+        private final List<FieldAccess> staticLoads = new ArrayList<>();
+
+        private final List<StaticCall> staticCalls = new ArrayList<>();
+
+        private MethodStmts(IR ir) {
+            this.ir = ir;
+        }
+
+        /**
+         * @return the allocations x = new T().
+         */
+        List<New> getNews() {
+            return news;
+        }
+
+        /**
+         * @return the copies x = y.
+         */
+        List<Copy> getCopies() {
+            return copies;
+        }
+
+        /**
+         * @return the static stores T.f = y, each with f and y.
+         */
+        List<FieldAccess> getStaticStores() {
+            return staticStores;
+        }
+
+        /**
+         * @return the static loads y = T.f, each with f and y.
+         */
+        List<FieldAccess> getStaticLoads() {
+            return staticLoads;
+        }
+
+        /**
+         * @return the static invocations r = T.m(...).
+         */
+        List<StaticCall> getStaticCalls() {
+            return staticCalls;
+        }
+    }
+
+    static class VarStmts {
+
+        private static final VarStmts EMPTY = new VarStmts();
+
+        private final List<FieldAccess> storeFields = new ArrayList<>();
+
+        private final List<FieldAccess> loadFields = new ArrayList<>();
+
+        private final List<Var> storeArrays = new ArrayList<>();
+
+        private final List<Var> loadArrays = new ArrayList<>();
+
+        private final List<Invoke> invokes = new ArrayList<>();
+
+        /**
+         * @return the instance stores x.f = y, each with f and y.
+         */
+        List<FieldAccess> getStoreFields() {
+            return storeFields;
+        }
+
+        /**
+         * @return the instance loads y = x.f, each with f and y.
+         */
+        List<FieldAccess> getLoadFields() {
+            return loadFields;
+        }
+
+        /**
+         * @return the variables y of array stores x[i] = y.
+         */
+        List<Var> getStoreArrays() {
+            return storeArrays;
+        }
+
+        /**
+         * @return the variables y of array loads y = x[i].
+         */
+        List<Var> getLoadArrays() {
+            return loadArrays;
+        }
+
+        /**
+         * @return the instance invocations on x.
+         */
+        List<Invoke> getInvokes() {
+            return invokes;
+        }
+
+        boolean isEmpty() {
+            return storeFields.isEmpty() && loadFields.isEmpty()
+                    && storeArrays.isEmpty() && loadArrays.isEmpty()
+                    && invokes.isEmpty();
+        }
+    }
+}
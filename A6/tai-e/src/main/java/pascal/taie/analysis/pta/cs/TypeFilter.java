@@ -0,0 +1,154 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.cs;
+
+import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.cs.element.Pointer;
+import pascal.taie.analysis.pta.pts.PointsToSet;
+import pascal.taie.language.type.Type;
+import pascal.taie.language.type.TypeSystem;
+import pascal.taie.util.collection.Maps;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filters out the objects that cannot be held by a pointer, i.e.,
+ * the objects whose types are not subtypes of the type of the pointer.
+ * <p>
+ * The subtype checks are cached in a bit matrix over dense type ids:
+ * for each pointer type, one row records the object types that have
+ * been checked against it, and another row records which of them are
+ * its subtypes, so that each pair of types is checked by
+ * {@link TypeSystem} only once. A concurrent filter keeps one matrix
+ * per thread, so that the checks on the hot path take no lock.
+ */
+class TypeFilter {
+
+    private final TypeSystem typeSystem;
+
+    /**
+     * The cache shared by all threads, or null if this filter is concurrent.
+     */
+    private final Cache cache;
+
+    /**
+     * The per-thread caches if this filter is concurrent, otherwise null.
+     */
+    private final ThreadLocal<Cache> caches;
+
+    TypeFilter(TypeSystem typeSystem) {
+        this(typeSystem, false);
+    }
+
+    /**
+     * @param concurrent whether the filter is used by multiple threads.
+     */
+    TypeFilter(TypeSystem typeSystem, boolean concurrent) {
+        this.typeSystem = typeSystem;
+        this.cache = concurrent ? null : new Cache();
+        this.caches = concurrent ? ThreadLocal.withInitial(Cache::new) : null;
+    }
+
+    /**
+     * @return the objects in pts that can be held by given pointer.
+     * If all objects can be held, returns pts itself.
+     */
+    PointsToSet filter(Pointer pointer, PointsToSet pts) {
+        Type type = pointer.getType();
+        Cache cache = this.cache != null ? this.cache : caches.get();
+        PointsToSet result = null;
+        int accepted = 0;
+        for (CSObj obj : pts) {
+            if (cache.isAssignable(obj.getObject().getType(), type)) {
+                if (result != null) {
+                    result.addObject(obj);
+                } else {
+                    ++accepted;
+                }
+            } else if (result == null) {
+                // copy the objects before the first rejected one,
+                // which have been checked
+                result = pts.emptySet();
+                pts.objects().limit(accepted).forEach(result::addObject);
+            }
+        }
+        return result != null ? result : pts;
+    }
+
+    /**
+     * Checks subtyping by the type system, which is not thread-safe.
+     * Only called on cache misses.
+     */
+    private boolean isSubtype(Type supertype, Type subtype) {
+        if (caches == null) {
+            return typeSystem.isSubtype(supertype, subtype);
+        }
+        synchronized (typeSystem) {
+            return typeSystem.isSubtype(supertype, subtype);
+        }
+    }
+
+    /**
+     * Bit matrix of the checked subtype relations.
+     */
+    private class Cache {
+
+        private final Map<Type, Integer> typeIds = Maps.newMap();
+
+        private final List<BitSet> checked = new ArrayList<>();
+
+        private final List<BitSet> subtypes = new ArrayList<>();
+
+        /**
+         * @return true if an object of objType can be assigned to
+         * a pointer of pointerType.
+         */
+        private boolean isAssignable(Type objType, Type pointerType) {
+            if (objType.equals(pointerType)) {
+                return true;
+            }
+            int sub = getId(objType);
+            int sup = getId(pointerType);
+            BitSet row = subtypes.get(sup);
+            BitSet checkedRow = checked.get(sup);
+            if (!checkedRow.get(sub)) {
+                checkedRow.set(sub);
+                if (isSubtype(pointerType, objType)) {
+                    row.set(sub);
+                }
+            }
+            return row.get(sub);
+        }
+
+        private int getId(Type type) {
+            return typeIds.computeIfAbsent(type, t -> {
+                checked.add(new BitSet());
+                subtypes.add(new BitSet());
+                return checked.size() - 1;
+            });
+        }
+    }
+}
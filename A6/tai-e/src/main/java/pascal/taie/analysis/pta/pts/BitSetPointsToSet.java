@@ -0,0 +1,245 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.pts;
+
+import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.cs.element.CSObjIndexer;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Points-to set over the indexes of {@link CSObj}, which are resolved by
+ * the {@link CSObjIndexer} of the analysis that creates the set.
+ * <p>
+ * Most points-to sets are tiny, so a set keeps its indexes in a small
+ * array first, and switches to a {@link BitSet} when it grows beyond
+ * {@link #ARRAY_LIMIT} objects. Union and difference between two bit sets
+ * are word-parallel.
+ */
+class BitSetPointsToSet implements PointsToSet {
+
+    private static final int ARRAY_LIMIT = 8;
+
+    private final CSObjIndexer indexer;
+
+    /**
+     * Indexes of the objects, used while this set is small.
+     */
+    private int[] elems;
+
+    /**
+     * Bits of the object indexes, used once this set is large.
+     */
+    private BitSet bits;
+
+    private int size;
+
+    BitSetPointsToSet(CSObjIndexer indexer) {
+        this.indexer = indexer;
+    }
+
+    private BitSetPointsToSet(CSObjIndexer indexer, BitSet bits, int size) {
+        this.indexer = indexer;
+        this.bits = bits;
+        this.size = size;
+    }
+
+    @Override
+    public boolean addObject(CSObj obj) {
+        return add(obj.getIndex());
+    }
+
+    private boolean add(int index) {
+        if (bits != null) {
+            if (bits.get(index)) {
+                return false;
+            }
+            bits.set(index);
+        } else {
+            for (int i = 0; i < size; ++i) {
+                if (elems[i] == index) {
+                    return false;
+                }
+            }
+            if (size == ARRAY_LIMIT) {
+                toBits().set(index);
+            } else {
+                if (elems == null) {
+                    elems = new int[ARRAY_LIMIT];
+                }
+                elems[size] = index;
+            }
+        }
+        ++size;
+        return true;
+    }
+
+    /**
+     * Switches this set to the bit set representation.
+     */
+    private BitSet toBits() {
+        if (bits == null) {
+            bits = new BitSet();
+            for (int i = 0; i < size; ++i) {
+                bits.set(elems[i]);
+            }
+            elems = null;
+        }
+        return bits;
+    }
+
+    @Override
+    public boolean addAll(PointsToSet pts) {
+        if (pts instanceof BitSetPointsToSet other && other.bits != null) {
+            BitSet bits = toBits();
+            bits.or(other.bits);
+            int oldSize = size;
+            size = bits.cardinality();
+            return size != oldSize;
+        }
+        boolean changed = false;
+        for (CSObj obj : pts) {
+            changed |= addObject(obj);
+        }
+        return changed;
+    }
+
+    @Override
+    public PointsToSet addAllDiff(PointsToSet pts) {
+        if (pts instanceof BitSetPointsToSet other && other.bits != null) {
+            BitSet diff = (BitSet) other.bits.clone();
+            BitSet bits = toBits();
+            diff.andNot(bits);
+            int diffSize = diff.cardinality();
+            bits.or(diff);
+            size += diffSize;
+            return new BitSetPointsToSet(indexer, diff, diffSize);
+        }
+        BitSetPointsToSet diff = new BitSetPointsToSet(indexer, null, 0);
+        for (CSObj obj : pts) {
+            if (addObject(obj)) {
+                diff.addObject(obj);
+            }
+        }
+        return diff;
+    }
+
+    @Override
+    public PointsToSet emptySet() {
+        return new BitSetPointsToSet(indexer);
+    }
+
+    @Override
+    public boolean contains(CSObj obj) {
+        int index = obj.getIndex();
+        if (bits != null) {
+            return bits.get(index);
+        }
+        for (int i = 0; i < size; ++i) {
+            if (elems[i] == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<CSObj> getObjects() {
+        return new AbstractSet<>() {
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof CSObj obj && BitSetPointsToSet.this.contains(obj);
+            }
+
+            @Override
+            public Iterator<CSObj> iterator() {
+                return BitSetPointsToSet.this.iterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Stream<CSObj> objects() {
+        return indexes().mapToObj(indexer::getObject);
+    }
+
+    private IntStream indexes() {
+        return bits != null ? bits.stream()
+                : size == 0 ? IntStream.empty()
+                : Arrays.stream(elems, 0, size);
+    }
+
+    @Override
+    public Iterator<CSObj> iterator() {
+        if (bits == null) {
+            return indexes().mapToObj(indexer::getObject).iterator();
+        }
+        return new Iterator<>() {
+
+            private int next = bits.nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public CSObj next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                CSObj obj = indexer.getObject(next);
+                next = bits.nextSetBit(next + 1);
+                return obj;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return getObjects().toString();
+    }
+}
@@ -49,6 +49,31 @@ public interface PointsToSet extends Iterable<CSObj> {
      */
     boolean addAll(PointsToSet pts);
 
+    /**
+     * Adds all objects in given pts to this set, and collects the objects
+     * that are not in this set before the call, in one pass.
+     *
+     * @return a new set of the objects actually added to this set,
+     * i.e., the difference of given pts and this set before the call.
+     */
+    default PointsToSet addAllDiff(PointsToSet pts) {
+        PointsToSet diff = emptySet();
+        for (CSObj obj : pts) {
+            if (addObject(obj)) {
+                diff.addObject(obj);
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * @return a new empty set of the same representation as this set.
+     * The default implementation makes a hybrid set.
+     */
+    default PointsToSet emptySet() {
+        return PointsToSetFactory.make();
+    }
+
     /**
      * @return true if this set contains given object, otherwise false.
      */
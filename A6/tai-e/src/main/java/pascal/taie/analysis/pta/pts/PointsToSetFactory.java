@@ -23,28 +23,135 @@
 package pascal.taie.analysis.pta.pts;
 
 import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.cs.element.CSObjIndexer;
+import pascal.taie.config.AnalysisOptions;
+import pascal.taie.config.ConfigException;
 import pascal.taie.util.collection.Sets;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Set;
 import java.util.function.Supplier;
 
 /**
- * Provides static factory methods for {@link PointsToSet}.
+ * Makes {@link PointsToSet}s of the representation selected for one
+ * pointer analysis. Each solver owns a factory, whose index-based sets
+ * are resolved by the {@link CSObjIndexer} of the solver.
  */
 public class PointsToSetFactory {
 
     private static final Supplier<Set<CSObj>> setFactory = Sets::newHybridSet;
 
-    public static PointsToSet make() {
-        return new DelegatePointsToSet(setFactory.get());
+    private enum Representation {
+        HYBRID, BITSET, SHARED
+    }
+
+    private final Representation representation;
+
+    private final CSObjIndexer indexer;
+
+    /**
+     * Selects the representation of points-to sets according to
+     * option "pts", which is either "hybrid" (hybrid sets of CSObj,
+     * the default), "bitset" (see {@link BitSetPointsToSet}) or
+     * "shared" (see {@link SharedPointsToSet}).
+     *
+     * @param indexer indexer of the CS objects of the analysis.
+     */
+    public PointsToSetFactory(AnalysisOptions options, CSObjIndexer indexer) {
+        Object pts = options.get("pts");
+        if (pts == null || pts.equals("hybrid")) {
+            representation = Representation.HYBRID;
+        } else if (pts.equals("bitset")) {
+            representation = Representation.BITSET;
+        } else if (pts.equals("shared")) {
+            representation = Representation.SHARED;
+        } else {
+            throw new ConfigException("Unknown points-to set representation: " + pts);
+        }
+        this.indexer = indexer;
+    }
+
+    /**
+     * @return true if the points-to sets are hybrid sets of CSObj,
+     * which do not depend on the indexes of the objects.
+     */
+    public boolean isHybrid() {
+        return representation == Representation.HYBRID;
+    }
+
+    /**
+     * @return true if points-to sets with the same objects share
+     * their contents.
+     */
+    public boolean isShared() {
+        return representation == Representation.SHARED;
+    }
+
+    /**
+     * @return a new empty points-to set.
+     */
+    public PointsToSet newSet() {
+        return switch (representation) {
+            case HYBRID -> make();
+            case BITSET -> new BitSetPointsToSet(indexer);
+            case SHARED -> new SharedPointsToSet(indexer);
+        };
     }
 
     /**
      * Convenient method for making one-element points-to set.
      */
-    public static PointsToSet make(CSObj obj) {
-        PointsToSet set = make();
+    public PointsToSet newSet(CSObj obj) {
+        PointsToSet set = newSet();
         set.addObject(obj);
         return set;
     }
+
+    /**
+     * @return a new empty hybrid points-to set. This is how
+     * {@code MapBasedCSManager} initializes the points-to sets
+     * of its pointers, thus it only supports hybrid sets.
+     */
+    public static PointsToSet make() {
+        return new DelegatePointsToSet(setFactory.get());
+    }
+
+    /**
+     * @return true if the two points-to sets contain the same objects.
+     * Shared points-to sets are compared by the identity of their contents.
+     */
+    public static boolean haveSameObjects(PointsToSet pts1, PointsToSet pts2) {
+        if (pts1 == pts2) {
+            return true;
+        }
+        if (pts1 instanceof SharedPointsToSet s1
+                && pts2 instanceof SharedPointsToSet s2) {
+            return s1.getContents() == s2.getContents();
+        }
+        if (pts1.size() != pts2.size()) {
+            return false;
+        }
+        for (CSObj obj : pts1) {
+            if (!pts2.contains(obj)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of distinct contents among given points-to sets,
+     * i.e., the number of contents that are actually stored in memory
+     * for shared points-to sets.
+     */
+    public static int countDistinctContents(Collection<PointsToSet> sets) {
+        Set<Object> contents = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (PointsToSet pts : sets) {
+            contents.add(pts instanceof SharedPointsToSet shared
+                    ? shared.getContents() : pts);
+        }
+        return contents.size();
+    }
 }
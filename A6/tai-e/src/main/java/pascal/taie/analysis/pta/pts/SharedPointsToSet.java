@@ -0,0 +1,321 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.pta.pts;
+
+import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.cs.element.CSObjIndexer;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Points-to set whose contents are hash-consed: the contents are immutable
+ * sorted arrays of {@link CSObj} indexes, and equal contents are interned
+ * into one instance, so that pointers with the same objects, e.g., along
+ * chains of copies, share one array. Modifications are copy-on-write,
+ * i.e., they replace the contents of this set with another interned array.
+ * <p>
+ * Adding a set to an empty set takes over the contents of the added set
+ * without any copy, and two sets with the same contents can be compared
+ * by identity. Single objects added by {@link #addObject(CSObj)} are
+ * buffered and merged in batches, and the merged contents are interned
+ * only when they are stored by {@link #addAllDiff(PointsToSet)} or
+ * compared by {@link #getContents()}.
+ * <p>
+ * This set is not thread-safe, not even for reads, which merge the
+ * buffered objects into the contents.
+ */
+class SharedPointsToSet implements PointsToSet {
+
+    /**
+     * Interned contents. The contents that are no longer used by any
+     * points-to set are reclaimed by GC.
+     */
+    private static final Map<Objs, WeakReference<Objs>> pool = new WeakHashMap<>();
+
+    /**
+     * Maximum number of objects buffered by {@link #addObject(CSObj)}
+     * before they are merged into the contents.
+     */
+    private static final int MAX_PENDING = 32;
+
+    private final CSObjIndexer indexer;
+
+    private Objs objs;
+
+    /**
+     * Indexes added by {@link #addObject(CSObj)} but not yet merged
+     * into {@link #objs}, so that a batch of single insertions is merged
+     * (and interned) once instead of once per object.
+     */
+    private int[] pending;
+
+    private int pendingSize;
+
+    SharedPointsToSet(CSObjIndexer indexer) {
+        this(indexer, Objs.EMPTY);
+    }
+
+    private SharedPointsToSet(CSObjIndexer indexer, Objs objs) {
+        this.indexer = indexer;
+        this.objs = objs;
+    }
+
+    private static Objs intern(Objs objs) {
+        if (objs.elems.length == 0) {
+            return Objs.EMPTY;
+        }
+        synchronized (pool) {
+            WeakReference<Objs> ref = pool.get(objs);
+            Objs interned = ref != null ? ref.get() : null;
+            if (interned == null) {
+                pool.put(objs, new WeakReference<>(objs));
+                interned = objs;
+            }
+            return interned;
+        }
+    }
+
+    /**
+     * Merges the pending objects into the contents of this set.
+     *
+     * @return the contents of this set, which are not necessarily interned.
+     */
+    private Objs flush() {
+        if (pendingSize > 0) {
+            int[] added = Arrays.copyOf(pending, pendingSize);
+            Arrays.sort(added);
+            objs = new Objs(merge(objs.elems, added), indexer);
+            pendingSize = 0;
+        }
+        return objs;
+    }
+
+    /**
+     * Merges two sorted arrays which have no elements in common.
+     */
+    private static int[] merge(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            result[n++] = a[i] < b[j] ? a[i++] : b[j++];
+        }
+        System.arraycopy(a, i, result, n, a.length - i);
+        System.arraycopy(b, j, result, n + a.length - i, b.length - j);
+        return result;
+    }
+
+    /**
+     * @return the (interned) contents of this set, which can be compared
+     * by identity to check whether two sets have the same objects.
+     */
+    Object getContents() {
+        return objs = intern(flush());
+    }
+
+    @Override
+    public boolean addObject(CSObj obj) {
+        int index = obj.getIndex();
+        if (objs.elems.length == 0 && pendingSize == 0) {
+            // one-object sets, e.g., made for new objects, are complete
+            // at once, so they need no flush
+            objs = new Objs(new int[]{index}, indexer);
+            return true;
+        }
+        if (Arrays.binarySearch(objs.elems, index) >= 0) {
+            return false;
+        }
+        for (int i = 0; i < pendingSize; ++i) {
+            if (pending[i] == index) {
+                return false;
+            }
+        }
+        if (pending == null) {
+            pending = new int[4];
+        } else if (pendingSize == pending.length) {
+            pending = Arrays.copyOf(pending, pendingSize * 2);
+        }
+        pending[pendingSize++] = index;
+        if (pendingSize == MAX_PENDING) {
+            flush();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean addAll(PointsToSet pts) {
+        return !addAllDiff(pts).isEmpty();
+    }
+
+    @Override
+    public PointsToSet addAllDiff(PointsToSet pts) {
+        Objs other = toObjs(pts);
+        Objs self = flush();
+        if (other == self || other.elems.length == 0) {
+            return new SharedPointsToSet(indexer);
+        }
+        if (self.elems.length == 0) {
+            objs = intern(other);
+            return new SharedPointsToSet(indexer, objs);
+        }
+        int[] a = self.elems, b = other.elems;
+        int[] union = new int[a.length + b.length];
+        int[] diff = new int[b.length];
+        int i = 0, j = 0, n = 0, d = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                union[n++] = a[i++];
+            } else if (a[i] > b[j]) {
+                diff[d++] = b[j];
+                union[n++] = b[j++];
+            } else {
+                union[n++] = a[i++];
+                ++j;
+            }
+        }
+        while (i < a.length) {
+            union[n++] = a[i++];
+        }
+        while (j < b.length) {
+            diff[d++] = b[j];
+            union[n++] = b[j++];
+        }
+        if (d == 0) {
+            return new SharedPointsToSet(indexer);
+        }
+        objs = intern(n == b.length ? other
+                : new Objs(Arrays.copyOf(union, n), indexer));
+        // deltas are short-lived, so they are not interned
+        return new SharedPointsToSet(indexer, d == b.length ? other
+                : new Objs(Arrays.copyOf(diff, d), indexer));
+    }
+
+    private Objs toObjs(PointsToSet pts) {
+        if (pts instanceof SharedPointsToSet shared) {
+            return shared.flush();
+        }
+        return new Objs(pts.objects().mapToInt(CSObj::getIndex).sorted().toArray(),
+                indexer);
+    }
+
+    @Override
+    public PointsToSet emptySet() {
+        return new SharedPointsToSet(indexer);
+    }
+
+    @Override
+    public boolean contains(CSObj obj) {
+        return Arrays.binarySearch(flush().elems, obj.getIndex()) >= 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return objs.elems.length == 0 && pendingSize == 0;
+    }
+
+    @Override
+    public int size() {
+        return flush().elems.length;
+    }
+
+    @Override
+    public Set<CSObj> getObjects() {
+        Objs snapshot = flush();
+        return new AbstractSet<>() {
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof CSObj obj
+                        && Arrays.binarySearch(snapshot.elems, obj.getIndex()) >= 0;
+            }
+
+            @Override
+            public Iterator<CSObj> iterator() {
+                return Arrays.stream(snapshot.elems)
+                        .mapToObj(snapshot::getObject)
+                        .iterator();
+            }
+
+            @Override
+            public int size() {
+                return snapshot.elems.length;
+            }
+        };
+    }
+
+    @Override
+    public Stream<CSObj> objects() {
+        Objs snapshot = flush();
+        return Arrays.stream(snapshot.elems).mapToObj(snapshot::getObject);
+    }
+
+    @Override
+    public String toString() {
+        return getObjects().toString();
+    }
+
+    /**
+     * Immutable sorted array of object indexes with cached hash code,
+     * together with the indexer that resolves the indexes. Contents of
+     * different analyses are never equal.
+     */
+    private static final class Objs {
+
+        private static final Objs EMPTY = new Objs(new int[0], null);
+
+        private final int[] elems;
+
+        private final CSObjIndexer indexer;
+
+        private final int hashCode;
+
+        private Objs(int[] elems, CSObjIndexer indexer) {
+            this.elems = elems;
+            this.indexer = indexer;
+            this.hashCode = Arrays.hashCode(elems);
+        }
+
+        private CSObj getObject(int index) {
+            return indexer.getObject(index);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof Objs other
+                    && hashCode == other.hashCode
+                    && indexer == other.indexer
+                    && Arrays.equals(elems, other.elems));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -22,13 +22,44 @@
 
 package pascal.taie.analysis.pta;
 
+import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pascal.taie.World;
 import pascal.taie.analysis.Tests;
+import pascal.taie.analysis.pta.core.cs.context.Context;
+import pascal.taie.analysis.pta.core.cs.context.ListContext;
+import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.cs.element.CSVar;
+import pascal.taie.analysis.pta.core.heap.MergedObj;
+import pascal.taie.analysis.pta.core.heap.NewObj;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.analysis.pta.cs.CSPTA;
+import pascal.taie.config.ConfigException;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Invoke;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class CSPTATest {
 
     static final String DIR = "cspta";
 
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
     @Test
     public void testNew() {
         Tests.testCSPTA(DIR, "New");
@@ -84,6 +115,96 @@ public class CSPTATest {
         Tests.testCSPTA(DIR, "TwoType", "cs:2-type");
     }
 
+    /**
+     * 1-hybrid analyzes Util.pass under its only call site,
+     * thus merges the objects passed by the two receivers.
+     */
+    @Test
+    public void testOneHybrid() {
+        PointerAnalysisResult result = Tests.runCSPTA(DIR, "Hybrid", "cs:1-hybrid");
+        for (CSVar csVar : result.getCSVars()) {
+            Context c = csVar.getContext();
+            if (c.getLength() > 0) {
+                Assert.assertEquals(csVar.toString(), 1, c.getLength());
+                Assert.assertEquals(csVar.toString(),
+                        csVar.getVar().getMethod().isStatic(),
+                        c.getElementAt(0) instanceof Invoke);
+            }
+        }
+        result.getCSObjects().forEach(o ->
+                Assert.assertEquals(o.toString(), 0, o.getContext().getLength()));
+        Map<String, Set<String>> pts = projectPointsToSets(result);
+        Assert.assertEquals(2, pts.get("<Hybrid: void m()>/b1").size());
+        Assert.assertEquals(pts.get("<Hybrid: void m()>/b1"),
+                pts.get("<Hybrid: void m()>/b2"));
+        assertWithinCI(pts);
+    }
+
+    /**
+     * 2-hybrid carries the receiver of A.wrap into the context of the
+     * static call to Util.pass, thus tells the two objects apart.
+     */
+    @Test
+    public void testTwoHybrid() {
+        PointerAnalysisResult result = Tests.runCSPTA(DIR, "Hybrid", "cs:2-hybrid");
+        int passContexts = 0;
+        for (CSVar csVar : result.getCSVars()) {
+            Context c = csVar.getContext();
+            int length = c.getLength();
+            if (length == 0) {
+                continue;
+            }
+            Assert.assertTrue(csVar.toString(), length <= 2);
+            if (csVar.getVar().getMethod().isStatic()) {
+                // [recv, call site] or [call site]
+                Assert.assertTrue(csVar.toString(),
+                        c.getElementAt(length - 1) instanceof Invoke);
+                if (length == 2) {
+                    Assert.assertTrue(csVar.toString(),
+                            c.getElementAt(0) instanceof Obj);
+                }
+                if (csVar.getVar().getMethod().getName().equals("pass")
+                        && csVar.getVar().getName().equals("p")) {
+                    Assert.assertEquals(csVar.toString(), 2, length);
+                    ++passContexts;
+                }
+            } else {
+                // [heap context of recv, recv]
+                for (int i = 0; i < length; ++i) {
+                    Assert.assertTrue(csVar.toString(),
+                            c.getElementAt(i) instanceof Obj);
+                }
+            }
+        }
+        Assert.assertEquals(2, passContexts);
+        for (CSObj o : result.getCSObjects()) {
+            Context c = o.getContext();
+            Assert.assertTrue(o.toString(), c.getLength() <= 1);
+            if (c.getLength() == 1) {
+                Assert.assertTrue(o.toString(), c.getElementAt(0) instanceof Obj);
+            }
+        }
+        Map<String, Set<String>> pts = projectPointsToSets(result);
+        Set<String> b1 = pts.get("<Hybrid: void m()>/b1");
+        Set<String> b2 = pts.get("<Hybrid: void m()>/b2");
+        Assert.assertEquals(1, b1.size());
+        Assert.assertEquals(1, b2.size());
+        Assert.assertNotEquals(b1, b2);
+        assertWithinCI(pts);
+    }
+
+    /**
+     * Checks that given context-sensitive result of Hybrid, projected
+     * to variables, is subsumed by the context-insensitive one.
+     */
+    private static void assertWithinCI(Map<String, Set<String>> pts) {
+        Map<String, Set<String>> ci = projectPointsToSets(
+                Tests.runCSPTA(DIR, "Hybrid", "cs:ci"));
+        Assert.assertEquals(ci.keySet(), pts.keySet());
+        pts.forEach((var, objs) ->
+                Assert.assertTrue(var, ci.get(var).containsAll(objs)));
+    }
+
     @Test
     public void testStaticField() {
         Tests.testCSPTA(DIR, "StaticField");
@@ -93,4 +214,325 @@ public class CSPTATest {
     public void testArray() {
         Tests.testCSPTA(DIR, "Array");
     }
+
+    @Test
+    public void testTwoObjectBitSet() {
+        Tests.testCSPTA(DIR, "TwoObject", "cs:2-obj", "pts:bitset");
+    }
+
+    @Test
+    public void testArrayTypeFilter() {
+        Tests.testCSPTA(DIR, "Array", "type-filter:true");
+    }
+
+    @Test
+    public void testTwoObjectTypeFilterParallel() {
+        Tests.testCSPTA(DIR, "TwoObject", "cs:2-obj", "type-filter:true", "parallel:true");
+    }
+
+    @Test
+    public void testArrayBitSet() {
+        Tests.testCSPTA(DIR, "Array", "pts:bitset");
+    }
+
+    @Test
+    public void testBitSetResultSurvivesNextRun() {
+        Tests.testCSPTA(DIR, "TwoObject", "cs:2-obj", "pts:bitset");
+        PointerAnalysisResult first = World.get().getResult(CSPTA.ID);
+        Map<String, String> before = dumpPointsToSets(first);
+        // the second run numbers its own objects from zero again
+        Tests.testCSPTA(DIR, "OneCall", "cs:1-call", "pts:bitset");
+        Assert.assertEquals(before, dumpPointsToSets(first));
+    }
+
+    @Test
+    public void testContextsSurviveNextRun() {
+        PointerAnalysisResult first = Tests.runCSPTA(
+                DIR, "TwoObject", "cs:2-obj", "cs-manager:array");
+        Map<String, String> before = dumpPointsToSets(first);
+        Tests.runCSPTA(DIR, "OneCall", "cs:1-call", "cs-manager:array");
+        Assert.assertEquals(before, dumpPointsToSets(first));
+        // the contexts of the first analysis are still interned in its trie
+        for (CSVar csVar : first.getCSVars()) {
+            Context c = csVar.getContext();
+            Object[] elems = new Object[c.getLength()];
+            for (int i = 0; i < elems.length; ++i) {
+                elems[i] = c.getElementAt(i);
+            }
+            Assert.assertSame(c, ListContext.make(c, elems));
+        }
+    }
+
+    private static Map<String, String> dumpPointsToSets(
+            PointerAnalysisResult result) {
+        return result.getCSVars()
+                .stream()
+                .collect(Collectors.toMap(Object::toString,
+                        v -> result.getPointsToSet(v).toString()));
+    }
+
+    @Test
+    public void testTwoObjectShared() {
+        Tests.testCSPTA(DIR, "TwoObject", "cs:2-obj", "pts:shared");
+    }
+
+    @Test
+    public void testTwoCallShared() {
+        Tests.testCSPTA(DIR, "TwoCall", "cs:2-call", "pts:shared", "cycle-elim:true");
+    }
+
+    @Test(expected = ConfigException.class)
+    public void testArraySharedParallel() {
+        Tests.runCSPTA(DIR, "Array", "pts:shared", "parallel:true");
+    }
+
+    @Test
+    public void testTwoCallCycleElim() {
+        Tests.testCSPTA(DIR, "TwoCall", "cs:2-call", "cycle-elim:true");
+    }
+
+    @Test
+    public void testArrayCycleElim() {
+        Tests.testCSPTA(DIR, "Array", "cycle-elim:true");
+    }
+
+    @Test
+    public void testTwoObjectParallel() {
+        Tests.testCSPTA(DIR, "TwoObject", "cs:2-obj", "parallel:true");
+    }
+
+    @Test
+    public void testArrayParallel() {
+        Tests.testCSPTA(DIR, "Array", "parallel:true");
+    }
+
+    @Test
+    public void testTwoObjectArrayCSManager() {
+        Tests.testCSPTA(DIR, "TwoObject", "cs:2-obj", "cs-manager:array");
+    }
+
+    @Test
+    public void testTwoCallArrayCSManager() {
+        Tests.testCSPTA(DIR, "TwoCall", "cs:2-call", "cs-manager:array");
+    }
+
+    @Test
+    public void testTwoObjectScaler() {
+        // Scaler selects one of 2-obj, 2-type, 1-type and ci for each
+        // method, so its result lies between the ones of 2-obj and ci
+        Map<String, Set<String>> ci = projectPointsToSets(
+                Tests.runCSPTA(DIR, "TwoObject", "cs:ci"));
+        Map<String, Set<String>> twoObj = projectPointsToSets(
+                Tests.runCSPTA(DIR, "TwoObject", "cs:2-obj"));
+        Map<String, Set<String>> scaler = projectPointsToSets(
+                Tests.runCSPTA(DIR, "TwoObject", "cs:scaler"));
+        Assert.assertTrue(ci.keySet().containsAll(scaler.keySet()));
+        Assert.assertTrue(scaler.keySet().containsAll(twoObj.keySet()));
+        scaler.forEach((var, objs) -> {
+            Assert.assertTrue(var, ci.get(var).containsAll(objs));
+            Assert.assertTrue(var, objs.containsAll(
+                    twoObj.getOrDefault(var, Set.of())));
+        });
+    }
+
+    @Test
+    public void testTwoObjectScalerBitSet() {
+        // the pre-analysis and the main analysis run two solvers,
+        // each of which indexes its own objects
+        Assert.assertEquals(
+                projectCSPointsToSets(Tests.runCSPTA(DIR, "TwoObject", "cs:scaler")),
+                projectCSPointsToSets(Tests.runCSPTA(DIR, "TwoObject",
+                        "cs:scaler", "pts:bitset")));
+    }
+
+    @Test
+    public void testTwoObjectDefaultHeavyTypes() {
+        // the default heavy types are in JDK, thus nothing is merged
+        Tests.testCSPTA(DIR, "TwoObject", "cs:2-obj", "heap-model:heavy-types");
+    }
+
+    @Test
+    public void testTwoObjectHeavyTypes() {
+        assertListsMerged(Tests.runCSPTA(DIR, "TwoObject", "cs:2-obj",
+                "heap-model:heavy-types", "heavy-types:[List]"));
+    }
+
+    @Test
+    public void testTwoObjectHeavyType() {
+        assertListsMerged(Tests.runCSPTA(DIR, "TwoObject", "cs:2-obj",
+                "heap-model:heavy-types", "heavy-types:List"));
+    }
+
+    /**
+     * Checks that the two lists of TwoObject are merged into one object,
+     * so 2-obj cannot distinguish their elements any more.
+     */
+    private static void assertListsMerged(PointerAnalysisResult result) {
+        Map<String, Var> vars = result.getVars()
+                .stream()
+                .collect(Collectors.toMap(Var::getName, v -> v, (v1, v2) -> v1));
+        Set<Obj> l1 = result.getPointsToSet(vars.get("l1"));
+        Assert.assertEquals(1, l1.size());
+        Assert.assertTrue(l1.iterator().next() instanceof MergedObj);
+        Assert.assertEquals(l1, result.getPointsToSet(vars.get("l2")));
+        Assert.assertEquals(2, result.getPointsToSet(vars.get("o1")).size());
+    }
+
+    @Test
+    public void testTwoObjectTypeLibrary() {
+        // all objects of TwoObject are allocated in application
+        Tests.testCSPTA(DIR, "TwoObject", "cs:2-obj", "heap-model:type-library");
+    }
+
+    @Test
+    public void testLibraryTypeLibrary() {
+        PointerAnalysisResult result = Tests.runCSPTA(DIR, "Library",
+                "heap-model:type-library", "only-app:false");
+        boolean arrayMerged = false;
+        for (Obj obj : result.getObjects()) {
+            if (obj instanceof NewObj) {
+                Assert.assertTrue(obj.toString(), obj.getContainerMethod()
+                        .orElseThrow()
+                        .getDeclaringClass()
+                        .isApplication());
+            }
+            // the element arrays of ArrayList are allocated in library
+            arrayMerged |= obj instanceof MergedObj
+                    && obj.getType().getName().equals("java.lang.Object[]");
+        }
+        Assert.assertTrue(arrayMerged);
+    }
+
+    /**
+     * A tiny budget downgrades the methods as soon as they get contexts,
+     * so the contexts differ from the ones of 2-obj, while the result
+     * lies between the ones of 2-obj and context insensitivity.
+     */
+    @Test
+    public void testTwoObjectBudget() {
+        PointerAnalysisResult twoObjResult = Tests.runCSPTA(DIR, "TwoObject", "cs:2-obj");
+        Map<String, Set<String>> twoObjCS = projectCSPointsToSets(twoObjResult);
+        Map<String, Set<String>> twoObj = projectPointsToSets(twoObjResult);
+        Map<String, Set<String>> ci = projectPointsToSets(
+                Tests.runCSPTA(DIR, "TwoObject", "cs:ci"));
+        PointerAnalysisResult budgetResult = Tests.runCSPTA(
+                DIR, "TwoObject", "cs:2-obj", "cs-budget:1");
+        Assert.assertNotEquals(twoObjCS, projectCSPointsToSets(budgetResult));
+        Map<String, Set<String>> budget = projectPointsToSets(budgetResult);
+        Assert.assertTrue(ci.keySet().containsAll(budget.keySet()));
+        Assert.assertTrue(budget.keySet().containsAll(twoObj.keySet()));
+        budget.forEach((var, objs) -> {
+            Assert.assertTrue(var, ci.get(var).containsAll(objs));
+            Assert.assertTrue(var, objs.containsAll(
+                    twoObj.getOrDefault(var, Set.of())));
+        });
+    }
+
+    /**
+     * @return the context-insensitive points-to sets of the variables in
+     * given result, which can be compared across runs by their names.
+     */
+    private static Map<String, Set<String>> projectPointsToSets(
+            PointerAnalysisResult result) {
+        return result.getVars()
+                .stream()
+                .collect(Collectors.toMap(
+                        v -> v.getMethod() + "/" + v.getName(),
+                        v -> result.getPointsToSet(v)
+                                .stream()
+                                .map(Object::toString)
+                                .collect(Collectors.toSet())));
+    }
+
+    @Test
+    public void testTwoObjectCheckpoint() throws IOException {
+        Path file = temp.getRoot().toPath().resolve("TwoObject.ckpt");
+        // checkpoint-interval:0 takes a checkpoint whenever the previous
+        // one has been written, thus the file has several segments
+        Tests.testCSPTA(DIR, "TwoObject", "cs:2-obj",
+                "checkpoint:" + file, "checkpoint-interval:0");
+        // keep the first segment and a part of the second one, as if
+        // the analysis crashed halfway when writing the second checkpoint
+        List<Long> segments = getSegmentOffsets(file);
+        Assert.assertTrue(segments.size() >= 2);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(segments.get(1) + Integer.BYTES + 1);
+        }
+        Tests.testCSPTA(DIR, "TwoObject", "cs:2-obj", "resume:" + file);
+    }
+
+    /**
+     * @return the offsets of the segments in given checkpoint file,
+     * each of which starts with its length, after the 8-byte header.
+     */
+    private static List<Long> getSegmentOffsets(Path file) throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            long size = Files.size(file);
+            in.skipNBytes(8);
+            for (long offset = 8; offset < size; ) {
+                offsets.add(offset);
+                int length = in.readInt();
+                in.skipNBytes(length);
+                offset += Integer.BYTES + length;
+            }
+        }
+        return offsets;
+    }
+
+    @Test
+    public void testTwoObjectIncremental() {
+        Path snapshot = temp.getRoot().toPath().resolve("TwoObject.snapshot");
+        Tests.testCSPTA(DIR, "TwoObject", "cs:2-obj",
+                "checkpoint:" + snapshot);
+        Tests.testCSPTA(DIR, "TwoObject", "cs:2-obj",
+                "incremental:" + snapshot,
+                "changed-classes:[TwoObject]");
+    }
+
+    /**
+     * Updates the result of version 1 of the program to version 2,
+     * which removes and adds flows in the changed classes, and compares
+     * it with the result of analyzing version 2 from scratch.
+     */
+    @Test
+    public void testIncrementalChangedClasses() {
+        Path snapshot = temp.getRoot().toPath().resolve("Incremental.snapshot");
+        Tests.runCSPTA("cspta-incremental/v1", "Incremental", "cs:2-obj",
+                "checkpoint:" + snapshot);
+        PointerAnalysisResult incremental = Tests.runCSPTA(
+                "cspta-incremental/v2", "Incremental", "cs:2-obj",
+                "incremental:" + snapshot,
+                "changed-classes:[Incremental,Factory]");
+        Map<String, Set<String>> incrementalPts = projectCSPointsToSets(incremental);
+        Set<String> incrementalEdges = projectCallEdges(incremental);
+        PointerAnalysisResult scratch = Tests.runCSPTA(
+                "cspta-incremental/v2", "Incremental", "cs:2-obj");
+        Assert.assertEquals(projectCSPointsToSets(scratch), incrementalPts);
+        Assert.assertEquals(projectCallEdges(scratch), incrementalEdges);
+    }
+
+    /**
+     * @return the context-sensitive points-to sets of the variables in
+     * given result, which can be compared across runs by their names.
+     */
+    private static Map<String, Set<String>> projectCSPointsToSets(
+            PointerAnalysisResult result) {
+        return result.getCSVars()
+                .stream()
+                .collect(Collectors.toMap(
+                        Object::toString,
+                        v -> result.getPointsToSet(v)
+                                .stream()
+                                .map(Object::toString)
+                                .collect(Collectors.toSet())));
+    }
+
+    private static Set<String> projectCallEdges(PointerAnalysisResult result) {
+        return result.getCSCallGraph()
+                .edges()
+                .map(e -> e.getCallSite() + " -> " + e.getCallee())
+                .collect(Collectors.toSet());
+    }
 }
@@ -0,0 +1,37 @@
+class Incremental {
+    public static void main(String[] args) {
+        Box b1 = new Box();
+        Box b2 = new Box();
+        b1.set(new Item());
+        b2.set(new Item());
+        Object o1 = b1.get();
+        Object o2 = b2.get();
+
+        Factory f = new Factory();
+        Object p = f.make();
+        b1.set(p);
+    }
+}
+
+class Box {
+
+    Object content;
+
+    void set(Object o) {
+        this.content = o;
+    }
+
+    Object get() {
+        return this.content;
+    }
+}
+
+class Item {
+}
+
+class Factory {
+
+    Object make() {
+        return new Item();
+    }
+}
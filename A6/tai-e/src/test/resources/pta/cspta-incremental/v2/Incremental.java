@@ -0,0 +1,41 @@
+class Incremental {
+    public static void main(String[] args) {
+        Box b1 = new Box();
+        Box b2 = new Box();
+        b1.set(new Item());
+        b2.set(new Item());
+        Object o1 = b1.get();
+        Object o2 = b2.get();
+
+        Factory f = new Factory();
+        Object p = f.make();
+        b2.set(p);
+        Box b3 = (Box) f.make();
+        Object o3 = b3.get();
+    }
+}
+
+class Box {
+
+    Object content;
+
+    void set(Object o) {
+        this.content = o;
+    }
+
+    Object get() {
+        return this.content;
+    }
+}
+
+class Item {
+}
+
+class Factory {
+
+    Object make() {
+        Box b = new Box();
+        b.set(new Item());
+        return b;
+    }
+}
@@ -0,0 +1,27 @@
+class Hybrid {
+    public static void main(String[] args) {
+        m();
+    }
+
+    static void m() {
+        A a1 = new A();
+        A a2 = new A();
+        B b1 = a1.wrap(new B());
+        B b2 = a2.wrap(new B());
+    }
+}
+
+class A {
+    B wrap(B b) {
+        return Util.pass(b);
+    }
+}
+
+class Util {
+    static B pass(B p) {
+        return p;
+    }
+}
+
+class B {
+}
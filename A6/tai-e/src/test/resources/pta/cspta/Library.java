@@ -0,0 +1,9 @@
+import java.util.ArrayList;
+
+class Library {
+    public static void main(String[] args) {
+        ArrayList<Object> list = new ArrayList<>();
+        list.add(new Object());
+        Object o = list.get(0);
+    }
+}
@@ -24,6 +24,7 @@ package pascal.taie.analysis.dataflow.analysis.constprop;
 
 import pascal.taie.analysis.dataflow.fact.MapFact;
 import pascal.taie.ir.exp.Var;
+import pascal.taie.util.collection.ArrayMap;
 
 import java.util.Collections;
 import java.util.Map;
@@ -40,6 +41,8 @@ import java.util.Map;
  */
 public class CPFact extends MapFact<Var, Value> {
 
+    private static final CPFact EMPTY = new CPFact(Collections.emptyMap(), false);
+
     public CPFact() {
         this(Collections.emptyMap());
     }
@@ -48,6 +51,27 @@ public class CPFact extends MapFact<Var, Value> {
         super(map);
     }
 
+    private CPFact(Map<Var, Value> map, boolean copy) {
+        super(map, copy);
+    }
+
+    /**
+     * @return the shared empty fact, which must not be modified.
+     * Its {@link #copy()} is an ordinary modifiable fact.
+     */
+    public static CPFact empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a fact backed by an array of given capacity, which is
+     * cheaper than the default representation for the few entries of,
+     * e.g., the parameters of a method.
+     */
+    public static CPFact newSmallFact(int capacity) {
+        return new CPFact(new ArrayMap<>(capacity), false);
+    }
+
     /**
      * @return the value of given variable in this fact,
      * or UNDEF the variable is absent in this fact.
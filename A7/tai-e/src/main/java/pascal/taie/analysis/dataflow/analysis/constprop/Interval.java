@@ -0,0 +1,203 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.analysis.constprop;
+
+/**
+ * Represents lattice values of interval analysis for int values.
+ * An interval is either empty (the bottom), or [lo, hi] where the
+ * bounds are within the range of int. The full range of int is the top.
+ * <p>
+ * Arithmetic that may overflow goes to the top, as int values wrap around.
+ */
+public class Interval {
+
+    private static final Interval EMPTY = new Interval(1, 0);
+
+    private static final Interval TOP =
+            new Interval(Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+    private static final Interval NON_NEGATIVE =
+            new Interval(0, Integer.MAX_VALUE);
+
+    private final long lo;
+
+    private final long hi;
+
+    private Interval(long lo, long hi) {
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    /**
+     * @return the empty interval.
+     */
+    public static Interval getEmpty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return the interval that contains all int values.
+     */
+    public static Interval getTop() {
+        return TOP;
+    }
+
+    /**
+     * @return [0, Integer.MAX_VALUE], e.g., the range of array lengths.
+     */
+    public static Interval getNonNegative() {
+        return NON_NEGATIVE;
+    }
+
+    /**
+     * @return the interval that only contains given value.
+     */
+    public static Interval of(int value) {
+        return new Interval(value, value);
+    }
+
+    /**
+     * @return the interval [lo, hi], or the top if the bounds are
+     * out of the range of int.
+     */
+    public static Interval of(long lo, long hi) {
+        if (lo > hi) {
+            return EMPTY;
+        }
+        if (lo < Integer.MIN_VALUE || hi > Integer.MAX_VALUE) {
+            return TOP;
+        }
+        return new Interval(lo, hi);
+    }
+
+    /**
+     * Converts a constant propagation value to an interval.
+     */
+    public static Interval of(Value value) {
+        if (value.isConstant()) {
+            return of(value.getConstant());
+        }
+        return value.isNAC() ? TOP : EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return lo > hi;
+    }
+
+    public boolean isTop() {
+        return lo == Integer.MIN_VALUE && hi == Integer.MAX_VALUE;
+    }
+
+    public long getLower() {
+        return lo;
+    }
+
+    public long getUpper() {
+        return hi;
+    }
+
+    /**
+     * @return the least interval that contains both intervals.
+     */
+    public Interval join(Interval other) {
+        if (isEmpty()) {
+            return other;
+        }
+        if (other.isEmpty()) {
+            return this;
+        }
+        return of(Math.min(lo, other.lo), Math.max(hi, other.hi));
+    }
+
+    /**
+     * @return the intersection of the two intervals.
+     */
+    public Interval meet(Interval other) {
+        return of(Math.max(lo, other.lo), Math.min(hi, other.hi));
+    }
+
+    /**
+     * Standard widening: the bound that grows from this interval to
+     * {@code next} jumps to infinity, so that loops converge quickly.
+     */
+    public Interval widen(Interval next) {
+        if (isEmpty()) {
+            return next;
+        }
+        if (next.isEmpty()) {
+            return this;
+        }
+        long l = next.lo < lo ? Integer.MIN_VALUE : lo;
+        long h = next.hi > hi ? Integer.MAX_VALUE : hi;
+        return of(l, h);
+    }
+
+    /**
+     * @return true if the two intervals have common values.
+     */
+    public boolean intersects(Interval other) {
+        return !isEmpty() && !other.isEmpty()
+                && lo <= other.hi && other.lo <= hi;
+    }
+
+    public Interval add(Interval other) {
+        if (isEmpty() || other.isEmpty()) {
+            return EMPTY;
+        }
+        return of(lo + other.lo, hi + other.hi);
+    }
+
+    public Interval sub(Interval other) {
+        if (isEmpty() || other.isEmpty()) {
+            return EMPTY;
+        }
+        return of(lo - other.hi, hi - other.lo);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (!(obj instanceof Interval)) {
+            return false;
+        }
+        Interval other = (Interval) obj;
+        return (isEmpty() && other.isEmpty())
+                || (lo == other.lo && hi == other.hi);
+    }
+
+    @Override
+    public int hashCode() {
+        return isEmpty() ? 0 : Long.hashCode(lo * 31 + hi);
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "[]";
+        }
+        String l = lo == Integer.MIN_VALUE ? "-inf" : Long.toString(lo);
+        String h = hi == Integer.MAX_VALUE ? "+inf" : Long.toString(hi);
+        return "[" + l + ", " + h + "]";
+    }
+}
@@ -54,6 +54,17 @@ public class MapFact<K, V> {
         this.map = Maps.newHybridMap(map);
     }
 
+    /**
+     * Constructs a new MapFact backed by given map itself, so that
+     * subclasses can choose a more compact (or immutable) representation.
+     *
+     * @param map  the map to back this fact.
+     * @param copy if true, behaves like {@link #MapFact(Map)}.
+     */
+    protected MapFact(Map<K, V> map, boolean copy) {
+        this.map = copy ? Maps.newHybridMap(map) : map;
+    }
+
     /**
      * @return the value to which the specified key is mapped,
      * or null if this map contains no mapping for the key.
@@ -34,6 +34,8 @@ import pascal.taie.analysis.graph.icfg.NormalEdge;
 import pascal.taie.analysis.graph.icfg.ReturnEdge;
 import pascal.taie.config.AnalysisConfig;
 
+import java.util.Collection;
+
 /**
  * Provides common functionalities for {@link InterDataflowAnalysis} implementations.
  *
@@ -126,4 +128,30 @@ public abstract class AbstractInterDataflowAnalysis<Method, Node, Fact>
         finish();
         return result;
     }
+
+    /**
+     * Prepares the analysis and the solver for demand-driven solving,
+     * if they have not been prepared yet.
+     */
+    protected void prepareOnDemand() {
+        if (solver == null) {
+            icfg = World.get().getResult(ICFGBuilder.ID);
+            initialize();
+            solver = new InterSolver<>(this, icfg);
+        }
+    }
+
+    /**
+     * Demand-driven counterpart of {@link #analyze()}: only solves the
+     * given slice of the ICFG, which the concrete analysis computes from
+     * its queries. Results are memoized, so repeated queries only pay for
+     * the part of the ICFG that is new to the slice.
+     *
+     * @return the data-flow result, in which the facts of the slice are
+     * final for what the slice was built for.
+     */
+    protected DataflowResult<Node, Fact> solveOnDemand(Collection<Node> slice) {
+        prepareOnDemand();
+        return solver.solveOnDemand(slice);
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.inter;
+
+import pascal.taie.analysis.pta.PointerAnalysisResult;
+import pascal.taie.analysis.pta.core.cs.element.CSObj;
+import pascal.taie.analysis.pta.core.cs.element.CSVar;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.util.IDProvider;
+import pascal.taie.util.MapIDProvider;
+import pascal.taie.util.collection.Maps;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers context-insensitive alias queries on the result of a
+ * (possibly context-sensitive) pointer analysis.
+ * <p>
+ * {@link PointerAnalysisResult#getPointsToSet(Var)} removes contexts by
+ * merging the points-to sets of all CSVars of a variable into a new
+ * {@code Set<Obj>}. This index instead numbers the abstract objects densely
+ * and projects each variable to a {@link BitSet} over the object IDs, so
+ * that {@link #mayAlias(Var, Var)} is a word-parallel intersection.
+ * The bit sets are computed when a variable is first queried and then
+ * cached.
+ */
+class AliasIndex {
+
+    private static final BitSet EMPTY = new BitSet(0);
+
+    private final PointerAnalysisResult pta;
+
+    /**
+     * Assigns dense IDs to abstract objects. The same {@link Obj} under
+     * different heap contexts receives the same ID.
+     */
+    private final IDProvider<Obj> objIds = new MapIDProvider<>();
+
+    /**
+     * Map from variable to its context-sensitive variables,
+     * built on the first query.
+     */
+    private Map<Var, List<CSVar>> csVarsOf;
+
+    /**
+     * Cache of the context-insensitive projection of points-to sets.
+     */
+    private final Map<Var, BitSet> projections = Maps.newMap();
+
+    AliasIndex(PointerAnalysisResult pta) {
+        this.pta = pta;
+    }
+
+    /**
+     * @return true if the two variables may point to a common object.
+     */
+    boolean mayAlias(Var v1, Var v2) {
+        if (v1 == v2) {
+            return !getProjection(v1).isEmpty();
+        }
+        return getProjection(v1).intersects(getProjection(v2));
+    }
+
+    private BitSet getProjection(Var var) {
+        BitSet bits = projections.get(var);
+        if (bits == null) {
+            bits = project(var);
+            projections.put(var, bits);
+        }
+        return bits;
+    }
+
+    private BitSet project(Var var) {
+        if (csVarsOf == null) {
+            csVarsOf = Maps.newMap();
+            for (CSVar csVar : pta.getCSVars()) {
+                csVarsOf.computeIfAbsent(csVar.getVar(), v -> new ArrayList<>())
+                        .add(csVar);
+            }
+        }
+        List<CSVar> csVars = csVarsOf.get(var);
+        if (csVars == null) {
+            return EMPTY;
+        }
+        BitSet bits = new BitSet();
+        for (CSVar csVar : csVars) {
+            for (CSObj csObj : pta.getPointsToSet(csVar)) {
+                bits.set(objIds.getID(csObj.getObject()));
+            }
+        }
+        return bits.isEmpty() ? EMPTY : bits;
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.inter;
+
+import pascal.taie.analysis.dataflow.analysis.constprop.ConstantPropagation;
+import pascal.taie.analysis.dataflow.analysis.constprop.Interval;
+import pascal.taie.analysis.graph.cfg.CFG;
+import pascal.taie.analysis.graph.cfg.CFGBuilder;
+import pascal.taie.analysis.graph.cfg.Edge;
+import pascal.taie.ir.exp.ArithmeticExp;
+import pascal.taie.ir.exp.ArrayLengthExp;
+import pascal.taie.ir.exp.ConditionExp;
+import pascal.taie.ir.exp.IntLiteral;
+import pascal.taie.ir.exp.LValue;
+import pascal.taie.ir.exp.NewArray;
+import pascal.taie.ir.exp.RValue;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.DefinitionStmt;
+import pascal.taie.ir.stmt.If;
+import pascal.taie.ir.stmt.Stmt;
+import pascal.taie.language.classes.JMethod;
+import pascal.taie.language.type.ArrayType;
+import pascal.taie.util.collection.Maps;
+import pascal.taie.util.collection.SetQueue;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+
+/**
+ * Intra-procedural interval analysis for int variables, used to
+ * abstract array indexes beyond constant/NAC.
+ * <p>
+ * The analysis is flow-sensitive and refines intervals on the branches
+ * of {@code if} statements, e.g., the index of a loop
+ * {@code for (i = 0; i < a.length; ++i)} is in [0, a.length - 1] in
+ * the loop body. For array variables, the fact holds the range of the
+ * array length, so that {@code a.length} of {@code a = new int[5]}
+ * evaluates to [5, 5]. Parameters, call results and heap loads are
+ * unknown (the top), so the result is sound for every calling context.
+ * <p>
+ * Intervals are widened at every merge, so loops converge after
+ * at most two extra iterations. Results are computed per method
+ * on first request and cached.
+ */
+class IndexRangeAnalysis {
+
+    private final Map<JMethod, Map<Stmt, Map<Var, Interval>>> results = Maps.newMap();
+
+    /**
+     * @return the range of the int variable {@code var} right before
+     * {@code stmt} is executed.
+     */
+    Interval getRange(Stmt stmt, Var var) {
+        Map<Stmt, Map<Var, Interval>> inFacts = results.computeIfAbsent(
+                var.getMethod(), this::analyze);
+        Map<Var, Interval> in = inFacts.get(stmt);
+        if (in == null) {
+            return Interval.getTop();
+        }
+        return in.getOrDefault(var, Interval.getTop());
+    }
+
+    private Map<Stmt, Map<Var, Interval>> analyze(JMethod method) {
+        CFG<Stmt> cfg = method.getIR().getResult(CFGBuilder.ID);
+        Map<Stmt, Map<Var, Interval>> inFacts = Maps.newMap();
+        Map<Stmt, Map<Var, Interval>> outFacts = Maps.newMap();
+        Queue<Stmt> workList = new SetQueue<>();
+        workList.add(cfg.getEntry());
+        while (!workList.isEmpty()) {
+            Stmt node = workList.poll();
+            Map<Var, Interval> newIn;
+            if (cfg.isEntry(node)) {
+                newIn = newBoundaryFact(method);
+            } else {
+                newIn = Maps.newHybridMap();
+                for (Edge<Stmt> edge : cfg.getInEdgesOf(node)) {
+                    Map<Var, Interval> predOut = outFacts.get(edge.getSource());
+                    if (predOut != null) {
+                        joinInto(transferEdge(edge, predOut), newIn);
+                    }
+                }
+            }
+            Map<Var, Interval> oldIn = inFacts.get(node);
+            // only widen at merges (which include all loop heads), as
+            // widening elsewhere would discard the refinements on branches
+            Map<Var, Interval> in = oldIn == null || cfg.getInEdgesOf(node).size() <= 1
+                    ? newIn : widen(oldIn, newIn);
+            if (in.equals(oldIn)) {
+                continue;
+            }
+            inFacts.put(node, in);
+            Map<Var, Interval> out = transferNode(node, in);
+            if (!out.equals(outFacts.put(node, out))) {
+                workList.addAll(cfg.getSuccsOf(node));
+            }
+        }
+        return inFacts;
+    }
+
+    private static Map<Var, Interval> newBoundaryFact(JMethod method) {
+        Map<Var, Interval> fact = Maps.newHybridMap();
+        for (Var param : method.getIR().getParams()) {
+            if (ConstantPropagation.canHoldInt(param)) {
+                fact.put(param, Interval.getTop());
+            } else if (param.getType() instanceof ArrayType) {
+                fact.put(param, Interval.getNonNegative());
+            }
+        }
+        return fact;
+    }
+
+    private static void joinInto(Map<Var, Interval> fact, Map<Var, Interval> target) {
+        fact.forEach((var, range) -> target.merge(var, range, Interval::join));
+    }
+
+    private static Map<Var, Interval> widen(
+            Map<Var, Interval> oldFact, Map<Var, Interval> newFact) {
+        Map<Var, Interval> result = Maps.newHybridMap(oldFact);
+        newFact.forEach((var, range) -> result.merge(var, range, Interval::widen));
+        return result;
+    }
+
+    private static Map<Var, Interval> transferNode(Stmt stmt, Map<Var, Interval> in) {
+        Optional<LValue> def = stmt.getDef();
+        if (def.isEmpty() || !(def.get() instanceof Var lhs)) {
+            return in;
+        }
+        Interval range;
+        if (ConstantPropagation.canHoldInt(lhs)) {
+            range = stmt instanceof DefinitionStmt<?, ?> defStmt
+                    ? evaluate(defStmt.getRValue(), in)
+                    : Interval.getTop();
+        } else if (lhs.getType() instanceof ArrayType) {
+            range = stmt instanceof DefinitionStmt<?, ?> defStmt
+                    ? evaluateLength(defStmt.getRValue(), in)
+                    : Interval.getNonNegative();
+        } else {
+            return in;
+        }
+        Map<Var, Interval> out = Maps.newHybridMap(in);
+        out.put(lhs, range);
+        return out;
+    }
+
+    private static Interval evaluate(RValue rValue, Map<Var, Interval> in) {
+        if (rValue instanceof IntLiteral literal) {
+            return Interval.of(literal.getValue());
+        } else if (rValue instanceof Var var
+                && ConstantPropagation.canHoldInt(var)) {
+            return get(in, var);
+        } else if (rValue instanceof ArrayLengthExp lengthExp) {
+            return get(in, lengthExp.getBase()).meet(Interval.getNonNegative());
+        } else if (rValue instanceof ArithmeticExp exp) {
+            Interval r1 = get(in, exp.getOperand1());
+            Interval r2 = get(in, exp.getOperand2());
+            switch (exp.getOperator()) {
+                case ADD:
+                    return r1.add(r2);
+                case SUB:
+                    return r1.sub(r2);
+                default:
+                    return Interval.getTop();
+            }
+        }
+        return Interval.getTop();
+    }
+
+    /**
+     * @return the range of the length of the array assigned by rValue.
+     */
+    private static Interval evaluateLength(RValue rValue, Map<Var, Interval> in) {
+        if (rValue instanceof NewArray newArray) {
+            return get(in, newArray.getLength()).meet(Interval.getNonNegative());
+        } else if (rValue instanceof Var var) {
+            return get(in, var);
+        }
+        return Interval.getNonNegative();
+    }
+
+    private static Map<Var, Interval> transferEdge(Edge<Stmt> edge, Map<Var, Interval> out) {
+        if (!(edge.getSource() instanceof If ifStmt)) {
+            return out;
+        }
+        ConditionExp cond = ifStmt.getCondition();
+        Var x = cond.getOperand1();
+        Var y = cond.getOperand2();
+        if (!ConstantPropagation.canHoldInt(x) || !ConstantPropagation.canHoldInt(y)) {
+            return out;
+        }
+        ConditionExp.Op op = cond.getOperator();
+        if (edge.getKind() == Edge.Kind.IF_FALSE) {
+            op = negate(op);
+        } else if (edge.getKind() != Edge.Kind.IF_TRUE) {
+            return out;
+        }
+        Interval rx = get(out, x);
+        Interval ry = get(out, y);
+        if (rx.isEmpty() || ry.isEmpty()) {
+            return out;
+        }
+        long min = Integer.MIN_VALUE, max = Integer.MAX_VALUE;
+        Interval nx, ny;
+        switch (op) {
+            case LT -> {
+                nx = rx.meet(Interval.of(min, ry.getUpper() - 1));
+                ny = ry.meet(Interval.of(rx.getLower() + 1, max));
+            }
+            case LE -> {
+                nx = rx.meet(Interval.of(min, ry.getUpper()));
+                ny = ry.meet(Interval.of(rx.getLower(), max));
+            }
+            case GT -> {
+                nx = rx.meet(Interval.of(ry.getLower() + 1, max));
+                ny = ry.meet(Interval.of(min, rx.getUpper() - 1));
+            }
+            case GE -> {
+                nx = rx.meet(Interval.of(ry.getLower(), max));
+                ny = ry.meet(Interval.of(min, rx.getUpper()));
+            }
+            case EQ -> {
+                nx = rx.meet(ry);
+                ny = nx;
+            }
+            default -> {
+                return out;
+            }
+        }
+        Map<Var, Interval> refined = Maps.newHybridMap(out);
+        refined.put(x, nx);
+        refined.put(y, x == y ? nx.meet(ny) : ny);
+        return refined;
+    }
+
+    private static ConditionExp.Op negate(ConditionExp.Op op) {
+        return switch (op) {
+            case EQ -> ConditionExp.Op.NE;
+            case NE -> ConditionExp.Op.EQ;
+            case LT -> ConditionExp.Op.GE;
+            case GE -> ConditionExp.Op.LT;
+            case GT -> ConditionExp.Op.LE;
+            case LE -> ConditionExp.Op.GT;
+        };
+    }
+
+    private static Interval get(Map<Var, Interval> fact, Var var) {
+        return fact.getOrDefault(var, Interval.getEmpty());
+    }
+}
@@ -25,20 +25,23 @@ package pascal.taie.analysis.dataflow.inter;
 import pascal.taie.World;
 import pascal.taie.analysis.dataflow.analysis.constprop.CPFact;
 import pascal.taie.analysis.dataflow.analysis.constprop.ConstantPropagation;
+import pascal.taie.analysis.dataflow.analysis.constprop.Interval;
 import pascal.taie.analysis.dataflow.analysis.constprop.Value;
+import pascal.taie.analysis.dataflow.fact.DataflowResult;
 import pascal.taie.analysis.graph.cfg.CFGBuilder;
 import pascal.taie.analysis.graph.icfg.CallEdge;
 import pascal.taie.analysis.graph.icfg.CallToReturnEdge;
+import pascal.taie.analysis.graph.icfg.ICFGEdge;
 import pascal.taie.analysis.graph.icfg.NormalEdge;
 import pascal.taie.analysis.graph.icfg.ReturnEdge;
 import pascal.taie.analysis.pta.PointerAnalysisResult;
-import pascal.taie.analysis.pta.core.heap.Obj;
 import pascal.taie.config.AnalysisConfig;
 import pascal.taie.ir.IR;
 import pascal.taie.ir.exp.*;
 import pascal.taie.ir.stmt.*;
 import pascal.taie.language.classes.JField;
 import pascal.taie.language.classes.JMethod;
+import pascal.taie.util.collection.Pair;
 
 import java.util.*;
 
@@ -52,6 +55,8 @@ public class InterConstantPropagation extends
 
     private final ConstantPropagation cp;
 
+    private AliasIndex aliasIndex;
+
     private Map<Var, List<StoreField>> aliasStoreField;
 
     private Map<Var, List<LoadField>> aliasLoadField;
@@ -60,6 +65,36 @@ public class InterConstantPropagation extends
 
     private Map<Var, List<StoreArray>> aliasStoreArray;
 
+    /**
+     * Static ranges of array indexes, used to prune array aliases whose
+     * indexes can never be equal, or null if option index-range is off.
+     */
+    private IndexRangeAnalysis indexRanges;
+
+    /**
+     * Map from array load to the aliased stores whose index range
+     * intersects the load's, built on first use.
+     */
+    private Map<LoadArray, List<StoreArray>> storesOfLoad;
+
+    /**
+     * Map from array store to the aliased loads whose index range
+     * intersects the store's, built on first use.
+     */
+    private Map<StoreArray, List<LoadArray>> loadsOfStore;
+
+    /**
+     * Map from static field to the statements that store it,
+     * built on first use.
+     */
+    private Map<JField, List<StoreField>> staticStoreFields;
+
+    /**
+     * (statement, variable) pairs demanded by the queries so far,
+     * see {@link #slice(Collection)}.
+     */
+    private final Set<Pair<Stmt, Var>> demands = new HashSet<>();
+
     // 这样做会丢失精度
     // class My {
     //     public static void main(String[] args) {
@@ -96,30 +131,49 @@ public class InterConstantPropagation extends
         PointerAnalysisResult pta = World.get().getResult(ptaId);
         // You can do initialization work here
 
+        aliasIndex = new AliasIndex(pta);
         aliasLoadField = new HashMap<>();
         aliasStoreField = new HashMap<>();
         aliasLoadArray = new HashMap<>();
         aliasStoreArray = new HashMap<>();
-
+        indexRanges = getOptions().getBooleanOrDefault("index-range", true)
+                ? new IndexRangeAnalysis() : null;
+        storesOfLoad = new HashMap<>();
+        loadsOfStore = new HashMap<>();
+
+        // 只有作为 field/array 访问的 base 的变量才需要别名信息,
+        // 其余变量既不会被查询, 也不会贡献任何语句
+        List<Var> bases = new ArrayList<>();
         for (Var var : pta.getVars()) {
-            aliasStoreField.put(var, new ArrayList<>());
-            aliasLoadField.put(var, new ArrayList<>());
-            aliasStoreArray.put(var, new ArrayList<>());
-            aliasLoadArray.put(var, new ArrayList<>());
-            for (Var other : pta.getVars()) {
-                for (Obj obj : pta.getPointsToSet(var)) {
-                    if (pta.getPointsToSet(other).contains(obj)) {
-                        aliasStoreField.get(var).addAll(other.getStoreFields());
-                        aliasLoadField.get(var).addAll(other.getLoadFields());
-                        aliasLoadArray.get(var).addAll(other.getLoadArrays());
-                        aliasStoreArray.get(var).addAll(other.getStoreArrays());
-                        break;
-                    }
+            if (isBase(var)) {
+                bases.add(var);
+            }
+        }
+        for (Var var : bases) {
+            for (Var other : bases) {
+                if (aliasIndex.mayAlias(var, other)) {
+                    addAll(aliasStoreField, var, other.getStoreFields());
+                    addAll(aliasLoadField, var, other.getLoadFields());
+                    addAll(aliasLoadArray, var, other.getLoadArrays());
+                    addAll(aliasStoreArray, var, other.getStoreArrays());
                 }
             }
         }
     }
 
+    private static boolean isBase(Var var) {
+        return !var.getStoreFields().isEmpty()
+                || !var.getLoadFields().isEmpty()
+                || !var.getStoreArrays().isEmpty()
+                || !var.getLoadArrays().isEmpty();
+    }
+
+    private static <T> void addAll(Map<Var, List<T>> map, Var base, List<T> stmts) {
+        if (!stmts.isEmpty()) {
+            map.computeIfAbsent(base, v -> new ArrayList<>()).addAll(stmts);
+        }
+    }
+
     @Override
     public boolean isForward() {
         return cp.isForward();
@@ -174,13 +228,10 @@ public class InterConstantPropagation extends
         Value res;
         if (exp instanceof StaticFieldAccess staticFieldAccess) {
             res = Value.getUndef();
-            for (Stmt stmt : icfg) {
-                if (stmt instanceof StoreField storeField
-                 && storeField.isStatic()
-                 && storeField.getFieldRef().resolve() == staticFieldAccess.getFieldRef().resolve()) {
-                    Value value = solver.getResult().getInFact(stmt).get(storeField.getRValue());
-                    res = cp.meetValue(res, value);
-                }
+            JField jField = staticFieldAccess.getFieldRef().resolve();
+            for (StoreField storeField : getStaticStores(jField)) {
+                Value value = solver.getResult().getInFact(storeField).get(storeField.getRValue());
+                res = cp.meetValue(res, value);
             }
         } else if (exp instanceof InstanceFieldAccess instanceFieldAccess) {
             res = Value.getUndef();
@@ -196,38 +247,260 @@ public class InterConstantPropagation extends
                 }
             }
         } else if (exp instanceof ArrayAccess arrayAccess) {
-            res = Value.getUndef();
             Var base = arrayAccess.getBase();
-            Value indexI = in.get(arrayAccess.getIndex());
+            Interval indexI = Interval.of(in.get(arrayAccess.getIndex()));
+            res = meetStoredValues(getStmtList(base, aliasStoreArray), indexI);
+        } else {
+            res = Value.getNAC();
+        }
+        return res;
+    }
 
-            List<StoreArray> storeArrays = getStmtList(base, aliasStoreArray);
-            for (StoreArray storeArray : storeArrays) {
-                ArrayAccess aliasArrayAccess = storeArray.getArrayAccess();
-                Value indexJ = solver.getResult().getInFact(storeArray).get(aliasArrayAccess.getIndex());
+    /**
+     * Evaluates array load with the aliased stores that survive
+     * the pruning by static index ranges.
+     */
+    private Value evaluateLoadArray(LoadArray loadArray, CPFact in) {
+        Var index = loadArray.getArrayAccess().getIndex();
+        Interval indexI = getIndexRange(loadArray, index, in.get(index));
+        return meetStoredValues(getAliasStores(loadArray), indexI);
+    }
 
-                if (isArrayIndexAlias(indexI, indexJ)) { // found alias
-                    Value value = solver.getResult().getInFact(storeArray).get(storeArray.getRValue());
-                    res = cp.meetValue(res, value);
-                }
+    private Value meetStoredValues(List<StoreArray> storeArrays, Interval indexI) {
+        Value res = Value.getUndef();
+        for (StoreArray storeArray : storeArrays) {
+            CPFact storeIn = solver.getResult().getInFact(storeArray);
+            Var index = storeArray.getArrayAccess().getIndex();
+            Interval indexJ = getIndexRange(storeArray, index, storeIn.get(index));
+            if (isArrayIndexAlias(indexI, indexJ)) { // found alias
+                res = cp.meetValue(res, storeIn.get(storeArray.getRValue()));
             }
-        } else {
-            res = Value.getNAC();
         }
         return res;
     }
 
-    private boolean isArrayIndexAlias(Value indexI, Value indexJ) {
-        boolean isAlias = false;
-        if (indexI.isConstant() && indexJ.isConstant() && indexI.getConstant() == indexJ.getConstant()) {
-            isAlias = true;
+    private List<StoreArray> getAliasStores(LoadArray loadArray) {
+        return storesOfLoad.computeIfAbsent(loadArray, load -> {
+            Interval range = getStaticRange(load);
+            List<StoreArray> stores = new ArrayList<>();
+            for (StoreArray store : getStmtList(
+                    load.getArrayAccess().getBase(), aliasStoreArray)) {
+                if (range.intersects(getStaticRange(store))) {
+                    stores.add(store);
+                }
+            }
+            return stores;
+        });
+    }
+
+    private List<LoadArray> getAliasLoads(StoreArray storeArray) {
+        return loadsOfStore.computeIfAbsent(storeArray, store -> {
+            Interval range = getStaticRange(store);
+            List<LoadArray> loads = new ArrayList<>();
+            for (LoadArray load : getStmtList(
+                    store.getArrayAccess().getBase(), aliasLoadArray)) {
+                if (range.intersects(getStaticRange(load))) {
+                    loads.add(load);
+                }
+            }
+            return loads;
+        });
+    }
+
+    private Interval getStaticRange(LoadArray loadArray) {
+        return getStaticRange(loadArray, loadArray.getArrayAccess().getIndex());
+    }
+
+    private Interval getStaticRange(StoreArray storeArray) {
+        return getStaticRange(storeArray, storeArray.getArrayAccess().getIndex());
+    }
+
+    private Interval getStaticRange(Stmt stmt, Var index) {
+        return indexRanges != null
+                ? indexRanges.getRange(stmt, index)
+                : Interval.getTop();
+    }
+
+    /**
+     * Converts the value of an array index to a range. The static range
+     * is only consulted for NAC, as a constant is already a single point.
+     */
+    private Interval getIndexRange(Stmt stmt, Var index, Value value) {
+        if (value.isNAC()) {
+            return getStaticRange(stmt, index);
+        }
+        return Interval.of(value);
+    }
+
+    private List<StoreField> getStaticStores(JField field) {
+        if (staticStoreFields == null) {
+            staticStoreFields = new HashMap<>();
+            for (Stmt stmt : icfg) {
+                if (stmt instanceof StoreField storeField && storeField.isStatic()) {
+                    staticStoreFields.computeIfAbsent(
+                            storeField.getFieldRef().resolve(), f -> new ArrayList<>())
+                            .add(storeField);
+                }
+            }
+        }
+        return staticStoreFields.getOrDefault(field, List.of());
+    }
+
+    /**
+     * The value read by a load may be written by the stores on the aliases
+     * of the load's base (or by the stores on the same static field).
+     *
+     * @return the stores whose values may be read by given statement.
+     */
+    private Collection<? extends Stmt> getDependencies(Stmt stmt) {
+        if (stmt instanceof LoadField loadField
+                && ConstantPropagation.canHoldInt(loadField.getLValue())) {
+            JField jField = loadField.getFieldRef().resolve();
+            if (loadField.isStatic()) {
+                return getStaticStores(jField);
+            }
+            Var base = ((InstanceFieldAccess) loadField.getFieldAccess()).getBase();
+            List<StoreField> deps = new ArrayList<>();
+            for (StoreField storeField : getStmtList(base, aliasStoreField)) {
+                if (!storeField.isStatic() && storeField.getFieldRef().resolve() == jField) {
+                    deps.add(storeField);
+                }
+            }
+            return deps;
+        } else if (stmt instanceof LoadArray loadArray
+                && ConstantPropagation.canHoldInt(loadArray.getLValue())) {
+            return getAliasStores(loadArray);
         }
-        if (indexI.isNAC() && (indexJ.isConstant() || indexJ.isNAC())) {
-            isAlias = true;
+        return List.of();
+    }
+
+    /**
+     * Demand-driven query mode: computes the value of {@code var} right
+     * before {@code stmt}, solving only the statements on the def-use
+     * chains that reach it. Partial results are memoized across queries.
+     */
+    public Value query(Stmt stmt, Var var) {
+        return solveOnDemand(slice(List.of(new Pair<>(stmt, var))))
+                .getInFact(stmt).get(var);
+    }
+
+    /**
+     * Batch version of {@link #query(Stmt, Var)}, which solves the slices
+     * of all targets together.
+     *
+     * @return map from each (statement, variable) target to its value.
+     */
+    public Map<Pair<Stmt, Var>, Value> query(Collection<Pair<Stmt, Var>> targets) {
+        DataflowResult<Stmt, CPFact> result = solveOnDemand(slice(targets));
+        Map<Pair<Stmt, Var>, Value> values = new LinkedHashMap<>();
+        targets.forEach(target -> values.put(target,
+                result.getInFact(target.first()).get(target.second())));
+        return values;
+    }
+
+    /**
+     * Extends the slice with the demands of given targets. A demand
+     * (s, v) asks for the value of v right before s. It is resolved on
+     * the in edges of s: a predecessor that defines v demands the
+     * variables it uses (and, for a load, the values written by its
+     * aliased stores), any other predecessor passes the demand on.
+     * A call site only leads into the callee when it defines v, and a
+     * method entry only leads to the call sites when v is a parameter,
+     * so the slice follows the chains of v instead of the whole program.
+     *
+     * @return the statements whose demands are new, i.e., the statements
+     * that need to be (re-)solved.
+     */
+    private Set<Stmt> slice(Collection<Pair<Stmt, Var>> targets) {
+        prepareOnDemand();
+        Set<Stmt> changed = new LinkedHashSet<>();
+        Deque<Pair<Stmt, Var>> stack = new ArrayDeque<>();
+        targets.forEach(target ->
+                demand(target.first(), target.second(), changed, stack));
+        while (!stack.isEmpty()) {
+            Pair<Stmt, Var> demand = stack.pop();
+            Stmt stmt = demand.first();
+            Var var = demand.second();
+            for (ICFGEdge<Stmt> edge : icfg.getInEdgesOf(stmt)) {
+                Stmt source = edge.getSource();
+                if (edge instanceof NormalEdge<Stmt>) {
+                    demandOut(source, var, changed, stack);
+                } else if (edge instanceof CallToReturnEdge<Stmt>) {
+                    // the definition of the call site is killed here,
+                    // and its value comes from the return edges
+                    if (!isDefinedBy(source, var)) {
+                        demand(source, var, changed, stack);
+                    }
+                } else if (edge instanceof ReturnEdge<Stmt> returnEdge) {
+                    if (isDefinedBy(returnEdge.getCallSite(), var)) {
+                        for (Var retVar : returnEdge.getReturnVars()) {
+                            demand(source, retVar, changed, stack);
+                        }
+                    }
+                } else if (edge instanceof CallEdge<Stmt> callEdge) {
+                    List<Var> params = callEdge.getCallee().getIR().getParams();
+                    int i = params.indexOf(var);
+                    if (i >= 0) {
+                        Var arg = ((Invoke) source).getInvokeExp().getArg(i);
+                        demand(source, arg, changed, stack);
+                    }
+                }
+            }
         }
-        if (indexJ.isNAC() && (indexI.isConstant() || indexI.isNAC())) {
-            isAlias = true;
+        return changed;
+    }
+
+    /**
+     * Demands the value of {@code var} right after {@code stmt}.
+     */
+    private void demandOut(Stmt stmt, Var var, Set<Stmt> changed,
+                           Deque<Pair<Stmt, Var>> stack) {
+        if (icfg.isCallSite(stmt) || !isDefinedBy(stmt, var)) {
+            demand(stmt, var, changed, stack);
+            return;
+        }
+        // stmt defines var, so demand what it is computed from
+        changed.add(stmt);
+        for (RValue use : stmt.getUses()) {
+            if (use instanceof Var v && ConstantPropagation.canHoldInt(v)) {
+                demand(stmt, v, changed, stack);
+            }
+        }
+        for (Stmt dep : getDependencies(stmt)) {
+            if (dep instanceof StoreField storeField) {
+                demand(dep, storeField.getRValue(), changed, stack);
+            } else if (dep instanceof StoreArray storeArray) {
+                demand(dep, storeArray.getRValue(), changed, stack);
+                demand(dep, storeArray.getArrayAccess().getIndex(), changed, stack);
+            }
+        }
+    }
+
+    private void demand(Stmt stmt, Var var, Set<Stmt> changed,
+                        Deque<Pair<Stmt, Var>> stack) {
+        if (!ConstantPropagation.canHoldInt(var)) {
+            // e.g., the value stored to an array of objects
+            changed.add(stmt);
+            return;
+        }
+        Pair<Stmt, Var> demand = new Pair<>(stmt, var);
+        if (demands.add(demand)) {
+            changed.add(stmt);
+            stack.push(demand);
         }
-        return isAlias;
+    }
+
+    private static boolean isDefinedBy(Stmt stmt, Var var) {
+        return stmt.getDef().filter(def -> def == var).isPresent();
+    }
+
+    /**
+     * Two array accesses may touch the same element if the ranges of
+     * their indexes overlap. Undefined indexes give empty ranges, which
+     * never alias.
+     */
+    private boolean isArrayIndexAlias(Interval indexI, Interval indexJ) {
+        return indexI.intersects(indexJ);
     }
 
     @Override
@@ -241,14 +514,16 @@ public class InterConstantPropagation extends
 
             Value evaluated;
             RValue rValue = defStmt.getRValue();
-            if (lValue instanceof Var && cp.canHoldInt((Var) lValue)) {
-                if (rValue instanceof StaticFieldAccess || rValue instanceof InstanceFieldAccess || rValue instanceof ArrayAccess) {
+            if (lValue instanceof Var && ConstantPropagation.canHoldInt((Var) lValue)) {
+                if (stmt instanceof LoadArray loadArray) {
+                    evaluated = evaluateLoadArray(loadArray, copy_in);
+                } else if (rValue instanceof StaticFieldAccess || rValue instanceof InstanceFieldAccess || rValue instanceof ArrayAccess) {
                     evaluated = evaluate(rValue, copy_in);
                 } else {
-                    evaluated = cp.evaluate(rValue, copy_in);
+                    evaluated = ConstantPropagation.evaluate(rValue, copy_in);
                 }
                 copy_in.update((Var) lValue, evaluated);
-            } else if (rValue instanceof Var && cp.canHoldInt((Var) rValue)) {
+            } else if (rValue instanceof Var && ConstantPropagation.canHoldInt((Var) rValue)) {
                 if (lValue instanceof InstanceFieldAccess instanceFieldAccess) {
                     Var base = instanceFieldAccess.getBase();
                     JField jField = instanceFieldAccess.getFieldRef().resolve();
@@ -270,12 +545,18 @@ public class InterConstantPropagation extends
                             }
                         }
                     }
-                } else if (lValue instanceof ArrayAccess arrayAccess) {
-                    Var base = arrayAccess.getBase();
-                    List<LoadArray> loadArrays = getStmtList(base, aliasLoadArray);
-
-                    for (LoadArray loadArray : loadArrays) {
-                        if (!solver.getWorkList().contains(loadArray)) {
+                } else if (stmt instanceof StoreArray storeArray) {
+                    // 只有下标可能相等的 load 才会读到这次写入的值
+                    Var index = storeArray.getArrayAccess().getIndex();
+                    Interval indexJ = getIndexRange(storeArray, index, copy_in.get(index));
+                    for (LoadArray loadArray : getAliasLoads(storeArray)) {
+                        CPFact loadIn = solver.getResult().getInFact(loadArray);
+                        if (loadIn == null || solver.getWorkList().contains(loadArray)) {
+                            continue;
+                        }
+                        Var indexVar = loadArray.getArrayAccess().getIndex();
+                        Interval indexI = getIndexRange(loadArray, indexVar, loadIn.get(indexVar));
+                        if (isArrayIndexAlias(indexI, indexJ)) {
                             solver.getWorkList().add(loadArray);
                         }
                     }
@@ -291,7 +572,8 @@ public class InterConstantPropagation extends
     @Override
     protected CPFact transferNormalEdge(NormalEdge<Stmt> edge, CPFact out) {
         // TODO - finish me
-        return out.copy();
+        // 普通边是恒等的, 直接返回 out, 求解器不会修改它
+        return out;
     }
 
     @Override
@@ -302,10 +584,40 @@ public class InterConstantPropagation extends
         return copy_out;
     }
 
+    /**
+     * Call edges to callees without int parameters and return edges to
+     * call sites without int results pass nothing, so they are skipped.
+     */
+    @Override
+    public boolean needTransferEdge(ICFGEdge<Stmt> edge) {
+        if (edge instanceof CallEdge<Stmt> callEdge) {
+            return countIntParams(callEdge.getCallee()) > 0;
+        } else if (edge instanceof ReturnEdge<Stmt> returnEdge) {
+            return returnEdge.getCallSite().getDef()
+                    .filter(def -> def instanceof Var var && ConstantPropagation.canHoldInt(var))
+                    .isPresent();
+        }
+        return true;
+    }
+
+    private static int countIntParams(JMethod method) {
+        int count = 0;
+        for (Var param : method.getIR().getParams()) {
+            if (ConstantPropagation.canHoldInt(param)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
     @Override
     protected CPFact transferCallEdge(CallEdge<Stmt> edge, CPFact callSiteOut) {
         // TODO - finish me
-        CPFact fact = new CPFact();
+        int nIntParams = countIntParams(edge.getCallee());
+        if (nIntParams == 0) {
+            return CPFact.empty();
+        }
+        CPFact fact = CPFact.newSmallFact(nIntParams);
         // TODO
         List<RValue> actual = edge.getSource().getUses();
         List<Var> params = edge.getCallee().getIR().getParams();
@@ -316,8 +628,10 @@ public class InterConstantPropagation extends
             offset = 1;
         }
         for (int i = 0; i < params.size(); i++) {
-            // 将参数设置为调用点给定的实参
-            fact.update(params.get(i), callSiteOut.get((Var) actual.get(i + offset)));
+            // 将参数设置为调用点给定的实参, 只有 int 参数才需要传递
+            if (ConstantPropagation.canHoldInt(params.get(i))) {
+                fact.update(params.get(i), callSiteOut.get((Var) actual.get(i + offset)));
+            }
         }
         return fact;
     }
@@ -325,7 +639,6 @@ public class InterConstantPropagation extends
     @Override
     protected CPFact transferReturnEdge(ReturnEdge<Stmt> edge, CPFact returnOut) {
         // TODO - finish me
-        CPFact fact = new CPFact();
         Optional<LValue> def = edge.getCallSite().getDef();
         if (def.isPresent()) {
             /**
@@ -353,10 +666,11 @@ public class InterConstantPropagation extends
                 returnValue = cp.meetValue(returnValue, returnOut.get(var));
             }
             // 设置调用点语句左边定义的变量值为函数的返回值(Exit nop的OUT里面)
+            CPFact fact = CPFact.newSmallFact(1);
             fact.update((Var) def.get(), returnValue);
             return fact;
         }
-        return fact;
+        return CPFact.empty();
     }
 }
 // TODO 遇到 storeXxx时,就直接把所有别名的 LoadXxx加入 workList会死循环吗? 提交上去倒是不会,是因为 LoadXxx如果 CPFact没有发生改变就不会加入后继?
\ No newline at end of file
@@ -68,7 +68,20 @@ public interface InterDataflowAnalysis<Node, Fact> {
      *
      * @param edge the ICFG edge that the transfer function is applied on.
      * @param out  the OUT fact of source node of the edge.
-     * @return the result of edge transfer function.
+     * @return the result of edge transfer function. For identity edges,
+     * the analysis may return {@code out} itself instead of a copy.
+     * The solver caches the result until {@code out} changes, and never
+     * modifies it, so it must only depend on the edge and {@code out}.
      */
     Fact transferEdge(ICFGEdge<Node> edge, Fact out);
+
+    /**
+     * @return true if the transfer of given edge may contribute to the
+     * fact of its target. The solver skips the edges for which this
+     * method returns false, e.g., the call edges that pass nothing the
+     * analysis cares about.
+     */
+    default boolean needTransferEdge(ICFGEdge<Node> edge) {
+        return true;
+    }
 }
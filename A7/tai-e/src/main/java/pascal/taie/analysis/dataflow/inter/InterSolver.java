@@ -24,9 +24,16 @@ package pascal.taie.analysis.dataflow.inter;
 
 import pascal.taie.analysis.dataflow.fact.DataflowResult;
 import pascal.taie.analysis.graph.icfg.ICFG;
+import pascal.taie.analysis.graph.icfg.ICFGEdge;
+import pascal.taie.util.collection.Maps;
 import pascal.taie.util.collection.SetQueue;
+import pascal.taie.util.collection.Sets;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -46,6 +53,30 @@ class InterSolver<Method, Node, Fact> {
 
     private Queue<Node> workList;
 
+    /**
+     * Nodes solved so far in demand-driven mode,
+     * or null if the solver covers the whole ICFG.
+     */
+    private Set<Node> scope;
+
+    /**
+     * Entry nodes of the entry methods, used in demand-driven mode.
+     */
+    private Set<Node> entries;
+
+    /**
+     * Cache of edge transfer results. The entries of the out edges of
+     * a node are invalidated when the OUT fact of the node changes.
+     * Edges whose transfer returns the OUT fact itself (identity edges)
+     * are never cached, as the live OUT fact is always up-to-date.
+     */
+    private final Map<ICFGEdge<Node>, Fact> edgeFacts = Maps.newMap();
+
+    /**
+     * Number of node transfers performed so far.
+     */
+    private int transferCount;
+
     InterSolver(InterDataflowAnalysis<Node, Fact> analysis,
                 ICFG<Method, Node> icfg) {
         this.analysis = analysis;
@@ -54,11 +85,72 @@ class InterSolver<Method, Node, Fact> {
 
     DataflowResult<Node, Fact> solve() {
         result = new DataflowResult<>();
+        scope = null;
+        edgeFacts.clear();
         initialize();
         doSolve();
         return result;
     }
 
+    /**
+     * Solves only the given slice of the ICFG, i.e., the nodes whose facts
+     * are needed to answer the queries of the analysis. Edges from nodes
+     * outside the slice are ignored, so the facts in the slice are only
+     * precise for what the slice was built for. The solved part is kept
+     * across calls: a later call initializes the nodes that are new to
+     * the slice and re-solves the given nodes, whose facts can only grow
+     * with the contributions of the newly added predecessors.
+     */
+    DataflowResult<Node, Fact> solveOnDemand(Collection<Node> slice) {
+        if (result == null) {
+            result = new DataflowResult<>();
+            workList = new LinkedList<>();
+            scope = Sets.newSet();
+            entries = icfg.entryMethods()
+                    .map(icfg::getEntryOf)
+                    .collect(Collectors.toSet());
+        } else if (scope == null) {
+            // the whole ICFG has been solved
+            return result;
+        }
+        List<Node> newNodes = new ArrayList<>();
+        for (Node node : slice) {
+            if (scope.add(node)) {
+                newNodes.add(node);
+            }
+        }
+        initializeOnDemand(newNodes);
+        for (Node node : slice) {
+            if (!entries.contains(node) && !workList.contains(node)) {
+                workList.add(node);
+            }
+        }
+        doSolve();
+        return result;
+    }
+
+    /**
+     * @return the number of nodes that have been solved so far.
+     */
+    int getSolvedNodeCount() {
+        if (scope != null) {
+            return scope.size();
+        }
+        int count = 0;
+        for (Node ignored : icfg) {
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of node transfers performed so far, which
+     * measures the work done by the solver.
+     */
+    int getTransferCount() {
+        return transferCount;
+    }
+
     DataflowResult<Node, Fact> getResult() {
         return result;
     }
@@ -91,19 +183,60 @@ class InterSolver<Method, Node, Fact> {
         }
     }
 
+    private void initializeOnDemand(List<Node> nodes) {
+        for (Node node : nodes) {
+            if (entries.contains(node)) {
+                result.setInFact(node, analysis.newBoundaryFact(node));
+                result.setOutFact(node, analysis.newBoundaryFact(node));
+            } else {
+                result.setInFact(node, analysis.newInitialFact());
+                result.setOutFact(node, analysis.newInitialFact());
+            }
+        }
+    }
+
+    private boolean inScope(Node node) {
+        return scope == null || scope.contains(node);
+    }
+
+    /**
+     * @return the result of edge transfer on given edge, which is
+     * computed at most once per change of the OUT fact of edge source.
+     */
+    private Fact getEdgeFact(ICFGEdge<Node> edge) {
+        Fact fact = edgeFacts.get(edge);
+        if (fact == null) {
+            Fact out = result.getOutFact(edge.getSource());
+            fact = analysis.transferEdge(edge, out);
+            if (fact != out) {
+                edgeFacts.put(edge, fact);
+            }
+        }
+        return fact;
+    }
+
     private void doSolve() {
         // TODO - finish me
         while (!workList.isEmpty()) {
             Node B = workList.poll();
+            if (!inScope(B)) {
+                // in demand-driven mode, the analysis may request to
+                // re-analyze nodes that are not in the slice
+                continue;
+            }
             // 在计算一个节点的 IN fact 时，过程间求解器需要对传入的 edge 和前驱们的 OUT facts 应用 edge transfer 函数（transferEdge）
             icfg.getInEdgesOf(B).forEach(edge -> {
-                Fact outP = result.getOutFact(edge.getSource());
-                analysis.meetInto(analysis.transferEdge(edge, outP), result.getInFact(B));
+                if (inScope(edge.getSource())
+                        && analysis.needTransferEdge(edge)) {
+                    analysis.meetInto(getEdgeFact(edge), result.getInFact(B));
+                }
             });
+            ++transferCount;
             boolean outChangeOccur = analysis.transferNode(B, result.getInFact(B), result.getOutFact(B));
             if (outChangeOccur) {
+                icfg.getOutEdgesOf(B).forEach(edgeFacts::remove);
                 icfg.getSuccsOf(B).forEach(S -> {
-                    if (!workList.contains(S)) {
+                    if (inScope(S) && !workList.contains(S)) {
                         workList.add(S);
                     }
                 });
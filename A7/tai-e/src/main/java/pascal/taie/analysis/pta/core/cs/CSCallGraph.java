@@ -31,10 +31,13 @@ import pascal.taie.analysis.pta.core.cs.element.CSMethod;
 import pascal.taie.ir.stmt.Invoke;
 import pascal.taie.ir.stmt.Stmt;
 import pascal.taie.language.classes.JMethod;
+import pascal.taie.util.collection.Maps;
 import pascal.taie.util.collection.Sets;
 import pascal.taie.util.collection.Views;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Stream;
 
@@ -45,6 +48,18 @@ public class CSCallGraph extends AbstractCallGraph<CSCallSite, CSMethod> {
 
     private final CSManager csManager;
 
+    /**
+     * Map from method to the call sites in it, which are collected
+     * once for all contexts of the method.
+     */
+    private final Map<JMethod, List<Invoke>> invokes = Maps.newConcurrentMap();
+
+    /**
+     * Map from CS method to the CS call sites in it, which are created
+     * on first request.
+     */
+    private final Map<CSMethod, Set<CSCallSite>> csCallSites = Maps.newConcurrentMap();
+
     public CSCallGraph(CSManager csManager) {
         this.csManager = csManager;
     }
@@ -105,16 +120,26 @@ public class CSCallGraph extends AbstractCallGraph<CSCallSite, CSMethod> {
 
     @Override
     public Set<CSCallSite> getCallSitesIn(CSMethod csMethod) {
-        JMethod method = csMethod.getMethod();
-        Context context = csMethod.getContext();
-        Set<CSCallSite> callSites = Sets.newHybridOrderedSet();
-        for (Stmt s : method.getIR()) {
-            if (s instanceof Invoke) {
-                CSCallSite csCallSite = csManager.getCSCallSite(context, (Invoke) s);
-                callSites.add(csCallSite);
-            }
+        Set<CSCallSite> callSites = csCallSites.get(csMethod);
+        if (callSites == null) {
+            callSites = csCallSites.computeIfAbsent(csMethod, m -> {
+                Context context = m.getContext();
+                Set<CSCallSite> result = Sets.newHybridOrderedSet();
+                for (Invoke invoke : getInvokesIn(m.getMethod())) {
+                    result.add(csManager.getCSCallSite(context, invoke));
+                }
+                return Collections.unmodifiableSet(result);
+            });
         }
-        return Collections.unmodifiableSet(callSites);
+        return callSites;
+    }
+
+    private List<Invoke> getInvokesIn(JMethod method) {
+        return invokes.computeIfAbsent(method, m -> m.getIR()
+                .stmts()
+                .filter(s -> s instanceof Invoke)
+                .map(s -> (Invoke) s)
+                .toList());
     }
 
     @Override
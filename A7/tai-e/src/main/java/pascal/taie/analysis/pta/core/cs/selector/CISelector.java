@@ -35,23 +35,25 @@ import pascal.taie.language.classes.JMethod;
  */
 public class CISelector implements ContextSelector {
 
+    private final Context emptyContext = ListContext.newTrie();
+
     @Override
     public Context getEmptyContext() {
-        return ListContext.make();
+        return emptyContext;
     }
 
     @Override
     public Context selectContext(CSCallSite callSite, JMethod callee) {
-        return getEmptyContext();
+        return ListContext.make(callSite.getContext());
     }
 
     @Override
     public Context selectContext(CSCallSite callSite, CSObj recv, JMethod callee) {
-        return getEmptyContext();
+        return ListContext.make(callSite.getContext());
     }
 
     @Override
     public Context selectHeapContext(CSMethod method, Obj obj) {
-        return getEmptyContext();
+        return ListContext.make(method.getContext());
     }
 }
@@ -0,0 +1,80 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.inter;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pascal.taie.World;
+import pascal.taie.analysis.Tests;
+import pascal.taie.analysis.pta.PointerAnalysisResult;
+import pascal.taie.analysis.pta.core.heap.Obj;
+import pascal.taie.ir.exp.Var;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class AliasIndexTest {
+
+    private static final String CLASS_PATH = "src/test/resources/dataflow/constprop/alias";
+
+    /**
+     * Checks that the lazily projected alias queries agree with the
+     * intersection of the flattened points-to sets for every pair of
+     * variables, and that repeated (cached) queries give the same answer.
+     */
+    void test(String inputClass) {
+        Tests.test(inputClass, CLASS_PATH, InterConstantPropagation.ID,
+                "edge-refine:false;alias-aware:true;pta:cspta",
+                "-a", "cspta=cs:2-obj", "-a", "cg=algorithm:cspta");
+        PointerAnalysisResult pta = World.get().getResult("cspta");
+        AliasIndex aliasIndex = new AliasIndex(pta);
+        List<Var> vars = List.copyOf(pta.getVars());
+        for (Var v1 : vars) {
+            Set<Obj> pts1 = pta.getPointsToSet(v1);
+            for (Var v2 : vars) {
+                boolean expected = !Collections.disjoint(
+                        pts1, pta.getPointsToSet(v2));
+                Assert.assertEquals("mayAlias(" + v1 + ", " + v2 + ")",
+                        expected, aliasIndex.mayAlias(v1, v2));
+                Assert.assertEquals("mayAlias(" + v2 + ", " + v1 + ")",
+                        expected, aliasIndex.mayAlias(v2, v1));
+            }
+        }
+    }
+
+    @Test
+    public void testArray() {
+        test("Array");
+    }
+
+    @Test
+    public void testInstanceField() {
+        test("InstanceField");
+    }
+
+    @Test
+    public void testObjSens() {
+        test("ObjSens");
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.inter;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pascal.taie.analysis.Tests;
+import pascal.taie.analysis.dataflow.analysis.constprop.CPFact;
+import pascal.taie.analysis.dataflow.fact.DataflowResult;
+import pascal.taie.config.AnalysisConfig;
+import pascal.taie.ir.stmt.Stmt;
+
+public class IndexRangeTest {
+
+    private static final String CLASS_PATH = "src/test/resources/dataflow/constprop/alias";
+
+    /**
+     * Compares the runs with and without static index ranges: the ranges
+     * should never cost extra node transfers (as fewer loads are
+     * re-enqueued by array stores), and should give fewer NACs.
+     */
+    void test(String inputClass) {
+        // the run only builds the world (e.g., the ICFG and pointer analysis)
+        // for the analyses below, as ArrayRanges has no expected file
+        Tests.run(inputClass, CLASS_PATH, InterConstantPropagation.ID,
+                "edge-refine:false;alias-aware:true;pta:cspta",
+                "-a", "cspta=cs:2-obj", "-a", "cg=algorithm:cspta");
+        InterConstantPropagation withRanges = newAnalysis(true);
+        DataflowResult<Stmt, CPFact> result1 = analyze(withRanges);
+        InterConstantPropagation withoutRanges = newAnalysis(false);
+        DataflowResult<Stmt, CPFact> result2 = analyze(withoutRanges);
+        int transfers1 = withRanges.solver.getTransferCount();
+        int transfers2 = withoutRanges.solver.getTransferCount();
+        Assert.assertTrue("transfers with ranges: " + transfers1
+                        + ", without ranges: " + transfers2,
+                transfers1 <= transfers2);
+        int nacs1 = countNACs(withRanges, result1);
+        int nacs2 = countNACs(withoutRanges, result2);
+        Assert.assertTrue("NACs with ranges: " + nacs1
+                + ", without ranges: " + nacs2, nacs1 < nacs2);
+    }
+
+    private static InterConstantPropagation newAnalysis(boolean indexRange) {
+        return new InterConstantPropagation(
+                new AnalysisConfig(InterConstantPropagation.ID,
+                        "edge-refine", false, "alias-aware", true,
+                        "pta", "cspta", "index-range", indexRange));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static DataflowResult<Stmt, CPFact> analyze(
+            InterConstantPropagation analysis) {
+        return (DataflowResult<Stmt, CPFact>) analysis.analyze();
+    }
+
+    private static int countNACs(InterConstantPropagation analysis,
+                                 DataflowResult<Stmt, CPFact> result) {
+        int[] count = { 0 };
+        for (Stmt stmt : analysis.icfg) {
+            if (analysis.icfg.getContainingMethodOf(stmt)
+                    .getDeclaringClass().isApplication()) {
+                result.getOutFact(stmt).forEach((var, value) -> {
+                    if (value.isNAC()) {
+                        ++count[0];
+                    }
+                });
+            }
+        }
+        return count[0];
+    }
+
+    @Test
+    public void testArrayRanges() {
+        test("ArrayRanges");
+    }
+}
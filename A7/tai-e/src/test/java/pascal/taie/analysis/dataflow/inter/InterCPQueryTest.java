@@ -0,0 +1,105 @@
+/*
+ * Tai-e: A Static Analysis Framework for Java
+ *
+ * Copyright (C) 2022 Tian Tan <tiantan@nju.edu.cn>
+ * Copyright (C) 2022 Yue Li <yueli@nju.edu.cn>
+ *
+ * This file is part of Tai-e.
+ *
+ * Tai-e is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * Tai-e is distributed in the hope that it will be useful,but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Tai-e. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pascal.taie.analysis.dataflow.inter;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pascal.taie.World;
+import pascal.taie.analysis.Tests;
+import pascal.taie.analysis.dataflow.analysis.constprop.CPFact;
+import pascal.taie.analysis.dataflow.analysis.constprop.ConstantPropagation;
+import pascal.taie.analysis.dataflow.fact.DataflowResult;
+import pascal.taie.analysis.graph.icfg.ICFG;
+import pascal.taie.analysis.graph.icfg.ICFGBuilder;
+import pascal.taie.config.AnalysisConfig;
+import pascal.taie.ir.exp.RValue;
+import pascal.taie.ir.exp.Var;
+import pascal.taie.ir.stmt.Stmt;
+import pascal.taie.language.classes.JMethod;
+
+public class InterCPQueryTest {
+
+    private static final String CLASS_PATH = "src/test/resources/dataflow/constprop/alias";
+
+    /**
+     * Checks that demand-driven queries agree with the exhaustive analysis
+     * on every int variable used by the application statements, and that
+     * a single query solves only a part of the ICFG.
+     */
+    void test(String inputClass) {
+        Tests.test(inputClass, CLASS_PATH, InterConstantPropagation.ID,
+                "edge-refine:false;alias-aware:true;pta:cspta",
+                "-a", "cspta=cs:2-obj", "-a", "cg=algorithm:cspta");
+        DataflowResult<Stmt, CPFact> expected =
+                World.get().getResult(InterConstantPropagation.ID);
+        ICFG<JMethod, Stmt> icfg = World.get().getResult(ICFGBuilder.ID);
+        InterConstantPropagation ipcp = new InterConstantPropagation(
+                new AnalysisConfig(InterConstantPropagation.ID,
+                        "edge-refine", false, "alias-aware", true, "pta", "cspta"));
+        int nNodes = 0;
+        for (Stmt ignored : icfg) {
+            ++nNodes;
+        }
+        boolean first = true;
+        for (Stmt stmt : icfg) {
+            if (!icfg.getContainingMethodOf(stmt)
+                    .getDeclaringClass().isApplication()) {
+                continue;
+            }
+            for (RValue use : stmt.getUses()) {
+                if (use instanceof Var var
+                        && ConstantPropagation.canHoldInt(var)) {
+                    Assert.assertEquals(stmt + ": " + var,
+                            expected.getInFact(stmt).get(var),
+                            ipcp.query(stmt, var));
+                    if (first) {
+                        int solved = ipcp.solver.getSolvedNodeCount();
+                        Assert.assertTrue("solved " + solved + " of "
+                                + nNodes + " nodes", solved < nNodes);
+                        first = false;
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testArray() {
+        test("Array");
+    }
+
+    @Test
+    public void testInstanceField() {
+        test("InstanceField");
+    }
+
+    @Test
+    public void testInterprocedural2() {
+        test("Interprocedural2");
+    }
+
+    @Test
+    public void testStaticField() {
+        test("StaticField");
+    }
+}
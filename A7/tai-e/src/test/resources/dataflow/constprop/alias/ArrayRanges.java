@@ -0,0 +1,29 @@
+class ArrayRanges {
+
+    public static void main(String[] args) {
+        shortLoop();
+        shortLoopNAC();
+    }
+
+    static void shortLoop() {
+        int[] a = new int[5];
+        int[] b = new int[3];
+        for (int i = 0; i < b.length; ++i) {
+            a[i] = 666;
+        }
+        a[4] = 777;
+        int x = a[1];
+        int y = a[4];
+    }
+
+    static void shortLoopNAC() {
+        int[] a = new int[5];
+        int[] b = new int[3];
+        for (int i = 0; i < b.length; ++i) {
+            a[i] = i;
+        }
+        a[4] = 777;
+        int x = a[1];
+        int y = a[4];
+    }
+}
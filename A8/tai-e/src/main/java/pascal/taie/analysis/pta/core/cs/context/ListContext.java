@@ -24,78 +24,172 @@ package pascal.taie.analysis.pta.core.cs.context;
 
 import pascal.taie.util.AnalysisException;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * List-based contexts. Each context is represented by a list of context elements.
+ * <p>
+ * Contexts are hash-consed: each context is a node in a trie, whose parent
+ * is the context without its last element, so creating a context that has
+ * been created before allocates nothing but looks up the trie. Each context
+ * has a unique id in its trie, and equal contexts are the same instance.
+ * <p>
+ * Each context selector starts its own trie by {@link #newTrie()}, and
+ * makes the contexts in the trie of the contexts it selects from, so all
+ * contexts of one analysis are in one trie, which is reclaimed together
+ * with the result of the analysis.
  *
  * @param <T> type of context elements
  */
 public class ListContext<T> implements Context {
 
     /**
-     * The empty context.
+     * The context without the last element of this context,
+     * or null if this context is empty.
      */
-    private static final ListContext<?> EMPTY_CONTEXT = new ListContext<>(List.of());
+    private final ListContext<T> parent;
 
     /**
-     * List of elements in the context.
+     * The empty context of the trie of this context.
      */
-    private final List<T> elements;
+    private final ListContext<T> root;
 
-    private ListContext(List<T> elements) {
+    /**
+     * Counter for the ids of the contexts in the trie, or null
+     * if this context is not the root.
+     */
+    private final AtomicInteger counter;
+
+    /**
+     * Elements in the context.
+     */
+    private final Object[] elements;
+
+    private final int id;
+
+    private final int hashCode;
+
+    /**
+     * Map from an element to the context that appends the element
+     * to this context. It is created when the first child is created,
+     * as most contexts, e.g., the ones of the limit length, are leaves.
+     */
+    private volatile ConcurrentMap<Object, ListContext<T>> children;
+
+    private ListContext(ListContext<T> parent, Object[] elements) {
+        this.parent = parent;
         this.elements = elements;
+        if (parent == null) {
+            this.root = this;
+            this.counter = new AtomicInteger();
+        } else {
+            this.root = parent.root;
+            this.counter = null;
+        }
+        this.id = root.counter.getAndIncrement();
+        // ids are consecutive, so we spread them for hash tables
+        this.hashCode = id * 0x9E3779B9;
     }
 
     /**
-     * @return an empty context.
+     * @return the empty context of a new trie. The contexts made in the
+     * trie are never equal to the ones of other tries, and their ids
+     * start from 0.
      */
-    public static Context make() {
-        return EMPTY_CONTEXT;
+    public static Context newTrie() {
+        return new ListContext<>(null, new Object[0]);
     }
 
     /**
-     * @return a context that consists of given context elements.
+     * @return a context that consists of given context elements, in the
+     * trie of context {@code base}. Contexts are interned in the trie
+     * keyed by (parent, element), thus equal contexts are always the
+     * same instance.
      */
     @SafeVarargs
-    public static <T> Context make(T... elements) {
-        return elements.length == 0 ?
-                EMPTY_CONTEXT : new ListContext<>(List.of(elements));
+    @SuppressWarnings("unchecked")
+    public static <T> Context make(Context base, T... elements) {
+        ListContext<T> context = ((ListContext<T>) base).root;
+        for (T elem : elements) {
+            context = context.append(elem);
+        }
+        return context;
+    }
+
+    private ListContext<T> append(T elem) {
+        ConcurrentMap<Object, ListContext<T>> children = getChildren();
+        ListContext<T> child = children.get(elem);
+        if (child == null) {
+            child = children.computeIfAbsent(elem, e -> {
+                Object[] elems = Arrays.copyOf(elements, elements.length + 1);
+                elems[elements.length] = e;
+                return new ListContext<>(this, elems);
+            });
+        }
+        return child;
+    }
+
+    private ConcurrentMap<Object, ListContext<T>> getChildren() {
+        ConcurrentMap<Object, ListContext<T>> result = children;
+        if (result == null) {
+            synchronized (this) {
+                result = children;
+                if (result == null) {
+                    result = new ConcurrentHashMap<>();
+                    children = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the unique id of this context in its trie.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the context without the last element of this context,
+     * or null if this context is empty.
+     */
+    public ListContext<T> getParent() {
+        return parent;
     }
 
     @Override
     public int getLength() {
-        return elements.size();
+        return elements.length;
     }
 
     @Override
     public Object getElementAt(int i) {
-        if (i >= elements.size()) {
+        if (i >= elements.length) {
             throw new AnalysisException(
                     "Context " + this + " doesn't have " + i + "-th element");
         }
-        return elements.get(i);
+        return elements[i];
     }
 
+    /**
+     * Contexts are interned, so equality is identity.
+     */
     @Override
     public boolean equals(Object o) {
-        if (this == o) {
-            return true;
-        }
-        if (o == null || getClass() != o.getClass()) {
-            return false;
-        }
-        ListContext<?> that = (ListContext<?>) o;
-        return elements.equals(that.elements);
+        return this == o;
     }
 
     @Override
     public int hashCode() {
-        return elements.hashCode();
+        return hashCode;
     }
 
     @Override
     public String toString() {
-        return elements.toString();
+        return Arrays.toString(elements);
     }
 }
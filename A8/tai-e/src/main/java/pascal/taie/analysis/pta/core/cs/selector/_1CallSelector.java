@@ -35,9 +35,11 @@ import pascal.taie.language.classes.JMethod;
  */
 public class _1CallSelector implements ContextSelector {
 
+    private final Context emptyContext = ListContext.newTrie();
+
     @Override
     public Context getEmptyContext() {
-        return ListContext.make();
+        return emptyContext;
     }
 
 // 在调用点敏感中，对静态方法选取上下文的规则和实例方法的相同，
@@ -52,7 +54,7 @@ public class _1CallSelector implements ContextSelector {
     @Override
     public Context selectContext(CSCallSite callSite, CSObj recv, JMethod callee) {
         // TODO - finish me
-        return ListContext.make(callSite.getCallSite());
+        return ListContext.make(callSite.getContext(), callSite.getCallSite());
     }
 // 对每个 k层的 context selector，其堆上下文（heap context）的层数为 k-1 ，
 // 举例来说，对一层调用点敏感（1-call-site sensitivity），堆上下文的层数为 0（即没有堆上下文）；
@@ -60,6 +62,6 @@ public class _1CallSelector implements ContextSelector {
     @Override
     public Context selectHeapContext(CSMethod method, Obj obj) {
         // TODO - finish me
-        return getEmptyContext();
+        return ListContext.make(method.getContext());
     }
 }
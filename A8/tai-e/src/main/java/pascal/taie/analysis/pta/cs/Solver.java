@@ -48,14 +48,8 @@ import pascal.taie.config.AnalysisOptions;
 import pascal.taie.ir.exp.InvokeInstanceExp;
 import pascal.taie.ir.exp.InvokeStatic;
 import pascal.taie.ir.exp.Var;
-import pascal.taie.ir.proginfo.MethodRef;
-import pascal.taie.ir.stmt.Copy;
 import pascal.taie.ir.stmt.Invoke;
-import pascal.taie.ir.stmt.LoadField;
-import pascal.taie.ir.stmt.New;
 import pascal.taie.ir.stmt.StmtVisitor;
-import pascal.taie.ir.stmt.StoreField;
-import pascal.taie.language.classes.JField;
 import pascal.taie.language.classes.JMethod;
 import pascal.taie.language.type.Type;
 
@@ -71,6 +65,12 @@ public class Solver {
 
     private final ContextSelector contextSelector;
 
+    /**
+     * Whether to filter the objects propagated to each pointer by
+     * the type of the pointer, enabled by option "type-filter".
+     */
+    private final boolean typeFiltering;
+
     private CSManager csManager;
 
     private CSCallGraph callGraph;
@@ -79,6 +79,10 @@ public class Solver {
 
     private WorkList workList;
 
+    private StmtIndex stmtIndex;
+
+    private TypeFilter typeFilter;
+
     private TaintAnalysiss taintAnalysis;
 
     private PointerAnalysisResult result;
@@ -88,6 +92,7 @@ public class Solver {
         this.options = options;
         this.heapModel = heapModel;
         this.contextSelector = contextSelector;
+        this.typeFiltering = options.getBooleanOrDefault("type-filter", false);
     }
 
     public CSCallGraph getCallGraph(){
@@ -117,6 +122,9 @@ public class Solver {
         callGraph = new CSCallGraph(csManager);
         pointerFlowGraph = new PointerFlowGraph();
         workList = new WorkList();
+        stmtIndex = new StmtIndex();
+        typeFilter = typeFiltering
+                ? new TypeFilter(World.get().getTypeSystem()) : null;
         taintAnalysis = new TaintAnalysiss(this);
         // process program entry, i.e., main method
         Context defContext = contextSelector.getEmptyContext();
@@ -133,57 +141,44 @@ public class Solver {
         // TODO - finish me
         if (callGraph.addReachableMethod(csMethod)) {
             Context c = csMethod.getContext();
-            csMethod.getMethod().getIR().forEach(stmt -> {
-                if (stmt instanceof New newStmt) {
-                    // x = new T();
-                    // 你可以使用 HeapModel 的 getObj(New) 方法来获得与它对应的抽象对象（即 Obj）。因为我们采用了第 8 讲课件第 44 页中介绍的创建点抽象，所以该方法为每个 New 语句返回一个唯一的抽象对象。
-                    Var x = newStmt.getLValue();
-                    Obj newT = heapModel.getObj(newStmt);
-                    // 堆上下文不一定就使用方法的上下文,需要用 ContextSelector选择
-                    Context heapContext = contextSelector.selectHeapContext(csMethod, newT);
-                    CSObj csObj = csManager.getCSObj(heapContext, newT);
-                    workList.addEntry(csManager.getCSVar(c, x), PointsToSetFactory.make(csObj));
-                } else if (stmt instanceof Copy copyStmt) {
-                    // x = y;
-                    Var x = copyStmt.getRValue();
-                    Var y = copyStmt.getLValue();
-                    addPFGEdge(csManager.getCSVar(c, x), csManager.getCSVar(c, y)); // source, target
-                } else if (stmt instanceof StoreField storeFieldStmt) {
-                    // x.f = y;
-                    JField f = storeFieldStmt.getFieldRef().resolve();
-                    Var y = storeFieldStmt.getRValue();
-                    // 这两个类也提供了 isStatic() 方法来检查一个 LoadField/StoreField 语句是 load/store 静态字段还是实例字段
-                    // 静态字段的处理很简单：我们只需要在静态字段和变量之间传值。TODO 怎么没有静态变量之间的操作
-                    if (f.isStatic()) {
-                        addPFGEdge(csManager.getCSVar(c, y), csManager.getStaticField(f)); // source, target
-                    }
-                } else if (stmt instanceof LoadField loadFieldStmt) {
-                    // y = x.f;
-                    // TODO resolve干了什么?
-                    JField f = loadFieldStmt.getFieldRef().resolve();
-                    Var y = loadFieldStmt.getLValue();
-                    if (f.isStatic()) {
-                        addPFGEdge(csManager.getStaticField(f), csManager.getCSVar(c, y));
-                    }
-                } else if (stmt instanceof Invoke l) {
-                    // 只处理 static调用,因为 static调用不需要 receive object
-                    if (l.isStatic()) {
-                        // r = T.m(a1,...,an)
-                        MethodRef methodRef = l.getMethodRef();
-                        JMethod m = methodRef.getDeclaringClass().getDeclaredMethod(methodRef.getSubsignature());
-                        // Select(c,l,c':oi)
-                        // 根据调用点的信息(上下文,接受对象)选择目标方法的上下文 ct
-                        CSCallSite csCallSite = csManager.getCSCallSite(c, l);
-                        Context ct = contextSelector.selectContext(csCallSite, m);
-                        CSMethod ctMethod = csManager.getCSMethod(ct, m);
-                        // 检查调用边是否已经添加过
-                        // TODO 视频中有提到为什么会重复添加 (p10 1:03)
-                        if (callGraph.addEdge(new Edge<>(CallGraphs.getCallKind(l), csCallSite, ctMethod))) {
-                            addReachable(ctMethod);
-                            Set<Obj> taints = taintAnalysis.getSourceTaintObjs(m, l);
-                            addCallEdge(null, ctMethod, l, c, taints);
-                        }
-                    }
+            StmtIndex.MethodStmts stmts = stmtIndex.getMethodStmts(csMethod.getMethod());
+            stmts.getNews().forEach(newStmt -> {
+                // x = new T();
+                // 你可以使用 HeapModel 的 getObj(New) 方法来获得与它对应的抽象对象（即 Obj）。因为我们采用了第 8 讲课件第 44 页中介绍的创建点抽象，所以该方法为每个 New 语句返回一个唯一的抽象对象。
+                Var x = newStmt.getLValue();
+                Obj newT = heapModel.getObj(newStmt);
+                // 堆上下文不一定就使用方法的上下文,需要用 ContextSelector选择
+                Context heapContext = contextSelector.selectHeapContext(csMethod, newT);
+                CSObj csObj = csManager.getCSObj(heapContext, newT);
+                workList.addEntry(csManager.getCSVar(c, x), PointsToSetFactory.make(csObj));
+            });
+            stmts.getCopies().forEach(copyStmt -> {
+                // x = y;
+                Var x = copyStmt.getRValue();
+                Var y = copyStmt.getLValue();
+                addPFGEdge(csManager.getCSVar(c, x), csManager.getCSVar(c, y)); // source, target
+            });
+            // 静态字段的处理很简单：我们只需要在静态字段和变量之间传值。
+            stmts.getStaticStores().forEach(store -> // T.f = y;
+                    addPFGEdge(csManager.getCSVar(c, store.var()), csManager.getStaticField(store.field())));
+            stmts.getStaticLoads().forEach(load -> // y = T.f;
+                    addPFGEdge(csManager.getStaticField(load.field()), csManager.getCSVar(c, load.var())));
+            // 只处理 static调用,因为 static调用不需要 receive object
+            stmts.getStaticCalls().forEach(call -> {
+                // r = T.m(a1,...,an)
+                Invoke l = call.invoke();
+                JMethod m = call.callee();
+                // Select(c,l,c':oi)
+                // 根据调用点的信息(上下文,接受对象)选择目标方法的上下文 ct
+                CSCallSite csCallSite = csManager.getCSCallSite(c, l);
+                Context ct = contextSelector.selectContext(csCallSite, m);
+                CSMethod ctMethod = csManager.getCSMethod(ct, m);
+                // 检查调用边是否已经添加过
+                // TODO 视频中有提到为什么会重复添加 (p10 1:03)
+                if (callGraph.addEdge(new Edge<>(CallGraphs.getCallKind(l), csCallSite, ctMethod))) {
+                    addReachable(ctMethod);
+                    Set<Obj> taints = taintAnalysis.getSourceTaintObjs(m, l);
+                    addCallEdge(null, ctMethod, l, c, taints);
                 }
             });
         }
@@ -296,12 +291,6 @@ public class Solver {
         }
     }
 
-    private <T> Set<T> getSetDifference(Set<T> x, Set<T> y) {
-        Set<T> diff = new HashSet<>(x);
-        diff.removeAll(y);
-        return diff;
-    }
-
     /**
      * Processes work-list entries until the work-list is empty.
      */
@@ -319,6 +308,7 @@ public class Solver {
             if (n instanceof CSVar cx) {
                 Var x = cx.getVar();
                 Context c = cx.getContext();
+                StmtIndex.VarStmts stmts = stmtIndex.getVarStmts(x);
                 // 3.1 foreach oi in Δ do
                 // TODO taint object 和 普通 object 需要分开处理吗 ?
                 delta.getObjects().forEach(csoi -> {
@@ -385,27 +375,16 @@ public class Solver {
                         return;
                     }
                     // 3.1.1 foreach x.f = y in S do
-                    x.getStoreFields().forEach(storeField -> {
-                        Var y = storeField.getRValue();
-                        JField f = storeField.getFieldRef().resolve();
-                        addPFGEdge(csManager.getCSVar(c, y), csManager.getInstanceField(csoi, f));
-                    });
+                    stmts.getStoreFields().forEach(store -> addPFGEdge(
+                            csManager.getCSVar(c, store.var()), csManager.getInstanceField(csoi, store.field())));
                     // 3.1.1 foreach y = x.f in S do
-                    x.getLoadFields().forEach(loadField -> {
-                        Var y = loadField.getLValue();
-                        JField f = loadField.getFieldRef().resolve();
-                        addPFGEdge(csManager.getInstanceField(csoi, f), csManager.getCSVar(c, y));
-                    });
-                    // TODO 不要忘记在这个方法中处理数组 loads/stores。
-                    x.getStoreArrays().forEach(storeArray -> {
-                        Var y = storeArray.getRValue();
-                        addPFGEdge(csManager.getCSVar(c, y), csManager.getArrayIndex(csoi));
-                    });
-                    x.getLoadArrays().forEach(loadArray -> {
-                        Var y = loadArray.getLValue();
-                        addPFGEdge(csManager.getArrayIndex(csoi), csManager.getCSVar(c, y));
-                    });
-                    processCall(cx, csoi); // x.f.someCall ?
+                    stmts.getLoadFields().forEach(load -> addPFGEdge(
+                            csManager.getInstanceField(csoi, load.field()), csManager.getCSVar(c, load.var())));
+                    stmts.getStoreArrays().forEach(y -> addPFGEdge(
+                            csManager.getCSVar(c, y), csManager.getArrayIndex(csoi)));
+                    stmts.getLoadArrays().forEach(y -> addPFGEdge(
+                            csManager.getArrayIndex(csoi), csManager.getCSVar(c, y)));
+                    processCall(cx, stmts.getInvokes(), csoi); // x.f.someCall ?
                     // TODO add invoke statement use this variable ?
                     // x.getMethod().getIR().forEach(stmt -> {
                     //     if (stmt instanceof Invoke invoke) {
@@ -426,17 +405,11 @@ public class Solver {
      */
     private PointsToSet propagate(Pointer n, PointsToSet pts) {
         // TODO - finish me
+        pts = filter(n, pts);
         if (pts.isEmpty()) {
             return PointsToSetFactory.make();
         }
-        PointsToSet ptn = n.getPointsToSet();
-        Set<CSObj> difference = getSetDifference(pts.getObjects(), ptn.getObjects());
-
-        PointsToSet delta = PointsToSetFactory.make();
-        difference.forEach(obj -> {
-            ptn.addObject(obj);
-            delta.addObject(obj);
-        });
+        PointsToSet delta = n.getPointsToSet().addAllDiff(pts);
 
         if (!delta.isEmpty()) {
             pointerFlowGraph.getSuccsOf(n).forEach(s -> {
@@ -446,20 +419,25 @@ public class Solver {
         return delta;
     }
 
+    /**
+     * @return the objects in pts that can be held by the pointer,
+     * if type filtering is enabled, otherwise pts itself.
+     */
+    private PointsToSet filter(Pointer pointer, PointsToSet pts) {
+        return typeFilter != null ? typeFilter.filter(pointer, pts) : pts;
+    }
+
     /**
      * Processes instance calls when points-to set of the receiver variable changes.
      *
-     * @param cx    the receiver variable
-     * @param csoi set of new discovered objects pointed by the variable.
+     * @param cx      the receiver variable
+     * @param invokes the instance invocations on the receiver variable
+     * @param csoi    set of new discovered objects pointed by the variable.
      */
-    private void processCall(CSVar cx, CSObj csoi) {
+    private void processCall(CSVar cx, List<Invoke> invokes, CSObj csoi) {
         // TODO - finish me
         Context c = cx.getContext();
-        Var x = cx.getVar();
-        x.getInvokes().forEach(l -> {
-            if (l.isStatic()) { // static已经处理过了
-                return;
-            }
+        invokes.forEach(l -> { // static调用已经在 addReachable 中处理过了
             // 你将在这个方法中处理所有种类的实例方法调用，即虚调用、接口调用和特殊调用。
             // 处理接口调用和特殊调用的逻辑与处理虚调用的逻辑完全相同（你在课上已经学过）。
             // 你也可以使用上面提到的 resolveCallee() （代替算法中的 Dispatch）来解析所有种类的实例方法调用，